@@ -2,6 +2,7 @@ package com.project.src;
 import controlP5.*;
 import com.project.src.accountManager.*;
 import com.project.src.filters.*;
+import com.project.src.graphic.TextResources;
 import processing.core.*;
 import processing.event.MouseEvent;
 
@@ -35,10 +36,11 @@ public class Main extends PApplet {
      * a new Model instance, and populating the list of expenses.
      *
      * This method also sets up sample expenses and initializes the list
-     * to be displayed.
+     * to be displayed. The shared fonts are created here, before the pages using them.
      */
     public void setup(){
         windowTitle("Track Your Expenses");
+        TextResources.warmUp(this);
         model = new Model(this);
     }
 
@@ -46,9 +48,14 @@ public class Main extends PApplet {
      * Main draw loop for rendering graphics.
      *
      * This method updates the display based on the current screen state
-     * and renders the list of expenses.
+     * and renders the list of expenses. The sketch does not loop: a frame
+     * is drawn only after the RedrawTracker has been told something changed.
+     * The expenses of the account read in background since the last frame are added first.
      */
     public void draw(){
+        model.redraw.beginFrame();
+        TextResources.beginFrame();
+        if(Model.getAccount() != null) Model.getAccount().drainLoaded();
         if(model.screen[0]) {
             model.form.draw();
         }
@@ -56,11 +63,63 @@ public class Main extends PApplet {
             model.expense.draw();
         }
         else if(model.screen[2]) {
-           model.graphicPage.showInterface(model.expense.getListToShow());
+           model.graphicPage.showInterface(model.graphicPage.rollupOf(Model.getAccount()), model.expense.getCategory());
         }
         else{
             model.account.draw(Model.acc);
         }
+        model.redraw.endFrame();
+    }
+
+    /**
+     * Redraws the window after any ControlP5 event, since it can change the screen shown.
+     *
+     * @param event the ControlEvent containing the event data
+     */
+    public void controlEvent(ControlEvent event) {
+        model.redraw.markDirty();
+    }
+
+    /**
+     * Redraws the window when the mouse moves, to update the highlighted controls.
+     */
+    public void mouseMoved() {
+        model.redraw.markDirty();
+    }
+
+    /**
+     * Redraws the window when the mouse is pressed.
+     */
+    public void mousePressed() {
+        model.redraw.markDirty();
+    }
+
+    /**
+     * Redraws the window when the mouse is released.
+     */
+    public void mouseReleased() {
+        model.redraw.markDirty();
+    }
+
+    /**
+     * Redraws the window when the mouse is dragged.
+     */
+    public void mouseDragged() {
+        model.redraw.markDirty();
+    }
+
+    /**
+     * Redraws the window when a key is pressed, to show the text typed in the fields.
+     */
+    public void keyPressed() {
+        model.redraw.markDirty();
+    }
+
+    /**
+     * Redraws the window when a key is released.
+     */
+    public void keyReleased() {
+        model.redraw.markDirty();
     }
 
     /**
@@ -73,7 +132,7 @@ public class Main extends PApplet {
         if (model.form.submitForm()) {
             model.screen[0] = false;
             model.screen[1] = true;
-            model.expense.changeListToShow(model.dao.getExpensesByAccount(Model.getAccount()));
+            model.expense.refresh();
         }
     }
 
@@ -87,7 +146,8 @@ public class Main extends PApplet {
         if(model.form.submitForm(true)) {
             model.screen[0] = false;
             model.screen[1] = true;
-            Model.acc = new Account(model.form.model.getUsername(), model.form.model.getPsw());
+            Model.changeAccount(new Account(model.form.model.getUsername(), model.form.model.getPsw()));
+            model.expense.refresh();
         }
     }
 
@@ -108,7 +168,7 @@ public class Main extends PApplet {
     public void select(ControlEvent theEvent) {
         if (theEvent.isFrom(model.expense.filter.getList())) {
             int cat = (int) theEvent.getController().getValue();
-            model.expense.changeListToShow(CategoryFilter.filter(model.dao.getExpensesByAccount(Model.getAccount()),model.expense.filter.callback(cat)));
+            model.expense.filterCallback(model.expense.filter.callback(cat));
         }
     }
 
@@ -116,7 +176,8 @@ public class Main extends PApplet {
      * Switches the screen to display the graphic interface.
      *
      * This method hides various UI elements and sets the screen state to
-     * show the graphical representation of expenses.
+     * show the graphical representation of expenses, requesting the monthly
+     * aggregates from the database if the expenses are still loading.
      */
     public void graphic() {
         Arrays.fill(model.screen,false);
@@ -125,6 +186,7 @@ public class Main extends PApplet {
         model.expense.filter.hideList();
         model.expense.order.hideList();
         model.expense.getGraphic().hide();
+        model.graphicPage.refresh(Model.getAccount());
         model.screen[2] = true;
     }
 
@@ -226,7 +288,7 @@ public class Main extends PApplet {
             model.expense.order.getList().unlock();
             model.screen[1] = true;
             model.expense.setOn(true);
-            model.expense.changeListToShow(model.dao.getExpensesByAccount(Model.getAccount()));
+            model.expense.refresh();
         }
     }
 
@@ -240,7 +302,8 @@ public class Main extends PApplet {
      */
     public void reorder(ControlEvent event) {
         if (event.isFrom(model.expense.order.getList())) {
-           model.expense.reorderCallback(model.expense.order.callback((int) event.getController().getValue()));
+           int cat = (int) event.getController().getValue();
+           model.expense.reorderCallback(model.expense.order.keyCallback(cat), model.expense.order.descendingCallback(cat));
         }
     }
 
@@ -282,20 +345,26 @@ public class Main extends PApplet {
      */
     public void backExpenses(){
         model.account.hideFields();
-        model.expense.changeListToShow(model.dao.getExpensesByAccount(Model.getAccount()));
+        model.expense.refresh();
         model.screen[1]=true;
     }
 
     /**
      * Handles the user logout process.
      *
-     * This method hides account management fields, resets the screen state to
-     * show the login form, and sets the current account to null.
+     * This method hides account management fields, waits for the pending changes
+     * to be written, resets the screen state to show the login form, and sets the
+     * current account to null.
      */
     public void logout(){
         model.account.hideFields();
+        try {
+            model.writer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         model.screen[0]=true;
-        Model.acc = null;
+        Model.changeAccount(null);
     }
 
     /**
@@ -322,6 +391,23 @@ public class Main extends PApplet {
         model.expense.mouseWheel(event);
     }
 
+    /**
+     * Writes the pending changes and closes the database connections
+     * before the application terminates.
+     */
+    @Override
+    public void exit() {
+        if(model != null) {
+            try {
+                model.writer.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            model.dao.close();
+        }
+        super.exit();
+    }
+
     /**
      * The main method to launch the application.
      *
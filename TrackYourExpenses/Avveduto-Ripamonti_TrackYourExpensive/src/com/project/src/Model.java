@@ -7,6 +7,7 @@ import com.project.src.expense.*;
 import com.project.src.form.*;
 import processing.core.*;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -14,7 +15,8 @@ import java.util.*;
  *
  * This class initializes and maintains references to various components
  * such as the ControlP5 library for UI controls, the FormController for
- * handling form-related actions, and the DBManager for database operations.
+ * handling form-related actions, and the Actions implementation for database operations,
+ * on the MySQL server or in a local file as chosen by the storage.backend system property.
  * It also manages the state of the screens and the list of expenses to be shown.
  *
  * @author Angelo Ripamonti & Luca Avveduto
@@ -24,43 +26,98 @@ public class Model {
     ControlP5 cp5;
     FormController form;
     ExpensesPage expense;
-    DBManager dao;
+    Actions dao;
+    WriteBehindQueue writer;
     boolean[] screen;
     static Account acc;
     AccountPage account;
     graphicPage graphicPage;
-
+    RedrawTracker redraw;
+    private static final int POOL_SIZE = 4;
+    private static final long POOL_IDLE_TIMEOUT = 60_000;
+    private static final long POOL_BORROW_TIMEOUT = 10_000;
+    private static final int POOL_VALIDATION_TIMEOUT = 2;
+    private static final String BACKEND_PROPERTY = "storage.backend";
+    private static final StorageBackend DEFAULT_BACKEND = StorageBackend.MYSQL;
+    private static final StorageMode STORAGE_MODE = StorageMode.EXPENSE_TABLE;
+    private static final AccountFormat ACCOUNT_FORMAT = AccountFormat.BINARY;
+    private static final long WRITE_BEHIND_DELAY = 250;
+    private static final int CACHE_SIZE = 100_000;
+    private static final long CARD_CACHE_BUDGET = 64L * 1024 * 1024;
 
     /**
      * Constructs a new Model instance.
      *
-     * Initializes the ControlP5 instance, DBManager for database operations,
+     * Initializes the ControlP5 instance, the database chosen by the storage.backend system property:
+     * DBManager with its connection pool and the format of the accounts registered, or LocalDBManager,
+     * the WriteBehindQueue writing the account changes in background after recording them in the local journal,
+     * or only to the database if the journal cannot be opened, which ExpensesPage shows, the RedrawTracker
+     * drawing frames only when something changed, the memory budget of the cached expense cards,
      * FormController for handling form actions, and ExpensesPage for managing expense interactions.
      * Sets up the initial screen state, with the first screen activated.
      *
      * @param processing the PApplet instance used for creating and managing
      * the UI controls and other visual elements. Must not be null.
      * @throws NullPointerException if processing is null.
+     * @throws IllegalStateException if the local store is chosen and cannot be opened.
      */
-    public Model(PApplet processing) throws NullPointerException{
+    public Model(PApplet processing) throws NullPointerException, IllegalStateException{
         if(processing == null) throw new NullPointerException("processing parameter is null");
         cp5 = new ControlP5(processing);
-        dao = new DBManager();
+        redraw = new RedrawTracker(processing);
+        CardCache.setBudget(CARD_CACHE_BUDGET);
+        AccountCache cache;
+        if(StorageBackend.parse(System.getProperty(BACKEND_PROPERTY), DEFAULT_BACKEND) == StorageBackend.LOCAL) {
+            LocalDBManager local = openLocal();
+            dao = local;
+            cache = local.getCache();
+        }
+        else {
+            DBManager remote = new DBManager(POOL_SIZE, POOL_IDLE_TIMEOUT, POOL_BORROW_TIMEOUT, POOL_VALIDATION_TIMEOUT, STORAGE_MODE, CACHE_SIZE);
+            remote.setNewAccountFormat(ACCOUNT_FORMAT);
+            dao = remote;
+            cache = remote.getCache();
+        }
+        ExpenseJournal journal = null;
+        IOException journalError = null;
+        try {
+            journal = new ExpenseJournal(ExpenseJournal.DEFAULT_PATH);
+        } catch (IOException e) {
+            journalError = e;
+        }
+        writer = new WriteBehindQueue(dao, cache, WRITE_BEHIND_DELAY, journal);
         form=new FormController(processing,cp5,dao);
-        expense = new ExpensesPage(processing,cp5,dao);
+        expense = new ExpensesPage(processing,cp5,dao,writer,redraw);
+        if(journalError != null) expense.onJournalUnavailable(journalError);
         screen = new boolean[3];
         Arrays.fill(screen,false);
         screen[0]=true;
-        account = new AccountPage(processing, cp5, dao);
-        graphicPage = new graphicPage(processing,cp5);
+        account = new AccountPage(processing, cp5, dao, writer);
+        graphicPage = new graphicPage(processing,cp5,writer,redraw);
+    }
+
+    /**
+     * Opens the local store of the accounts.
+     *
+     * @return the local store
+     * @throws IllegalStateException if the store cannot be opened, such as when another instance is using it
+     */
+    private static LocalDBManager openLocal() throws IllegalStateException {
+        try {
+            return new LocalDBManager(LocalDBManager.DEFAULT_PATH, CACHE_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("The local store cannot be opened: " + e.getMessage());
+        }
     }
 
     /**
      * Changes the current account to the specified account.
+     * The expenses of the previous account still loading are no longer read.
      *
-     * @param a the new Account to be set as the current account
+     * @param a the new Account to be set as the current account, or null to log out
      */
     public static void changeAccount(Account a) {
+        if(acc != null && acc != a) acc.stopLoading();
         acc = a;
     }
 
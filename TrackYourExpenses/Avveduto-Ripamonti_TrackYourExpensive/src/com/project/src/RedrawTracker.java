@@ -0,0 +1,113 @@
+package com.project.src;
+
+import processing.core.PApplet;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks whether the window changed and asks Processing for a frame only then.
+ *
+ * The sketch runs with noLoop(): input events, list changes and database
+ * completions mark the window dirty, which schedules a single redraw of every
+ * page, however many changes are marked before it. While the window is idle no
+ * frame is drawn at all. The tracker also measures the time spent drawing, so the
+ * load can be compared with IDLE_LOAD_TARGET, and described by report() for
+ * the callers asking for it.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class RedrawTracker {
+    /**
+     * The maximum fraction of wall time the sketch should spend drawing while the window is idle.
+     */
+    public static final double IDLE_LOAD_TARGET = 0.01;
+    private final PApplet parent;
+    private final AtomicBoolean dirty;
+    private final long start;
+    private long frameStart;
+    private long busy;
+    private long frames;
+
+    /**
+     * Constructs a RedrawTracker for the given sketch and stops its draw loop.
+     * The window starts dirty so the first frame is drawn.
+     *
+     * @param parent the PApplet instance. Must not be null.
+     * @throws NullPointerException if parent is null
+     */
+    public RedrawTracker(PApplet parent) throws NullPointerException {
+        if(parent == null) throw new NullPointerException("parent parameter is null");
+        this.parent = parent;
+        dirty = new AtomicBoolean(true);
+        start = System.nanoTime();
+        busy = 0;
+        frames = 0;
+        parent.noLoop();
+        parent.redraw();
+    }
+
+    /**
+     * Marks the window dirty and schedules a redraw, unless one is already scheduled.
+     * Can be called from any thread.
+     */
+    public void markDirty() {
+        if(!dirty.getAndSet(true)) parent.redraw();
+    }
+
+    /**
+     * Starts a frame, so the changes marked from now on schedule the next one.
+     * Must be called at the beginning of draw().
+     */
+    public void beginFrame() {
+        frameStart = System.nanoTime();
+        dirty.set(false);
+    }
+
+    /**
+     * Ends a frame, recording the time spent drawing it.
+     * Must be called at the end of draw().
+     */
+    public void endFrame() {
+        busy += System.nanoTime() - frameStart;
+        frames++;
+    }
+
+    /**
+     * Returns the number of frames drawn since the tracker was created.
+     *
+     * @return the number of frames drawn
+     */
+    public long getFramesRendered() {
+        return frames;
+    }
+
+    /**
+     * Returns the fraction of wall time spent drawing since the tracker was created.
+     *
+     * @return the drawing load, from 0 to 1
+     */
+    public double getLoad() {
+        long wall = System.nanoTime() - start;
+        return wall == 0 ? 0 : (double) busy / wall;
+    }
+
+    /**
+     * Checks if the drawing load is within the idle target.
+     *
+     * @return true if the load is not more than IDLE_LOAD_TARGET
+     */
+    public boolean isWithinIdleTarget() {
+        return getLoad() <= IDLE_LOAD_TARGET;
+    }
+
+    /**
+     * Describes the frames drawn and the drawing load compared with the idle target.
+     *
+     * @return the description of the drawing load
+     */
+    public String report() {
+        return String.format("Drew %d frames in %.0f s, %.3f%% of the time (%s the idle target of %.1f%%)",
+                frames, (System.nanoTime() - start) / 1e9, getLoad() * 100, isWithinIdleTarget() ? "within" : "above", IDLE_LOAD_TARGET * 100);
+    }
+}
@@ -1,9 +1,15 @@
 package com.project.src.accountManager;
 
+import com.google.gson.annotations.JsonAdapter;
+import com.project.src.expense.ExpenseColumns;
+import com.project.src.expense.ExpenseColumnsAdapter;
 import com.project.src.expense.ExpenseController;
+import com.project.src.expense.ExpenseStore;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 
 /**
  * Represents an account with associated expenses.
@@ -11,7 +17,13 @@ import java.util.ArrayList;
  * account data to a file.
  *
  * The Account class contains the account's username, password,
- * and a list of expenses associated with the account.
+ * and the expenses associated with the account, kept in columns and
+ * written in JSON as a list, together with an index of the expenses built on first use.
+ * The expenses of a large account can still be loading in background after login:
+ * they are added by drainLoaded() on the drawing thread, which then runs the actions
+ * waiting for the whole list, and awaitLoaded() waits for the rest.
+ * The account knows the version of the database it is in sync with, and applies
+ * the changes made elsewhere in drainLoaded() as well.
  *
  * @author Angelo Ripamonti & Luca Avveduto
  * @version 1.0
@@ -19,7 +31,15 @@ import java.util.ArrayList;
 public class Account implements Serializable {
     private final String username;
     private final String password;
-    private ArrayList<ExpenseController> expenses;
+    @JsonAdapter(ExpenseColumnsAdapter.class)
+    private ExpenseColumns expenses;
+    private transient ExpenseStore store;
+    private transient ExpenseLoad load;
+    private transient Throwable loadError;
+    private transient ArrayList<Runnable> loadedActions;
+    private transient boolean partial;
+    private transient volatile long version = ExpenseDelta.UNKNOWN_VERSION;
+    private transient volatile ExpenseDelta received;
 
     /**
      * Constructs a new Account with the specified username, password,
@@ -34,6 +54,19 @@ public class Account implements Serializable {
     public Account(String username, String password, ArrayList<ExpenseController> expenses) throws NullPointerException, IllegalArgumentException {
         if(username == null || password == null || expenses == null) throw new NullPointerException("Almost one parameter passed is null");
         if(username.isBlank() || password.isBlank()) throw new IllegalArgumentException("Almost one parameter passed is blank");
+        this.username = username;
+        this.password = password;
+        this.expenses = new ExpenseColumns(expenses);
+    }
+
+    /**
+     * Constructs a new Account with the specified username, password and expense columns.
+     *
+     * @param username the account's username
+     * @param password the account's password
+     * @param expenses the columns holding the expenses
+     */
+    Account(String username, String password, ExpenseColumns expenses) {
         this.username = username;
         this.password = password;
         this.expenses = expenses;
@@ -53,7 +86,7 @@ public class Account implements Serializable {
         if(username.isBlank() || password.isBlank()) throw new IllegalArgumentException("Almost one parameter passed is blank");
         this.username = username;
         this.password = password;
-        this.expenses = new ArrayList<ExpenseController>();
+        this.expenses = new ExpenseColumns();
     }
 
     /**
@@ -76,11 +109,127 @@ public class Account implements Serializable {
 
     /**
      * Returns a copy of the list of expenses associated with the account.
+     * The expenses are rebuilt from the columns.
      *
      * @return a list containing all the expenses associated with the account
      */
     public ArrayList<ExpenseController> getExpenses() {
-        return new ArrayList<ExpenseController>(expenses);
+        return new ArrayList<ExpenseController>(expenses.asList());
+    }
+
+    /**
+     * Returns a read-only view of the expenses associated with the account, without copying them.
+     * The view of a snapshot never changes.
+     *
+     * @return a list view of the expenses
+     */
+    public ExpenseColumns.ListView getExpensesView() {
+        return expenses.asList();
+    }
+
+    /**
+     * Returns the columns holding the expenses of the account, to write them without copying.
+     *
+     * @return the expense columns
+     */
+    ExpenseColumns getColumns() {
+        return expenses;
+    }
+
+    /**
+     * Returns a read-only copy of the account, safe to read from other threads.
+     * Only the primitive columns of the expenses are copied.
+     *
+     * @return the snapshot of the account
+     */
+    Account snapshot() {
+        Account copy = new Account(username, password, expenses.snapshot());
+        copy.version = version;
+        copy.partial = load != null || loadError != null;
+        return copy;
+    }
+
+    /**
+     * Checks if the account is a snapshot taken while some of its expenses were not loaded.
+     *
+     * @return true if the expenses of the snapshot are not the whole list of the account
+     */
+    boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Returns the version of the database the expenses of the account are in sync with.
+     *
+     * @return the version, ExpenseDelta.UNKNOWN_VERSION if it is not known
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the database the expenses of the account are in sync with.
+     *
+     * @param version the version
+     */
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Moves the account to the version written by its own changes.
+     * If the write did not follow directly the version the changes were based on,
+     * changes made elsewhere are missing, so the version becomes unknown and the
+     * next changes received replace the whole list.
+     *
+     * @param baseVersion the version the written changes were based on
+     * @param written the version returned by the write
+     */
+    synchronized void advanceVersion(long baseVersion, long written) {
+        if(version == baseVersion && written == baseVersion + 1) version = written;
+        else version = ExpenseDelta.UNKNOWN_VERSION;
+    }
+
+    /**
+     * Hands over changes received from the database, applied by the next drainLoaded().
+     * Can be called from any thread.
+     *
+     * @param changes the changes received. Must not be null.
+     * @throws NullPointerException if changes is null
+     */
+    void receiveChanges(ExpenseDelta changes) throws NullPointerException {
+        if(changes == null) throw new NullPointerException("changes parameter is null");
+        received = changes;
+    }
+
+    /**
+     * Applies changes to the expenses of the account, if they are based on its current version.
+     *
+     * @param changes the changes to apply. Must not be null.
+     * @return true if the expenses changed
+     * @throws NullPointerException if changes is null
+     */
+    synchronized boolean applyChanges(ExpenseDelta changes) throws NullPointerException {
+        if(changes == null) throw new NullPointerException("changes parameter is null");
+        if(changes.getBaseVersion() != version || isLoading()) return false;
+        if(changes.isReset()) {
+            if(store != null) store.clear();
+            else expenses.clear();
+        }
+        for(ExpenseController e : changes.getAdded()) addExpense(e);
+        version = changes.getVersion();
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Returns the index of the expenses associated with the account.
+     * The index is built on first use and then kept up to date by addExpense and resetExpenses.
+     *
+     * @return the indexed store of the expenses
+     */
+    public ExpenseStore getStore() {
+        if(store == null) store = new ExpenseStore(expenses);
+        return store;
     }
 
     /**
@@ -91,16 +240,148 @@ public class Account implements Serializable {
      */
     public void addExpense(ExpenseController exp) throws NullPointerException{
         if(exp == null) throw new NullPointerException("The parameter passed is null");
-        expenses.add(exp);
+        if(store != null) store.add(exp);
+        else expenses.add(exp.getModel());
+    }
+
+    /**
+     * Starts adding the expenses read in background by the given load.
+     *
+     * @param load the load of the remaining expenses
+     */
+    void startLoading(ExpenseLoad load) {
+        this.load = load;
+        loadError = null;
+    }
+
+    /**
+     * Checks if expenses of the account are still being read in background.
+     *
+     * @return true if the account is not complete yet
+     */
+    public boolean isLoading() {
+        return load != null;
+    }
+
+    /**
+     * Starts reading in background the expenses of the account not read yet, if their load was
+     * deferred until the whole list is needed.
+     */
+    public void loadAll() {
+        ExpenseLoad l = load;
+        if(l != null) l.start();
+    }
+
+    /**
+     * Sets the listener told when expenses read in background are ready to be drained.
+     * The listener runs on the loading thread.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setLoadListener(Runnable listener) {
+        if(load != null) load.setListener(listener);
+    }
+
+    /**
+     * Adds to the account the expenses read in background so far and the changes received.
+     * Must be called on the thread using the account, typically at the beginning of draw().
+     *
+     * @return true if any expense was added or the load has ended
+     */
+    public boolean drainLoaded() {
+        boolean changed = false;
+        ExpenseDelta changes = received;
+        if(changes != null) {
+            received = null;
+            changed = applyChanges(changes);
+        }
+        ExpenseLoad l = load;
+        if(l == null) return changed;
+        boolean finished = l.isDone();
+        List<ExpenseController> batch;
+        while((batch = l.poll()) != null) {
+            for(ExpenseController e : batch) addExpense(e);
+            changed = true;
+        }
+        if(finished) {
+            loadError = l.await();
+            load = null;
+            runLoadedActions();
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Runs an action once the load of the expenses has ended, on the thread draining them,
+     * or right away if the account is not loading. A deferred load is started. The action checks with awaitLoaded(),
+     * which no longer waits, if the account is complete.
+     *
+     * @param action the action to run. Must not be null.
+     * @throws NullPointerException if action is null
+     */
+    void whenLoaded(Runnable action) throws NullPointerException {
+        if(action == null) throw new NullPointerException("action parameter is null");
+        if(load == null) {
+            action.run();
+            return;
+        }
+        if(loadedActions == null) loadedActions = new ArrayList<>();
+        loadedActions.add(action);
+        load.start();
+    }
+
+    /**
+     * Runs the actions waiting for the end of the load.
+     */
+    private void runLoadedActions() {
+        ArrayList<Runnable> actions = loadedActions;
+        loadedActions = null;
+        if(actions != null) for(Runnable r : actions) r.run();
+    }
+
+    /**
+     * Waits until every expense of the account has been read and added, starting a deferred load.
+     *
+     * @throws IllegalStateException if the expenses of the account could not be read, so the account is not complete
+     */
+    public void awaitLoaded() throws IllegalStateException {
+        ExpenseLoad l = load;
+        if(l != null) {
+            l.start();
+            l.await();
+            drainLoaded();
+        }
+        if(loadError != null) throw new IllegalStateException("The expenses of the account could not be loaded", loadError);
+    }
+
+    /**
+     * Stops reading the expenses of the account in background, dropping the ones not yet added,
+     * so the account is no longer complete.
+     */
+    public void stopLoading() {
+        ExpenseLoad l = load;
+        load = null;
+        if(l == null) return;
+        l.cancel();
+        loadError = new CancellationException("The load of the expenses was stopped");
+        runLoadedActions();
     }
 
     /**
      * Resets the list of expenses associated with the account.
+     * The expenses still loading are dropped as well, and the account is complete again.
      *
      * @return true if the list of expenses was cleared successfully
      */
     boolean resetExpenses() {
-        this.expenses.clear();
+        ExpenseLoad l = load;
+        load = null;
+        if(l != null) l.cancel();
+        loadError = null;
+        if(store != null) store.clear();
+        else expenses.clear();
+        runLoadedActions();
         return true;
     }
 }
@@ -0,0 +1,89 @@
+package com.project.src.accountManager;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.project.src.expense.ExpenseColumns;
+import com.project.src.expense.ExpenseController;
+import com.project.src.expense.ExpenseControllerAdapter;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter writing an Account as an object with the username, password and expenses fields,
+ * the same shape written by the reflective adapter of Gson.
+ * The expenses are written straight from the columns of the account and read straight into new columns.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class AccountAdapter extends TypeAdapter<Account> {
+    private static final ExpenseControllerAdapter EXPENSE = new ExpenseControllerAdapter();
+
+    /**
+     * Writes an account as a JSON object.
+     *
+     * @param out the writer
+     * @param acc the account to write, possibly null
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void write(JsonWriter out, Account acc) throws IOException {
+        if(acc == null) {
+            out.nullValue();
+            return;
+        }
+        ExpenseColumns columns = acc.getColumns();
+        out.beginObject();
+        out.name("username").value(acc.getUsername());
+        out.name("password").value(acc.getPassword());
+        out.name("expenses").beginArray();
+        for(int i = 0; i < columns.size(); i++) ExpenseControllerAdapter.writeRow(out, columns, i);
+        out.endArray();
+        out.endObject();
+    }
+
+    /**
+     * Reads an account from a JSON object. Unknown fields are ignored.
+     *
+     * @param in the reader
+     * @return the account read, null for a JSON null
+     * @throws IOException if the reader fails
+     * @throws JsonParseException if the username or the password are missing or an expense is not valid
+     */
+    @Override
+    public Account read(JsonReader in) throws IOException, JsonParseException {
+        if(in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String username = null;
+        String password = null;
+        ExpenseColumns columns = new ExpenseColumns();
+        in.beginObject();
+        while(in.hasNext()) {
+            switch (in.nextName()) {
+                case "username" -> username = in.nextString();
+                case "password" -> password = in.nextString();
+                case "expenses" -> {
+                    if(in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        break;
+                    }
+                    in.beginArray();
+                    while(in.hasNext()) {
+                        ExpenseController e = EXPENSE.read(in);
+                        if(e != null) columns.add(e.getModel());
+                    }
+                    in.endArray();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if(username == null || password == null) throw new JsonParseException("The account misses the username or the password");
+        return new Account(username, password, columns);
+    }
+}
@@ -0,0 +1,86 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseBinaryCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Versioned binary encoding of an account, stored in the accountBin column.
+ *
+ * The encoding starts with the bytes 'T', 'Y', 'E', the version and a flags byte.
+ * If the compressed flag is set the rest is compressed by deflate. The rest is the
+ * username and the password as UTF-8 texts followed by the expenses written by
+ * ExpenseBinaryCodec. Readers refuse versions newer than theirs.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class AccountBinaryCodec {
+    /**
+     * The bytes every binary account starts with.
+     */
+    static final byte[] MAGIC = {'T', 'Y', 'E'};
+    /**
+     * The version of the encoding written.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The flag marking a compressed account.
+     */
+    static final int COMPRESSED = 1;
+
+    /**
+     * Not instantiable, every method is static.
+     */
+    private AccountBinaryCodec() {}
+
+    /**
+     * Encodes an account.
+     *
+     * @param acc the account to encode. Must not be null.
+     * @param compress true to compress the account
+     * @return the binary of the account
+     * @throws NullPointerException if acc is null
+     */
+    public static byte[] encode(Account acc, boolean compress) throws NullPointerException {
+        if(acc == null) throw new NullPointerException("acc parameter is null");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + acc.getColumns().size() * 8);
+        bytes.write(MAGIC, 0, MAGIC.length);
+        bytes.write(VERSION);
+        bytes.write(compress ? COMPRESSED : 0);
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try(DataOutputStream out = new DataOutputStream(compress ? new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater, 8192), 8192) : bytes)) {
+            ExpenseBinaryCodec.writeString(out, acc.getUsername());
+            ExpenseBinaryCodec.writeString(out, acc.getPassword());
+            ExpenseBinaryCodec.write(out, acc.getColumns());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if(deflater != null) deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a whole account.
+     *
+     * @param data the binary of the account. Must not be null.
+     * @return the account
+     * @throws NullPointerException if data is null
+     * @throws IOException if data is not a valid binary account
+     */
+    public static Account decode(byte[] data) throws NullPointerException, IOException {
+        if(data == null) throw new NullPointerException("data parameter is null");
+        AccountBinaryReader reader = new AccountBinaryReader(new ByteArrayInputStream(data));
+        Account acc = reader.readHeader();
+        while(!reader.isDone()) reader.read(acc::addExpense, Integer.MAX_VALUE);
+        return acc;
+    }
+}
@@ -0,0 +1,114 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseBinaryCodec;
+import com.project.src.expense.ExpenseController;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.function.Consumer;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streaming decoder of an account encoded by AccountBinaryCodec.
+ * The header is checked on construction, the expenses are decoded a few at a time.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+class AccountBinaryReader extends AccountReader {
+    private final DataInputStream in;
+    private final boolean compressed;
+    private ExpenseBinaryCodec.Reader expenses;
+
+    /**
+     * Constructs an AccountBinaryReader reading the given stream.
+     *
+     * @param stream the binary of the account. Must not be null.
+     * @throws IOException if the stream cannot be read, is not a binary account or has a newer version
+     * @throws NullPointerException if stream is null
+     */
+    AccountBinaryReader(InputStream stream) throws IOException, NullPointerException {
+        if(stream == null) throw new NullPointerException("stream parameter is null");
+        byte[] header = new byte[AccountBinaryCodec.MAGIC.length + 2];
+        new DataInputStream(stream).readFully(header);
+        for(int i = 0; i < AccountBinaryCodec.MAGIC.length; i++) {
+            if(header[i] != AccountBinaryCodec.MAGIC[i]) throw new StreamCorruptedException("Not a binary account");
+        }
+        int version = header[AccountBinaryCodec.MAGIC.length];
+        if(version < 1 || version > AccountBinaryCodec.VERSION) throw new StreamCorruptedException("Binary account version " + version + " not supported");
+        compressed = (header[AccountBinaryCodec.MAGIC.length + 1] & AccountBinaryCodec.COMPRESSED) != 0;
+        in = new DataInputStream(new BufferedInputStream(compressed ? new InflaterInputStream(stream) : stream, 8192));
+    }
+
+    /**
+     * Reads the username, the password and the dictionary of the expenses.
+     *
+     * @return the account with its username and password and no expenses
+     * @throws IOException if the stream cannot be read or is not valid
+     */
+    @Override
+    Account readHeader() throws IOException {
+        String username = ExpenseBinaryCodec.readString(in);
+        String password = ExpenseBinaryCodec.readString(in);
+        Account acc;
+        try {
+            acc = new Account(username, password);
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException("The account has no valid username or password");
+        }
+        expenses = new ExpenseBinaryCodec.Reader(in);
+        finishIfDone();
+        return acc;
+    }
+
+    /**
+     * Reads at most max expenses and passes them to sink in order.
+     *
+     * @param sink the consumer of the expenses read. Must not be null.
+     * @param max the maximum number of expenses to read
+     * @return the number of expenses read
+     * @throws IOException if the stream cannot be read or is not valid
+     */
+    @Override
+    public int read(Consumer<ExpenseController> sink, int max) throws IOException {
+        int n = 0;
+        while(n < max && expenses.remaining() > 0) {
+            sink.accept(expenses.next());
+            n++;
+        }
+        finishIfDone();
+        return n;
+    }
+
+    /**
+     * Checks if every expense has been read.
+     *
+     * @return true if there are no more expenses
+     */
+    @Override
+    public boolean isDone() {
+        return expenses != null && expenses.remaining() == 0;
+    }
+
+    /**
+     * Returns the format of the account being read.
+     *
+     * @return AccountFormat.BINARY or AccountFormat.COMPRESSED_BINARY
+     */
+    @Override
+    AccountFormat getFormat() {
+        return compressed ? AccountFormat.COMPRESSED_BINARY : AccountFormat.BINARY;
+    }
+
+    /**
+     * Releases the inflater as soon as every expense has been read.
+     *
+     * @throws IOException if the stream cannot be closed
+     */
+    private void finishIfDone() throws IOException {
+        if(compressed && isDone()) in.close();
+    }
+}
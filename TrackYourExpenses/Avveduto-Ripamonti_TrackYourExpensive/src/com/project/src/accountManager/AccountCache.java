@@ -0,0 +1,168 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseColumns;
+import com.project.src.expense.ExpenseController;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process cache of the expense lists of the accounts, keyed by username.
+ *
+ * The cache is bounded by the total number of cached expenses: when the bound
+ * is exceeded the least recently used lists are evicted. Every change to the
+ * cache increases a generation counter, so a list loaded from the database
+ * while the cache was being changed is not stored over newer data.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class AccountCache {
+    private final int maxExpenses;
+    private final LinkedHashMap<String, List<ExpenseController>> entries;
+    private int cachedExpenses;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an AccountCache holding at most the given number of expenses.
+     *
+     * @param maxExpenses the maximum number of expenses cached over all the accounts. Must not be less than 0.
+     * @throws IllegalArgumentException if maxExpenses is less than 0
+     */
+    public AccountCache(int maxExpenses) throws IllegalArgumentException {
+        if(maxExpenses < 0) throw new IllegalArgumentException("maxExpenses is less than 0");
+        this.maxExpenses = maxExpenses;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        cachedExpenses = 0;
+        generation = 0;
+    }
+
+    /**
+     * Returns the cached expense list of an account.
+     *
+     * @param username the account username. Must not be null.
+     * @return the read-only cached list, or null if the account is not cached
+     * @throws NullPointerException if username is null
+     */
+    public synchronized List<ExpenseController> get(String username) throws NullPointerException {
+        if(username == null) throw new NullPointerException("username parameter is null");
+        List<ExpenseController> list = entries.get(username);
+        if(list == null) misses++;
+        else hits++;
+        return list;
+    }
+
+    /**
+     * Returns the current generation, to be passed to putIfUnchanged after loading a list.
+     *
+     * @return the current generation
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the expense list of an account.
+     *
+     * @param username the account username. Must not be null.
+     * @param list the expense list. Must not be null.
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public synchronized void put(String username, List<ExpenseController> list) throws NullPointerException {
+        if(username == null || list == null) throw new NullPointerException("Almost one parameter passed is null");
+        store(username, list);
+    }
+
+    /**
+     * Caches the expense list of an account loaded from the database,
+     * unless the cache changed since the load started.
+     *
+     * @param username the account username. Must not be null.
+     * @param list the loaded expense list. Must not be null.
+     * @param loadGeneration the generation read before the load started
+     * @return true if the list has been cached
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public synchronized boolean putIfUnchanged(String username, List<ExpenseController> list, long loadGeneration) throws NullPointerException {
+        if(username == null || list == null) throw new NullPointerException("Almost one parameter passed is null");
+        if(loadGeneration != generation) return false;
+        store(username, list);
+        return true;
+    }
+
+    /**
+     * Removes the expense list of an account from the cache.
+     *
+     * @param username the account username. Must not be null.
+     * @throws NullPointerException if username is null
+     */
+    public synchronized void invalidate(String username) throws NullPointerException {
+        if(username == null) throw new NullPointerException("username parameter is null");
+        generation++;
+        List<ExpenseController> old = entries.remove(username);
+        if(old != null) cachedExpenses -= old.size();
+    }
+
+    /**
+     * Stores a read-only copy of the list, or the list itself if it is a frozen view of expense columns, and evicts the least recently used lists over the bound.
+     * Must be called while holding the cache lock.
+     *
+     * @param username the account username
+     * @param list the expense list
+     */
+    private void store(String username, List<ExpenseController> list) {
+        generation++;
+        List<ExpenseController> copy = list instanceof ExpenseColumns.ListView view && view.isFrozen() ? list : List.copyOf(list);
+        List<ExpenseController> old = entries.put(username, copy);
+        if(old != null) cachedExpenses -= old.size();
+        cachedExpenses += copy.size();
+        Iterator<Map.Entry<String, List<ExpenseController>>> it = entries.entrySet().iterator();
+        while(cachedExpenses > maxExpenses && it.hasNext()) {
+            Map.Entry<String, List<ExpenseController>> e = it.next();
+            cachedExpenses -= e.getValue().size();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns the number of lookups served by the cache.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups which had to go to the database.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of lists evicted to stay within the bound.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of expenses currently cached.
+     *
+     * @return the number of cached expenses
+     */
+    public synchronized int getCachedExpenses() {
+        return cachedExpenses;
+    }
+}
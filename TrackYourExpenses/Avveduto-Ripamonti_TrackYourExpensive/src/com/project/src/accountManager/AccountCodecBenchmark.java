@@ -0,0 +1,105 @@
+package com.project.src.accountManager;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.project.src.expense.Categories;
+import com.project.src.expense.ExpenseController;
+import com.project.src.expense.LocalDate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Measures the encode and decode throughput of accounts of 10000 and 100000 expenses,
+ * comparing a new reflective Gson per call, as the accounts were serialized before,
+ * with the shared AccountJson instance and with the binary and compressed binary
+ * encodings of AccountBinaryCodec, and prints the size of every encoding.
+ *
+ * Run it with the Gson jar on the class path; the number of timed rounds can be passed as argument.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class AccountCodecBenchmark {
+    private static final int[] SIZES = {10_000, 100_000};
+    private static final int WARM_UP_ROUNDS = 3;
+    private static volatile Object sink;
+
+    /**
+     * Runs the benchmark and prints the throughput of every case.
+     *
+     * @param args the number of timed rounds, 5 if missing
+     * @throws IOException if a binary account cannot be decoded
+     */
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Type accountType = new TypeToken<Account>() {}.getType();
+        for(int size : SIZES) {
+            Account acc = account(size);
+            String json = AccountJson.toJson(acc);
+            if(!json.equals(new Gson().toJson(acc))) throw new IllegalStateException("The shared adapters write a different JSON");
+            byte[] binary = AccountBinaryCodec.encode(acc, false);
+            byte[] compressed = AccountBinaryCodec.encode(acc, true);
+            if(!json.equals(AccountJson.toJson(AccountBinaryCodec.decode(binary))) || !json.equals(AccountJson.toJson(AccountBinaryCodec.decode(compressed)))) {
+                throw new IllegalStateException("The binary account decodes to a different account");
+            }
+            System.out.printf("%7d expenses: JSON %d bytes, binary %d bytes, compressed binary %d bytes%n", size, json.getBytes(StandardCharsets.UTF_8).length, binary.length, compressed.length);
+            report("reflective encode", size, rounds, () -> sink = new Gson().toJson(acc, accountType));
+            report("shared encode", size, rounds, () -> sink = AccountJson.toJson(acc));
+            report("reflective decode", size, rounds, () -> sink = new Gson().fromJson(json, accountType));
+            report("shared decode", size, rounds, () -> sink = AccountJson.fromJson(json));
+            report("binary encode", size, rounds, () -> sink = AccountBinaryCodec.encode(acc, false));
+            report("binary decode", size, rounds, () -> sink = decode(binary));
+            report("compressed encode", size, rounds, () -> sink = AccountBinaryCodec.encode(acc, true));
+            report("compressed decode", size, rounds, () -> sink = decode(compressed));
+        }
+    }
+
+    /**
+     * Decodes a binary account, failing the benchmark if it is not valid.
+     *
+     * @param data the binary account
+     * @return the account
+     */
+    private static Account decode(byte[] data) {
+        try {
+            return AccountBinaryCodec.decode(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds an account with the given number of expenses.
+     *
+     * @param size the number of expenses
+     * @return the account
+     */
+    private static Account account(int size) {
+        ArrayList<ExpenseController> expenses = new ArrayList<>(size);
+        Categories[] categories = {Categories.FOOD, Categories.SHOPPING, Categories.PLEASURE};
+        for(int i = 0; i < size; i++) {
+            expenses.add(new ExpenseController("exp" + (i % 1000), LocalDate.of(2020 + i % 4, 1 + i % 12, 1 + i % 28), categories[i % 3], 100L + i * 7L % 100_000, "description " + (i % 500)));
+        }
+        return new Account("benchmark", "benchmark", expenses);
+    }
+
+    /**
+     * Times a case and prints its throughput in expenses per second.
+     *
+     * @param name the name of the case
+     * @param size the number of expenses of the account
+     * @param rounds the number of timed rounds
+     * @param task the work of a round
+     */
+    private static void report(String name, int size, int rounds, Runnable task) {
+        for(int i = 0; i < WARM_UP_ROUNDS; i++) task.run();
+        long start = System.nanoTime();
+        for(int i = 0; i < rounds; i++) task.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-18s %7d expenses: %8.1f ms/round, %12.0f expenses/s%n", name, size, seconds * 1000 / rounds, size * (double) rounds / seconds);
+    }
+}
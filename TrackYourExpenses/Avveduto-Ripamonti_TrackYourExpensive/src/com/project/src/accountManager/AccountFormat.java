@@ -0,0 +1,25 @@
+package com.project.src.accountManager;
+
+/**
+ * Enum representing how an account is encoded in its row of the accounts table.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public enum AccountFormat {
+    /**
+     * The account is JSON text in the accountObj column.
+     */
+    JSON,
+
+    /**
+     * The account is binary in the accountBin column, written by AccountBinaryCodec.
+     * The accountObj column keeps the JSON of the account without its expenses.
+     */
+    BINARY,
+
+    /**
+     * Like BINARY, with the binary compressed by deflate.
+     */
+    COMPRESSED_BINARY
+}
@@ -0,0 +1,87 @@
+package com.project.src.accountManager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.project.src.expense.Categories;
+import com.project.src.expense.CategoriesAdapter;
+import com.project.src.expense.ExpenseController;
+import com.project.src.expense.ExpenseControllerAdapter;
+import com.project.src.expense.ExpenseModel;
+import com.project.src.expense.ExpenseModelAdapter;
+import com.project.src.expense.LocalDate;
+import com.project.src.expense.LocalDateAdapter;
+
+import java.io.Reader;
+
+/**
+ * Shared JSON serialization of the accounts.
+ *
+ * A single Gson instance is built once with hand-written adapters for Account,
+ * ExpenseController, ExpenseModel, LocalDate and Categories, so no adapter is
+ * discovered by reflection when an account is written or read. The adapters
+ * keep the JSON shape written by the reflective adapters, and Gson instances
+ * are thread-safe, so the instance is shared by every caller.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class AccountJson {
+    /**
+     * The shared Gson instance with the account adapters registered.
+     */
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Account.class, new AccountAdapter())
+            .registerTypeAdapter(ExpenseController.class, new ExpenseControllerAdapter())
+            .registerTypeAdapter(ExpenseModel.class, new ExpenseModelAdapter())
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+            .registerTypeAdapter(Categories.class, new CategoriesAdapter())
+            .create();
+
+    /**
+     * Not instantiable, every method is static.
+     */
+    private AccountJson() {}
+
+    /**
+     * Writes an account as JSON.
+     *
+     * @param acc the account to write. Must not be null.
+     * @return the JSON of the account
+     * @throws NullPointerException if acc is null
+     */
+    public static String toJson(Account acc) throws NullPointerException {
+        if(acc == null) throw new NullPointerException("acc parameter is null");
+        return GSON.toJson(acc, Account.class);
+    }
+
+    /**
+     * Reads an account from JSON.
+     *
+     * @param json the JSON of the account. Must not be null.
+     * @return the account read
+     * @throws NullPointerException if json is null
+     * @throws JsonParseException if json is not a valid account
+     */
+    public static Account fromJson(String json) throws NullPointerException, JsonParseException {
+        if(json == null) throw new NullPointerException("json parameter is null");
+        Account acc = GSON.fromJson(json, Account.class);
+        if(acc == null) throw new JsonParseException("The JSON is not an account");
+        return acc;
+    }
+
+    /**
+     * Reads an account from a character stream of JSON.
+     *
+     * @param reader the stream of the JSON of the account. Must not be null.
+     * @return the account read
+     * @throws NullPointerException if reader is null
+     * @throws JsonParseException if the stream is not a valid account
+     */
+    public static Account fromJson(Reader reader) throws NullPointerException, JsonParseException {
+        if(reader == null) throw new NullPointerException("reader parameter is null");
+        Account acc = GSON.fromJson(reader, Account.class);
+        if(acc == null) throw new JsonParseException("The JSON is not an account");
+        return acc;
+    }
+}
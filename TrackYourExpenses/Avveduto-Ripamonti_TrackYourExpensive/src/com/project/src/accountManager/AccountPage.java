@@ -1,9 +1,9 @@
 package com.project.src.accountManager;
 
-import com.google.gson.Gson;
 import com.project.src.Model;
 import com.project.src.expense.Color;
 import com.project.src.expense.ExpensesPage;
+import com.project.src.graphic.TextResources;
 import controlP5.Button;
 import controlP5.ControlP5;
 import controlP5.Textfield;
@@ -26,7 +26,8 @@ import java.nio.file.*;
 public class AccountPage {
     private PApplet processing;
     private ControlP5 cp5;
-    private DBManager database;
+    private Actions database;
+    private WriteBehindQueue writer;
     private Textfield username;
     private Textfield password;
     private Button showPsw;
@@ -47,16 +48,18 @@ public class AccountPage {
      * @param processing the Processing applet instance. Must not be null.
      * @param cp5        the ControlP5 instance for handling GUI controls. Must not be null.
      * @param database   the database manager instance for interacting with the database. Must not be null.
+     * @param writer     the queue writing the account changes in background. Must not be null.
      * @throws NullPointerException if any of the parameters are null.
      */
-    public AccountPage(PApplet processing, ControlP5 cp5, DBManager database) throws NullPointerException{
-        if(processing == null || cp5 == null || database == null) throw new NullPointerException("Almost one parameter passed is null");
+    public AccountPage(PApplet processing, ControlP5 cp5, Actions database, WriteBehindQueue writer) throws NullPointerException{
+        if(processing == null || cp5 == null || database == null || writer == null) throw new NullPointerException("Almost one parameter passed is null");
         this.processing = processing;
         this.cp5 = cp5;
         this.database = database;
+        this.writer = writer;
         passwordButtonController = 0;
-        username = cp5.addTextfield("accountUsername").setPosition(processing.width / 2 - 100, processing.height / 2 - 80).setSize(200, 40).setColorForeground(processing.color(255)).setFont(processing.createFont("arial", 20)).setColor(processing.color(255)).setColorActive(processing.color(255)).setColorBackground(0).setCaptionLabel("").setAutoClear(false).setLock(true).hide();
-        password = cp5.addTextfield("accountPassword").setPosition(username.getPosition()[0], username.getPosition()[1] + username.getHeight() + 10).setSize(200, 40).setFont(processing.createFont("arial", 20)).setColor(processing.color(255)).setColorActive(processing.color(255)).setColorBackground(0).setCaptionLabel("").setAutoClear(false).setLock(true).setPasswordMode(true).hide();
+        username = cp5.addTextfield("accountUsername").setPosition(processing.width / 2 - 100, processing.height / 2 - 80).setSize(200, 40).setColorForeground(processing.color(255)).setFont(TextResources.font(processing, TextResources.FONT, 20)).setColor(processing.color(255)).setColorActive(processing.color(255)).setColorBackground(0).setCaptionLabel("").setAutoClear(false).setLock(true).hide();
+        password = cp5.addTextfield("accountPassword").setPosition(username.getPosition()[0], username.getPosition()[1] + username.getHeight() + 10).setSize(200, 40).setFont(TextResources.font(processing, TextResources.FONT, 20)).setColor(processing.color(255)).setColorActive(processing.color(255)).setColorBackground(0).setCaptionLabel("").setAutoClear(false).setLock(true).setPasswordMode(true).hide();
         showPsw = cp5.addButton("accountShowPassword").setLabel("Show Password").setPosition(password.getPosition()[0] + password.getWidth() + 10, password.getPosition()[1]).setSize(100, 40).setColorBackground(processing.color(0, 0, 255)).hide();
         deleteAccount = cp5.addButton("deleteAccount").setLabel("Delete Account").setPosition(password.getPosition()[0], password.getPosition()[1] + password.getHeight() + 10).setSize(90, 40).setColorBackground(processing.color(255, 0, 0)).hide();
         deleteList = cp5.addButton("deleteList").setLabel("Delete List").setPosition(deleteAccount.getPosition()[0] + deleteAccount.getWidth() + 20, deleteAccount.getPosition()[1]).setSize(90, 40).setColorBackground(processing.color(255, 0, 0)).hide();
@@ -136,35 +139,42 @@ public class AccountPage {
     /**
      * Deletes the account from the database.
      *
-     * This method deletes the current account from the database.
+     * This method deletes the current account from the database in background,
+     * dropping its changes not yet written.
      */
     public void deleteAccount() {
-        database.deleteAccount(database.login(username.getText(), password.getText()));
+        writer.deleteAccount(Model.getAccount());
     }
 
     /**
      * Deletes the list of expenses for the current account.
      *
-     * This method resets the expenses for the current account and updates the database.
+     * This method resets the expenses for the current account and updates the database in background.
      */
     public void deleteList() {
         Account acc = Model.getAccount();
         acc.resetExpenses();
-        database.updateList(acc);
+        writer.updateList(acc);
     }
 
     /**
      * Exports the current account data to a JSON file.
      *
      * This method creates a directory if it does not exist and writes the account data to a JSON file.
+     * The expenses still loading are waited for, so the whole account is exported.
      */
     public void exportData() {
         dirCheck = false;
         writerCheck = false;
         successCheck= false;
-        Account data = database.login(username.getText(), password.getText());
-        Gson gson = new Gson();
-        String json = gson.toJson(data);
+        Account data = Model.getAccount();
+        try {
+            data.awaitLoaded();
+        } catch (IllegalStateException e) {
+            writerCheck = true;
+            return;
+        }
+        String json = AccountJson.toJson(data);
         Path directoryPath = Paths.get("data");
         try {
             if (Files.notExists(directoryPath))
@@ -0,0 +1,63 @@
+package com.project.src.accountManager;
+
+import com.google.gson.JsonParseException;
+import com.project.src.expense.ExpenseController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Streaming decoder of an account row, whatever its format.
+ * readHeader() reads the username and the password, then the expenses are read through ExpenseCursor.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+abstract class AccountReader implements ExpenseCursor {
+
+    /**
+     * Reads the account up to the start of its expenses.
+     *
+     * @return the account with its username and password and no expenses
+     * @throws IOException if the stream cannot be read or is not valid
+     * @throws JsonParseException if the JSON is not an account
+     */
+    abstract Account readHeader() throws IOException, JsonParseException;
+
+    /**
+     * Reads at most max expenses and passes them to sink in order.
+     *
+     * @param sink the consumer of the expenses read. Must not be null.
+     * @param max the maximum number of expenses to read
+     * @return the number of expenses read
+     * @throws IOException if the stream cannot be read or is not valid
+     * @throws JsonParseException if an expense of a JSON account is not valid
+     */
+    @Override
+    public abstract int read(Consumer<ExpenseController> sink, int max) throws IOException, JsonParseException;
+
+    /**
+     * Returns the format of the account being read.
+     *
+     * @return the format of the row
+     */
+    abstract AccountFormat getFormat();
+
+    /**
+     * Opens the reader of the account of the current row of the accounts table.
+     * The row is binary if its accountBin column is set, JSON otherwise.
+     *
+     * @param rs the result positioned on a row of the accounts table, including the accountObj and accountBin columns
+     * @return the reader of the account
+     * @throws SQLException if the row cannot be read
+     * @throws IOException if the binary header is not valid
+     */
+    static AccountReader open(ResultSet rs) throws SQLException, IOException {
+        InputStream binary = rs.getBinaryStream("accountBin");
+        if(binary != null) return new AccountBinaryReader(binary);
+        return new AccountStreamReader(rs.getCharacterStream("accountObj"), AccountJson.GSON);
+    }
+}
@@ -0,0 +1,168 @@
+package com.project.src.accountManager;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.project.src.expense.ExpenseController;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Streaming decoder of the JSON of an account.
+ *
+ * The JSON is read token by token from a character stream, so the text of the
+ * account is never held as a String. readHeader() reads the username and the
+ * password and stops at the start of the expense array, then read() decodes
+ * the expenses a few at a time. Gson writes the expenses after the username
+ * and the password; if they come first they are decoded while looking for the
+ * header and handed out by read() as well.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+class AccountStreamReader extends AccountReader {
+    private final JsonReader in;
+    private final TypeAdapter<ExpenseController> element;
+    private final ArrayList<ExpenseController> early;
+    private int earlyIndex;
+    private boolean inArray;
+
+    /**
+     * Constructs an AccountStreamReader reading the given character stream.
+     *
+     * @param reader the character stream of the JSON of the account. Must not be null.
+     * @param gson the Gson instance decoding the expenses. Must not be null.
+     * @throws NullPointerException if any of the parameters are null
+     */
+    AccountStreamReader(Reader reader, Gson gson) throws NullPointerException {
+        if(reader == null || gson == null) throw new NullPointerException("Almost one parameter passed is null");
+        in = new JsonReader(reader);
+        element = gson.getAdapter(ExpenseController.class);
+        early = new ArrayList<>();
+    }
+
+    /**
+     * Reads the account up to the start of its expenses.
+     *
+     * @return the account with its username and password and no expenses
+     * @throws IOException if the stream cannot be read
+     * @throws JsonParseException if the JSON is not an account
+     */
+    @Override
+    Account readHeader() throws IOException, JsonParseException {
+        String username = null;
+        String password = null;
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case "username" -> username = in.nextString();
+                case "password" -> password = in.nextString();
+                case "expenses" -> {
+                    if(in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        break;
+                    }
+                    in.beginArray();
+                    inArray = true;
+                    if(username != null && password != null) return account(username, password);
+                    while(in.hasNext()) {
+                        ExpenseController e = element.read(in);
+                        if(e != null) early.add(e);
+                    }
+                    in.endArray();
+                    inArray = false;
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return account(username, password);
+    }
+
+    /**
+     * Reads at most max expenses and passes them to sink in order.
+     * Once the expense array ends the rest of the account is skipped.
+     *
+     * @param sink the consumer of the expenses read. Must not be null.
+     * @param max the maximum number of expenses to read
+     * @return the number of expenses read
+     * @throws IOException if the stream cannot be read
+     * @throws JsonParseException if an expense is not valid
+     */
+    @Override
+    public int read(Consumer<ExpenseController> sink, int max) throws IOException, JsonParseException {
+        int n = 0;
+        while(n < max && earlyIndex < early.size()) {
+            sink.accept(early.get(earlyIndex));
+            early.set(earlyIndex++, null);
+            n++;
+        }
+        while(n < max && inArray) {
+            if(!in.hasNext()) {
+                finish();
+                break;
+            }
+            ExpenseController e = element.read(in);
+            if(e == null) continue;
+            sink.accept(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Checks if every expense has been read.
+     *
+     * @return true if there are no more expenses
+     */
+    @Override
+    public boolean isDone() {
+        return !inArray && earlyIndex == early.size();
+    }
+
+    /**
+     * Returns the format of the account being read.
+     *
+     * @return AccountFormat.JSON
+     */
+    @Override
+    AccountFormat getFormat() {
+        return AccountFormat.JSON;
+    }
+
+    /**
+     * Closes the expense array and skips the fields following it.
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    private void finish() throws IOException {
+        in.endArray();
+        inArray = false;
+        while(in.hasNext()) {
+            in.nextName();
+            in.skipValue();
+        }
+        in.endObject();
+    }
+
+    /**
+     * Builds the account read from the header.
+     *
+     * @param username the username read, null if missing
+     * @param password the password read, null if missing
+     * @return the account without expenses
+     * @throws JsonParseException if the username or the password are missing or blank
+     */
+    private static Account account(String username, String password) throws JsonParseException {
+        try {
+            return new Account(username, password);
+        } catch (NullPointerException | IllegalArgumentException e) {
+            throw new JsonParseException("The account has no valid username or password", e);
+        }
+    }
+}
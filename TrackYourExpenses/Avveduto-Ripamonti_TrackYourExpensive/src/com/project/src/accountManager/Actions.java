@@ -1,5 +1,7 @@
 package com.project.src.accountManager;
 import com.project.src.expense.ExpenseController;
+import com.project.src.expense.LocalDate;
+import com.project.src.expense.MonthlyRollup;
 import com.project.src.form.*;
 
 import java.util.ArrayList;
@@ -7,7 +9,9 @@ import java.util.ArrayList;
 /**
  * Interface to manage account actions.
  * This interface defines the essential methods for handling user account operations such as logging in,
- * registering, and updating user-specific lists.
+ * registering, and updating user-specific lists. The lists are only written as changes by appendChanges
+ * and replayChanges. It is implemented by DBManager on a MySQL server
+ * and by LocalDBManager on an embedded local file.
  *
  * @author Angelo Ripamonti & Luca Avveduto
  * @version 1.0
@@ -33,13 +37,6 @@ public interface Actions {
      */
     public boolean register(Account acc) throws UsernameException;
 
-    /**
-     * Updates the user's list of expenses.
-     *
-     * @param acc the account whose expense list is to be updated
-     */
-    public void updateList(Account acc);
-
     /**
      * Retrieves the account details for a given account.
      *
@@ -48,10 +45,71 @@ public interface Actions {
      */
     public ArrayList<ExpenseController> getExpensesByAccount(Account acc);
 
+    /**
+     * Retrieves the changes of the expenses of an account made after the given version.
+     * The changes are a reset with the whole list if the account was reset after that version,
+     * or if the version is not one of the account.
+     *
+     * @param acc the account whose changes are to be retrieved
+     * @param version the version the caller knows, ExpenseDelta.UNKNOWN_VERSION to get the whole list
+     * @return the changes from the given version to the current one
+     */
+    public ExpenseDelta getChangesSince(Account acc, long version);
+
+    /**
+     * Appends changes to the expenses of an account, incrementing its version.
+     * If another session changed the account after the base version of the changes,
+     * the two are merged and the returned version is not the next of the base one.
+     *
+     * @param acc the account the changes belong to, already containing them
+     * @param changes the changes to append
+     * @return the version of the account after the changes
+     */
+    public long appendChanges(Account acc, ExpenseDelta changes);
+
+    /**
+     * Appends changes read from a local journal, without the account they belong to.
+     * The changes are merged with the current expenses of the account, and applied only once
+     * however many times their journal entry is replayed.
+     *
+     * @param username the username of the account the changes belong to
+     * @param changes the changes to append, carrying their journal entry
+     * @return the version of the account after the changes, ExpenseDelta.UNKNOWN_VERSION if
+     * they had already been applied or the account does not exist anymore
+     */
+    public long replayChanges(String username, ExpenseDelta changes);
+
     /**
      * Deletes an account.
      *
      * @param acc the account to be deleted
      */
     public void deleteAccount(Account acc);
+
+    /**
+     * Computes the monthly aggregates of the expenses of an account in a range of dates:
+     * the number, sum, minimum and maximum of the amounts of every month and category.
+     *
+     * @param acc the account whose expenses are aggregated
+     * @param from the first day of the range
+     * @param to the day after the range
+     * @return the aggregates of the months of the range
+     */
+    public MonthlyRollup getMonthlyRollup(Account acc, LocalDate from, LocalDate to);
+
+    /**
+     * Retrieves a page of the expenses of an account ordered by date and id.
+     *
+     * @param acc the account whose expenses are to be retrieved
+     * @param after the key of the last expense of the previous page, null for the first page
+     * @param descending true to page from the latest expense to the earliest one
+     * @param pageSize the maximum number of expenses of the page
+     * @return the page of expenses following the key
+     */
+    public ExpenseSlice getExpensesAfter(Account acc, ExpenseKey after, boolean descending, int pageSize);
+
+    /**
+     * Releases the resources of the storage, such as its connections or files.
+     */
+    public void close();
 }
@@ -0,0 +1,82 @@
+package com.project.src.accountManager;
+
+/**
+ * Counters of the concurrent writes to the same account detected by DBManager.
+ *
+ * A write is a conflict when another session changed the account after the version
+ * the write is based on. A conflict is merged when no expense is lost, and overwritten
+ * when the expenses added by the other session since that version had to be dropped.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ConflictStats {
+    private long writes;
+    private long conflicts;
+    private long merged;
+    private long overwritten;
+
+    /**
+     * Records a write applied directly on the version it is based on.
+     */
+    synchronized void recordWrite() {
+        writes++;
+    }
+
+    /**
+     * Records a write whose base version was changed by another session.
+     *
+     * @param lost true if the changes of the other session were overwritten, false if they were merged
+     */
+    synchronized void recordConflict(boolean lost) {
+        writes++;
+        conflicts++;
+        if(lost) overwritten++;
+        else merged++;
+    }
+
+    /**
+     * Returns the number of writes to the accounts.
+     *
+     * @return the number of writes
+     */
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Returns the number of writes which found the account changed by another session.
+     *
+     * @return the number of conflicts
+     */
+    public synchronized long getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Returns the number of conflicts resolved keeping the changes of both sessions.
+     *
+     * @return the number of merged conflicts
+     */
+    public synchronized long getMerged() {
+        return merged;
+    }
+
+    /**
+     * Returns the number of conflicts resolved dropping the expenses added by the other session.
+     *
+     * @return the number of overwritten conflicts
+     */
+    public synchronized long getOverwritten() {
+        return overwritten;
+    }
+
+    /**
+     * Returns the fraction of the writes which found a conflict.
+     *
+     * @return the conflict ratio, 0 if there were no writes
+     */
+    public synchronized double getConflictRatio() {
+        return writes == 0 ? 0 : (double) conflicts / writes;
+    }
+}
@@ -0,0 +1,319 @@
+package com.project.src.accountManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of reusable JDBC connections.
+ *
+ * Connections handed out by the pool are proxies: calling close() on them
+ * gives the physical connection back to the pool instead of closing it, so
+ * the usual try-with-resources blocks keep working unchanged.
+ * Idle connections older than the idle timeout are evicted and every
+ * connection is validated before being borrowed.
+ * The errors of the pool carry the SQL states of the connection errors, so a
+ * write failed because no connection could be borrowed can be told from a
+ * write refused by the database.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ConnectionPool {
+    private final String uri;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long borrowTimeout;
+    private final int validationTimeout;
+    private final Semaphore permits;
+    private final ArrayDeque<IdleConnection> idle;
+    private final AtomicLong borrowCount;
+    private final AtomicLong waitTime;
+    private static final String CONNECTION_FAILURE = "08001";
+    private static final String NO_CONNECTION = "08003";
+    private int active;
+    private boolean closed;
+
+    /**
+     * Constructs a ConnectionPool for the given database URI.
+     *
+     * @param uri the JDBC URI used to open physical connections. Must not be null.
+     * @param maxSize the maximum number of connections open at the same time. Must be more than 0.
+     * @param idleTimeout the milliseconds after which an unused connection is closed. Must not be less than 0.
+     * @param borrowTimeout the maximum milliseconds to wait for a free connection. Must not be less than 0.
+     * @param validationTimeout the seconds given to the driver to validate a connection. Must not be less than 0.
+     * @throws NullPointerException if uri is null
+     * @throws IllegalArgumentException if any of the numeric parameters are out of range
+     */
+    public ConnectionPool(String uri, int maxSize, long idleTimeout, long borrowTimeout, int validationTimeout) throws NullPointerException, IllegalArgumentException {
+        if(uri == null) throw new NullPointerException("uri parameter is null");
+        if(maxSize <= 0 || idleTimeout < 0 || borrowTimeout < 0 || validationTimeout < 0) throw new IllegalArgumentException("Almost one parameter passed is out of range");
+        this.uri = uri;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.borrowTimeout = borrowTimeout;
+        this.validationTimeout = validationTimeout;
+        permits = new Semaphore(maxSize, true);
+        idle = new ArrayDeque<>();
+        borrowCount = new AtomicLong();
+        waitTime = new AtomicLong();
+        active = 0;
+        closed = false;
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if no valid idle connection is available.
+     * The returned connection must be closed to give it back to the pool.
+     *
+     * @return a valid connection
+     * @throws SQLException if the pool is closed, the wait times out or a connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if(!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) throw new SQLException("Timed out waiting for a database connection", CONNECTION_FAILURE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", CONNECTION_FAILURE);
+        }
+        waitTime.addAndGet(System.nanoTime() - start);
+        borrowCount.incrementAndGet();
+        try {
+            Connection physical = takeIdle();
+            if(physical == null) physical = DriverManager.getConnection(uri);
+            synchronized (this) {
+                active++;
+            }
+            return wrap(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still valid.
+     * Expired or broken connections found on the way are closed.
+     *
+     * @return a valid idle connection, or null if there is none
+     * @throws SQLException if the pool is closed
+     */
+    private Connection takeIdle() throws SQLException {
+        while(true) {
+            IdleConnection candidate;
+            synchronized (this) {
+                if(closed) throw new SQLException("Connection pool is closed", NO_CONNECTION);
+                evictExpired();
+                candidate = idle.pollFirst();
+            }
+            if(candidate == null) return null;
+            if(isValid(candidate.connection)) return candidate.connection;
+            closeQuietly(candidate.connection);
+        }
+    }
+
+    /**
+     * Gives a physical connection back to the pool.
+     *
+     * @param physical the physical connection to give back
+     */
+    private void release(Connection physical) {
+        boolean keep;
+        synchronized (this) {
+            active--;
+            keep = !closed && isOpen(physical);
+            if(keep) idle.addFirst(new IdleConnection(physical, System.currentTimeMillis()));
+            evictExpired();
+        }
+        if(!keep) closeQuietly(physical);
+        permits.release();
+    }
+
+    /**
+     * Closes the idle connections which have not been used for longer than the idle timeout.
+     * Must be called while holding the pool lock.
+     */
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<IdleConnection> it = idle.descendingIterator();
+        while(it.hasNext()) {
+            IdleConnection c = it.next();
+            if(now - c.lastUsed < idleTimeout) break;
+            it.remove();
+            closeQuietly(c.connection);
+        }
+    }
+
+    /**
+     * Closes every idle connection and refuses further borrows.
+     * Borrowed connections are closed when they are given back.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for(IdleConnection c : idle) closeQuietly(c.connection);
+            idle.clear();
+        }
+    }
+
+    /**
+     * Validates a connection before it is handed out.
+     *
+     * @param c the connection to validate
+     * @return true if the connection can be used
+     */
+    private boolean isValid(Connection c) {
+        try {
+            return c.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks if a connection has not been closed.
+     *
+     * @param c the connection to check
+     * @return true if the connection is still open
+     */
+    private boolean isOpen(Connection c) {
+        try {
+            return !c.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes a connection ignoring any error.
+     *
+     * @param c the connection to close
+     */
+    private void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Wraps a physical connection in a proxy that gives it back to the pool when closed.
+     * A transaction left open is rolled back first. If the connection cannot be reset it is closed
+     * instead of being kept, without failing the close, since the work of the borrower is already over,
+     * and its permit is given back in any case.
+     *
+     * @param physical the physical connection
+     * @return the pooled connection
+     */
+    private Connection wrap(Connection physical) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close" -> {
+                        if(!released) {
+                            released = true;
+                            try {
+                                if(!physical.getAutoCommit()) {
+                                    physical.rollback();
+                                    physical.setAutoCommit(true);
+                                }
+                            } catch (SQLException e) {
+                                closeQuietly(physical);
+                            } finally {
+                                release(physical);
+                            }
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return released || physical.isClosed();
+                    }
+                }
+                if(released) throw new SQLException("Connection has been given back to the pool");
+                try {
+                    return method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * Returns the number of connections currently borrowed.
+     *
+     * @return the number of active connections
+     */
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    /**
+     * Returns the number of open connections waiting in the pool.
+     *
+     * @return the number of idle connections
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the maximum number of connections the pool can open.
+     *
+     * @return the pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the total time spent by callers waiting for a free connection.
+     *
+     * @return the total wait time in milliseconds
+     */
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTime.get());
+    }
+
+    /**
+     * Returns the average time spent waiting for a free connection.
+     *
+     * @return the average wait time in milliseconds, 0 if nothing has been borrowed yet
+     */
+    public double getAverageWaitTime() {
+        long count = borrowCount.get();
+        return count == 0 ? 0 : waitTime.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * An idle physical connection together with the time it was given back.
+     */
+    private static class IdleConnection {
+        private final Connection connection;
+        private final long lastUsed;
+
+        /**
+         * Constructs an IdleConnection.
+         *
+         * @param connection the physical connection
+         * @param lastUsed the time the connection was given back, in milliseconds
+         */
+        IdleConnection(Connection connection, long lastUsed) {
+            this.connection = connection;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -1,33 +1,178 @@
 package com.project.src.accountManager;
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.project.src.expense.Categories;
 import com.project.src.expense.ExpenseController;
+import com.project.src.expense.LocalDate;
+import com.project.src.expense.Money;
+import com.project.src.expense.MonthlyRollup;
 import com.project.src.form.AccessException;
 import com.project.src.form.UsernameException;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Implements the Actions interface for database operations.
  * This class provides methods to interact with a database for account management,
  * including logging in, registering, and updating user expense lists.
+ * Before its first statement the schema is brought to the version needed by the storage mode
+ * by ExpenseTableMigration, so an existing database is migrated on the first start.
  *
  * @author Angelo Ripamonti & Luca Avveduto
  * @version 1.0
  */
 public class DBManager implements Actions{
     private final String URI;
+    private final ConnectionPool pool;
+    private final StorageMode mode;
+    private final AccountCache cache;
+    private final ConflictStats conflicts;
+    private final ExecutorService loader;
+    private final ConcurrentHashMap<String, AccountFormat> formats;
+    private volatile AccountFormat newAccountFormat;
+    private volatile boolean schemaChecked;
+    /**
+     * The number of expenses read while logging in, enough to fill the first screen of the expense list.
+     */
+    static final int FIRST_BATCH = 64;
+    private static final int LOAD_BATCH = 1024;
+    /**
+     * The fetch size making the driver stream the rows of a result one at a time instead of buffering them all
+     * in executeQuery(). The connection cannot run other statements until the result is closed.
+     */
+    private static final int STREAM_ROWS = Integer.MIN_VALUE;
+    /**
+     * The query of the expense rows of an account added in a range of versions, in insertion order.
+     * The rows of a later version always have higher ids, so ordering by version and id follows the
+     * index of the versions and the rows are sent as they are found, without sorting them first.
+     */
+    private static final String SELECT_EXPENSES = "SELECT name, expenseDate, category, amount, description FROM defaultdb.expenses WHERE username=? AND version>? AND version<=? ORDER BY version, id";
+    /**
+     * The query of at most a number of expense rows of an account up to a version, in insertion order,
+     * starting after the row of a version and id, with the version and id of each row.
+     */
+    private static final String SELECT_EXPENSES_FROM = "SELECT name, expenseDate, category, amount, description, version, id FROM defaultdb.expenses "
+            + "WHERE username=? AND version<=? AND (version>? OR (version=? AND id>?)) ORDER BY version, id LIMIT ?";
 
     /**
-     * Constructs a DBManager with default database connection parameters.
+     * Constructs a DBManager with default database connection parameters,
+     * a pool of at most 4 connections, the expenses stored as a JSON blob
+     * and a cache of at most 100000 expenses.
      */
     public DBManager(){
+        this(4, 60_000, 10_000, 2, StorageMode.JSON_BLOB, 100_000);
+    }
+
+    /**
+     * Constructs a DBManager with default database connection parameters
+     * and the given connection pool and cache configuration.
+     *
+     * @param maxPoolSize the maximum number of connections open at the same time. Must be more than 0.
+     * @param idleTimeout the milliseconds after which an unused connection is closed. Must not be less than 0.
+     * @param borrowTimeout the maximum milliseconds to wait for a free connection. Must not be less than 0.
+     * @param validationTimeout the seconds given to the driver to validate a connection before it is used. Must not be less than 0.
+     * @param mode how the expenses are stored in the database. Must not be null.
+     * @param cacheSize the maximum number of expenses kept in the read cache. Must not be less than 0.
+     * @throws NullPointerException if mode is null
+     * @throws IllegalArgumentException if any of the parameters are out of range
+     */
+    public DBManager(int maxPoolSize, long idleTimeout, long borrowTimeout, int validationTimeout, StorageMode mode, int cacheSize) throws NullPointerException, IllegalArgumentException{
+        if(mode == null) throw new NullPointerException("mode parameter is null");
         URI = "";
+        pool = new ConnectionPool(URI, maxPoolSize, idleTimeout, borrowTimeout, validationTimeout);
+        this.mode = mode;
+        cache = new AccountCache(cacheSize);
+        conflicts = new ConflictStats();
+        loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "expense-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        formats = new ConcurrentHashMap<>();
+        newAccountFormat = AccountFormat.JSON;
+    }
+
+    /**
+     * Sets the format the accounts registered from now on are written in.
+     * The accounts already registered keep the format of their row.
+     *
+     * @param format the format of the new accounts. Must not be null.
+     * @throws NullPointerException if format is null
+     */
+    public void setNewAccountFormat(AccountFormat format) throws NullPointerException {
+        if(format == null) throw new NullPointerException("format parameter is null");
+        newAccountFormat = format;
+    }
+
+    /**
+     * Returns the format the account is written in, the one of its row when it was last read or written.
+     *
+     * @param username the account username. Must not be null.
+     * @return the format of the account
+     * @throws NullPointerException if username is null
+     */
+    public AccountFormat getFormat(String username) throws NullPointerException {
+        if(username == null) throw new NullPointerException("username parameter is null");
+        return formats.getOrDefault(username, newAccountFormat);
+    }
+
+    /**
+     * Changes the format of an account and rewrites its row in the new format.
+     *
+     * @param acc the account to convert. Must not be null.
+     * @param format the new format. Must not be null.
+     * @throws NullPointerException if any of the parameters are null
+     * @throws RuntimeException if there are connection problems
+     */
+    public void setFormat(Account acc, AccountFormat format) throws NullPointerException, RuntimeException {
+        if(acc == null || format == null) throw new NullPointerException("Almost one parameter passed is null");
+        formats.put(acc.getUsername(), format);
+        final String command = "UPDATE defaultdb.accounts SET accountObj=?, accountBin=? WHERE username=?";
+        try(
+                Connection conn = connection();
+                PreparedStatement stmt = conn.prepareStatement(command);
+        ){
+            bindAccount(stmt, mode == StorageMode.EXPENSE_TABLE ? new Account(acc.getUsername(), acc.getPassword()) : acc, format);
+            stmt.setString(3, acc.getUsername());
+            stmt.executeUpdate();
+        }
+        catch(Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the accountObj and accountBin parameters, the first two of the statement, to the account in the given format.
+     * A binary account keeps in accountObj the JSON of the account without its expenses.
+     *
+     * @param stmt the statement to bind
+     * @param acc the account to write
+     * @param format the format to write the account in
+     * @throws SQLException if the parameters cannot be set
+     */
+    private static void bindAccount(PreparedStatement stmt, Account acc, AccountFormat format) throws SQLException {
+        if(format == AccountFormat.JSON) {
+            stmt.setString(1, AccountJson.toJson(acc));
+            stmt.setNull(2, Types.BLOB);
+            return;
+        }
+        stmt.setString(1, AccountJson.toJson(new Account(acc.getUsername(), acc.getPassword())));
+        stmt.setBytes(2, AccountBinaryCodec.encode(acc, format == AccountFormat.COMPRESSED_BINARY));
     }
 
     /**
      * Logs into an account in the database.
+     * The account, JSON or binary, is decoded as a stream and only the expenses of the first screen
+     * are read before returning. The rest are read in background and added to the account
+     * by Account.drainLoaded(), so the expense list can be shown while the tail is read.
+     * With the expense table storage mode only the rows of the first screen are requested, and the
+     * load of the rest is deferred until the whole list is needed, see Account.loadAll(): a list read
+     * by pages does not need it, so the account is never read whole while only its pages are shown.
+     * The deferred load streams the rows after the first screen, at the version logged into.
      *
      * @param user the account username. Must not be null or blank
      * @param psw the account password. Must not be null or blank
@@ -41,23 +186,166 @@ public class DBManager implements Actions{
         if(user == null || psw == null) throw new NullPointerException("Almost one parameter passed is null");
         if(user.isBlank() || psw.isBlank()) throw new IllegalArgumentException("Almost one parameter passed is blank");
         final String query = "SELECT * FROM defaultdb.accounts WHERE username=? AND password=?";
-        try(
-                Connection con = DriverManager.getConnection(URI);
-                PreparedStatement st = con.prepareStatement(query);
-        ) {
+        Connection con = null;
+        PreparedStatement st = null;
+        try {
+            con = connection();
+            st = con.prepareStatement(query);
             st.setString(1,user);
             st.setString(2,psw);
             ResultSet rs = st.executeQuery();
-            Gson gson = new Gson();
-            Type listType = new TypeToken<Account>() {}.getType();
-            Account res=null;
-            while(rs.next()){
-                res=gson.fromJson(rs.getString("accountObj"), listType);
+            if(!rs.next()) return null;
+            long generation = cache.generation();
+            long version = rs.getLong("version");
+            AccountReader reader = AccountReader.open(rs);
+            Account res = reader.readHeader();
+            res.setVersion(version);
+            formats.put(user, reader.getFormat());
+            if(mode == StorageMode.EXPENSE_TABLE) {
+                st.close();
+                st = selectExpensesFrom(con, user, version, ExpenseDelta.UNKNOWN_VERSION, 0, FIRST_BATCH);
+                RowCursor first = new RowCursor(st.executeQuery());
+                if(first.read(res::addExpense, FIRST_BATCH) < FIRST_BATCH) {
+                    cache.putIfUnchanged(user, res.snapshot().getExpensesView(), generation);
+                    return res;
+                }
+                ExpenseLoad load = new ExpenseLoad();
+                long lastVersion = first.lastVersion;
+                long lastId = first.lastId;
+                load.defer(() -> loader.execute(() -> loadRows(load, user, version, lastVersion, lastId)));
+                res.startLoading(load);
+                return res;
             }
+            reader.read(res::addExpense, FIRST_BATCH);
+            if(reader.isDone()) {
+                cache.putIfUnchanged(user, res.snapshot().getExpensesView(), generation);
+                return res;
+            }
+            ExpenseLoad load = new ExpenseLoad();
+            res.startLoading(load);
+            Connection c = con;
+            PreparedStatement s = st;
+            loader.execute(() -> loadRemaining(load, reader, s, c));
+            con = null;
+            st = null;
             return res;
         }catch (Exception e) {
             throw new AccessException("Credentials are not correct. Or database error");
         }
+        finally {
+            closeQuietly(st);
+            closeQuietly(con);
+        }
+    }
+
+    /**
+     * Streams the expense rows of an account after the first screen and hands them to the account in batches.
+     * Runs on the loader thread once the deferred load is started.
+     *
+     * @param load the load the batches are offered to
+     * @param user the account username
+     * @param version the version logged into, the last one of the rows read
+     * @param lastVersion the version of the last row of the first screen
+     * @param lastId the id of the last row of the first screen
+     */
+    private void loadRows(ExpenseLoad load, String user, long version, long lastVersion, long lastId) {
+        Connection con = null;
+        PreparedStatement st = null;
+        try {
+            con = connection();
+            st = selectExpensesFrom(con, user, version, lastVersion, lastId, Long.MAX_VALUE);
+            st.setFetchSize(STREAM_ROWS);
+            RowCursor cursor = new RowCursor(st.executeQuery());
+            loadRemaining(load, cursor, st, con);
+        }
+        catch(Exception e) {
+            closeQuietly(st);
+            closeQuietly(con);
+            load.fail(e);
+        }
+    }
+
+    /**
+     * Prepares the query of the expense rows of an account after a row, in insertion order.
+     *
+     * @param con the connection to use
+     * @param user the account username
+     * @param version the last version of the rows to read
+     * @param lastVersion the version of the row after which the rows are read
+     * @param lastId the id of the row after which the rows are read
+     * @param limit the maximum number of rows to read
+     * @return the statement, ready to be executed
+     * @throws SQLException if the statement cannot be prepared
+     */
+    private static PreparedStatement selectExpensesFrom(Connection con, String user, long version, long lastVersion, long lastId, long limit) throws SQLException {
+        PreparedStatement st = con.prepareStatement(SELECT_EXPENSES_FROM, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        st.setString(1, user);
+        st.setLong(2, version);
+        st.setLong(3, lastVersion);
+        st.setLong(4, lastVersion);
+        st.setLong(5, lastId);
+        st.setLong(6, limit);
+        return st;
+    }
+
+    /**
+     * Reads the expenses left after the first screen and hands them to the account in batches.
+     * Runs on the loader thread and then closes the statement and the connection of the query.
+     * The list read this way is not cached, the next read of the account caches it.
+     *
+     * @param load the load the batches are offered to
+     * @param cursor the cursor positioned after the first screen
+     * @param st the statement of the query read by the cursor
+     * @param con the connection of the query
+     */
+    private static void loadRemaining(ExpenseLoad load, ExpenseCursor cursor, Statement st, Connection con) {
+        try(con; st) {
+            while(!cursor.isDone() && !load.isCancelled()) {
+                ArrayList<ExpenseController> batch = new ArrayList<>(LOAD_BATCH);
+                cursor.read(batch::add, LOAD_BATCH);
+                if(!batch.isEmpty()) load.offer(batch);
+            }
+            load.complete();
+        }
+        catch(Exception e) {
+            load.fail(e);
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool, upgrading the schema first if it has not been checked yet.
+     *
+     * @return the connection, to be closed after use
+     * @throws SQLException if the schema cannot be upgraded or no connection can be borrowed
+     */
+    private Connection connection() throws SQLException {
+        if(!schemaChecked) checkSchema();
+        return pool.getConnection();
+    }
+
+    /**
+     * Brings the schema to the version needed by the storage mode, once.
+     * If it fails it is tried again by the next statement.
+     *
+     * @throws SQLException if the schema cannot be upgraded
+     */
+    private synchronized void checkSchema() throws SQLException {
+        if(schemaChecked) return;
+        new ExpenseTableMigration(pool).upgrade(mode);
+        schemaChecked = true;
+    }
+
+    /**
+     * Closes a statement or a connection, ignoring the errors.
+     *
+     * @param resource the resource to close, may be null
+     */
+    private static void closeQuietly(AutoCloseable resource) {
+        if(resource == null) return;
+        try {
+            resource.close();
+        } catch (Exception ignored) {
+        }
     }
 
     /**
@@ -69,18 +357,23 @@ public class DBManager implements Actions{
      */
     @Override
     public boolean register(Account acc) throws UsernameException {
-        final String query = "INSERT INTO defaultdb.accounts (username, password, accountObj) VALUES (?, ?, ?)";
+        final String query = "INSERT INTO defaultdb.accounts (accountObj, accountBin, username, password) VALUES (?, ?, ?, ?)";
         try(
-                Connection conn = DriverManager.getConnection(URI);
+                Connection conn = connection();
                 PreparedStatement stmt = conn.prepareStatement(query);
         ){
-            Gson gson = new Gson();
-            String json = gson.toJson(acc);
-
-            stmt.setString(1,acc.getUsername());
-            stmt.setString(2,acc.getPassword());
-            stmt.setString(3, json);
-            stmt.executeUpdate();
+            AccountFormat format = newAccountFormat;
+            bindAccount(stmt, mode == StorageMode.EXPENSE_TABLE ? new Account(acc.getUsername(), acc.getPassword()) : acc, format);
+            stmt.setString(3,acc.getUsername());
+            stmt.setString(4,acc.getPassword());
+            formats.put(acc.getUsername(), format);
+            if(mode == StorageMode.EXPENSE_TABLE) {
+                conn.setAutoCommit(false);
+                stmt.executeUpdate();
+                insertExpenses(conn, acc.getUsername(), acc.getExpenses());
+                conn.commit();
+            }
+            else stmt.executeUpdate();
         }
         catch(Exception e) {
             throw new UsernameException("An account with that username already exists. Or database error");
@@ -89,52 +382,478 @@ public class DBManager implements Actions{
     }
 
     /**
-     * Updates the user's list of expenses in the database.
+     * Appends changes to the expenses of an account in a single transaction, incrementing its version.
+     * The write is a compare-and-set on the base version of the changes, so when no other session
+     * wrote the account it costs a single conditional update and takes no lock before it.
+     * Otherwise the changes are merged with the current state of the account by mergeChanges.
+     * Changes recorded in a journal are skipped if their entry has already been applied,
+     * and their entry is recorded in the same transaction.
+     * The cached list of the account is invalidated.
      *
-     * @param acc the account whose expense list is to be updated. Must not be null
-     * @throws RuntimeException if there are connection problems or acc is null
+     * @param acc the account the changes belong to, already containing them. Must not be null
+     * @param changes the changes to append. Must not be null
+     * @return the version of the account after the changes, different from the next of the base version if they were merged,
+     * ExpenseDelta.UNKNOWN_VERSION if they had already been applied
+     * @throws RuntimeException if there are connection problems or any of the parameters are null, caused by the SQL error if any
      */
     @Override
-    public void updateList(Account acc) throws RuntimeException{
-        final String command = "UPDATE defaultdb.accounts SET accountObj=? WHERE username=?";
-        try(
-                Connection conn = DriverManager.getConnection(URI);
-                PreparedStatement stmt = conn.prepareStatement(command);
-        ){
-            Gson gson = new Gson();
-            String json = gson.toJson(acc);
-            stmt.setString(2,acc.getUsername());
-            stmt.setString(1,json);
+    public long appendChanges(Account acc, ExpenseDelta changes) throws RuntimeException{
+        if(acc == null || changes == null) throw new RuntimeException("Almost one parameter passed is null");
+        String user = acc.getUsername();
+        try(Connection conn = connection()){
+            conn.setAutoCommit(false);
+            long version;
+            if(isApplied(conn, user, changes)) version = ExpenseDelta.UNKNOWN_VERSION;
+            else if(changes.getBaseVersion() >= 0 && compareAndSet(conn, acc, changes)) {
+                version = changes.getBaseVersion() + 1;
+                conflicts.recordWrite();
+            }
+            else version = mergeChanges(conn, user, changes);
+            conn.commit();
+            return version;
+        }
+        catch(Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        finally {
+            cache.invalidate(user);
+        }
+    }
+
+    /**
+     * Appends changes read from a journal, without the account they belong to, in a single transaction.
+     * The changes are always merged with the current state of the account by mergeChanges,
+     * and skipped if their entry has already been applied.
+     * The cached list of the account is invalidated.
+     *
+     * @param username the account username. Must not be null
+     * @param changes the changes to append, carrying their journal entry. Must not be null
+     * @return the version of the account after the changes, ExpenseDelta.UNKNOWN_VERSION if
+     * they had already been applied or the account does not exist anymore
+     * @throws RuntimeException if there are connection problems or any of the parameters are null, caused by the SQL error if any
+     */
+    @Override
+    public long replayChanges(String username, ExpenseDelta changes) throws RuntimeException{
+        if(username == null || changes == null) throw new RuntimeException("Almost one parameter passed is null");
+        try(Connection conn = connection()){
+            conn.setAutoCommit(false);
+            long version = ExpenseDelta.UNKNOWN_VERSION;
+            if(!isApplied(conn, username, changes)) {
+                try(PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM defaultdb.accounts WHERE username=?")) {
+                    stmt.setString(1, username);
+                    try(ResultSet rs = stmt.executeQuery()) {
+                        if(rs.next()) version = mergeChanges(conn, username, changes);
+                    }
+                }
+            }
+            conn.commit();
+            return version;
+        }
+        catch(Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        finally {
+            cache.invalidate(username);
+        }
+    }
+
+    /**
+     * Checks if changes recorded in a journal have already been applied, locking the record of
+     * the last entry applied of the journal and the account, and records their entry otherwise.
+     * Changes not recorded in a journal are never applied.
+     *
+     * @param conn the connection of the transaction. Must not be null
+     * @param username the account username. Must not be null
+     * @param changes the changes to check. Must not be null
+     * @return true if the entry of the changes, or a later one, has already been applied
+     * @throws SQLException if the statements fail
+     */
+    private static boolean isApplied(Connection conn, String username, ExpenseDelta changes) throws SQLException {
+        if(changes.getJournal() == null) return false;
+        try(PreparedStatement stmt = conn.prepareStatement("SELECT entry FROM defaultdb.journal_acks WHERE journalId=? AND username=? FOR UPDATE")) {
+            stmt.setString(1, changes.getJournal());
+            stmt.setString(2, username);
+            try(ResultSet rs = stmt.executeQuery()) {
+                if(rs.next() && rs.getLong(1) >= changes.getEntry()) return true;
+            }
+        }
+        try(PreparedStatement stmt = conn.prepareStatement("INSERT INTO defaultdb.journal_acks (journalId, username, entry) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE entry=VALUES(entry)")) {
+            stmt.setString(1, changes.getJournal());
+            stmt.setString(2, username);
+            stmt.setLong(3, changes.getEntry());
             stmt.executeUpdate();
         }
+        return false;
+    }
+
+    /**
+     * Writes changes only if the account is still at their base version.
+     * With the expense table storage mode only the added rows are written, tagged with the new version,
+     * and a reset deletes the rows first. Otherwise the whole account is written in its format,
+     * unless it is a snapshot taken while its expenses were loading, whose changes are merged
+     * with the stored list instead.
+     *
+     * @param conn the connection of the transaction. Must not be null
+     * @param acc the account the changes belong to. Must not be null
+     * @param changes the changes to write. Must not be null
+     * @return true if the changes have been written, false if another session changed the account
+     * @throws SQLException if the statements fail
+     */
+    private boolean compareAndSet(Connection conn, Account acc, ExpenseDelta changes) throws SQLException {
+        String user = acc.getUsername();
+        long version = changes.getBaseVersion() + 1;
+        if(mode == StorageMode.EXPENSE_TABLE) {
+            if(setVersion(conn, user, changes.getBaseVersion(), version, changes.isReset()) == 0) return false;
+            if(changes.isReset()) deleteExpenses(conn, user);
+            insertExpenses(conn, user, changes.getAdded(), version);
+            return true;
+        }
+        if(acc.isPartial()) return false;
+        try(PreparedStatement stmt = conn.prepareStatement("UPDATE defaultdb.accounts SET accountObj=?, accountBin=?, version=?, resetVersion=IF(?, ?, resetVersion) WHERE username=? AND version=?")) {
+            bindAccount(stmt, acc, getFormat(user));
+            stmt.setLong(3, version);
+            stmt.setBoolean(4, changes.isReset());
+            stmt.setLong(5, version);
+            stmt.setString(6, user);
+            stmt.setLong(7, changes.getBaseVersion());
+            return stmt.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Writes changes whose base version is no longer the current one, locking the account row.
+     * Added expenses are always merged after the current list, since additions do not depend on each other.
+     * A reset keeps the expenses added by the other sessions after its base version, if the rows are
+     * stored in the expense table and none of them reset the account too. In the other cases the
+     * reset overwrites the other changes. Both outcomes are recorded in the conflict statistics,
+     * unless the base version is unknown or still the current one. Only the username of the
+     * account is needed, so changes can be merged without the account they belong to.
+     *
+     * @param conn the connection of the transaction. Must not be null
+     * @param user the account username. Must not be null
+     * @param changes the changes to write. Must not be null
+     * @return the version of the account after the changes
+     * @throws SQLException if the statements fail or the account does not exist
+     */
+    private long mergeChanges(Connection conn, String user, ExpenseDelta changes) throws SQLException {
+        long base = changes.getBaseVersion();
+        long current;
+        long reset;
+        try(PreparedStatement stmt = conn.prepareStatement("SELECT version, resetVersion FROM defaultdb.accounts WHERE username=? FOR UPDATE")) {
+            stmt.setString(1, user);
+            try(ResultSet rs = stmt.executeQuery()) {
+                if(!rs.next()) throw new SQLException("The account " + user + " does not exist");
+                current = rs.getLong(1);
+                reset = rs.getLong(2);
+            }
+        }
+        long version = current + 1;
+        boolean othersOnlyAdded = base >= 0 && base <= current && reset <= base;
+        boolean lost = false;
+        if(mode == StorageMode.EXPENSE_TABLE) {
+            List<ExpenseController> theirs = List.of();
+            if(changes.isReset()) {
+                if(othersOnlyAdded) theirs = selectExpenses(conn, user, base, current);
+                else lost = true;
+                deleteExpenses(conn, user);
+            }
+            insertExpenses(conn, user, changes.getAdded(), version);
+            insertExpenses(conn, user, theirs, version);
+            setVersion(conn, user, current, version, changes.isReset());
+        }
+        else {
+            Account merged = readAccount(conn, user, !changes.isReset());
+            if(changes.isReset()) {
+                lost = base != current;
+                merged = new Account(merged.getUsername(), merged.getPassword(), new ArrayList<>(changes.getAdded()));
+            }
+            else for(ExpenseController e : changes.getAdded()) merged.addExpense(e);
+            try(PreparedStatement stmt = conn.prepareStatement("UPDATE defaultdb.accounts SET accountObj=?, accountBin=?, version=?, resetVersion=IF(?, ?, resetVersion) WHERE username=?")) {
+                bindAccount(stmt, merged, getFormat(user));
+                stmt.setLong(3, version);
+                stmt.setBoolean(4, changes.isReset());
+                stmt.setLong(5, version);
+                stmt.setString(6, user);
+                stmt.executeUpdate();
+            }
+        }
+        if(base >= 0 && base != current) conflicts.recordConflict(lost);
+        else conflicts.recordWrite();
+        return version;
+    }
+
+    /**
+     * Moves the version of an account from an expected value to a new one.
+     *
+     * @param conn the connection of the transaction. Must not be null
+     * @param username the account username. Must not be null
+     * @param expected the version the account must have
+     * @param version the new version
+     * @param reset true if the new version resets the expenses
+     * @return the number of updated rows, 0 if the account was not at the expected version
+     * @throws SQLException if the update fails
+     */
+    private static int setVersion(Connection conn, String username, long expected, long version, boolean reset) throws SQLException {
+        try(PreparedStatement stmt = conn.prepareStatement("UPDATE defaultdb.accounts SET version=?, resetVersion=IF(?, ?, resetVersion) WHERE username=? AND version=?")) {
+            stmt.setLong(1, version);
+            stmt.setBoolean(2, reset);
+            stmt.setLong(3, version);
+            stmt.setString(4, username);
+            stmt.setLong(5, expected);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads an account stored as a JSON or binary object, at the version of its row.
+     *
+     * @param conn the connection to use. Must not be null
+     * @param username the account username. Must not be null
+     * @param expenses true to read its expenses too, false to read only its credentials
+     * @return the account, with all its expenses if requested
+     * @throws SQLException if the query fails, the account does not exist or it cannot be decoded
+     */
+    private Account readAccount(Connection conn, String username, boolean expenses) throws SQLException {
+        try(PreparedStatement stmt = conn.prepareStatement("SELECT * FROM defaultdb.accounts WHERE username=?")) {
+            stmt.setString(1, username);
+            try(ResultSet rs = stmt.executeQuery()) {
+                if(!rs.next()) throw new SQLException("The account " + username + " does not exist");
+                AccountReader reader = AccountReader.open(rs);
+                Account res = reader.readHeader();
+                res.setVersion(rs.getLong("version"));
+                formats.put(username, reader.getFormat());
+                while(expenses && !reader.isDone()) reader.read(res::addExpense, Integer.MAX_VALUE);
+                return res;
+            }
+        } catch (IOException | JsonParseException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Retrieves the changes of the expenses of an account made after the given version.
+     * With the expense table storage mode only the rows added after the version are read,
+     * unless the account was reset after it. Otherwise any change is a reset with the whole list,
+     * read with its version from the same row.
+     * Both reads use the same connection and transaction, so they see the same state of the database.
+     *
+     * @param acc the account whose changes are to be retrieved. Must not be null
+     * @param version the version the caller knows, ExpenseDelta.UNKNOWN_VERSION to get the whole list
+     * @return the changes from the given version to the current one
+     * @throws RuntimeException if there are connection problems or acc is null
+     */
+    @Override
+    public ExpenseDelta getChangesSince(Account acc, long version) throws RuntimeException{
+        if(acc == null) throw new RuntimeException("acc parameter is null");
+        String user = acc.getUsername();
+        try(Connection conn = connection()){
+            conn.setAutoCommit(false);
+            long current;
+            long reset;
+            try(PreparedStatement stmt = conn.prepareStatement("SELECT version, resetVersion FROM defaultdb.accounts WHERE username=?")) {
+                stmt.setString(1, user);
+                try(ResultSet rs = stmt.executeQuery()) {
+                    if(!rs.next()) throw new RuntimeException("The account does not exist");
+                    current = rs.getLong(1);
+                    reset = rs.getLong(2);
+                }
+            }
+            ExpenseDelta delta;
+            if(version == current) delta = ExpenseDelta.unchanged(current);
+            else if(mode == StorageMode.JSON_BLOB) {
+                Account stored = readAccount(conn, user, true);
+                delta = stored.getVersion() == version ? ExpenseDelta.unchanged(version) : new ExpenseDelta(version, stored.getVersion(), true, stored.getExpenses());
+            }
+            else if(version < 0 || version > current || reset > version) delta = new ExpenseDelta(version, current, true, selectExpenses(conn, user, ExpenseDelta.UNKNOWN_VERSION, current));
+            else delta = new ExpenseDelta(version, current, false, selectExpenses(conn, user, version, current));
+            conn.commit();
+            return delta;
+        }
         catch(Exception e) {
             throw new RuntimeException(e.getMessage());
         }
     }
 
     /**
-     * Retrieves the account details for a given account from the database.
+     * Retrieves the account details for a given account.
+     * The list is served from the cache when possible, otherwise it is read from the database and cached.
      *
      * @param acc the account whose expenses are to be retrieved. Must not be null
-     * @return the list of expenses associated with the account
+     * @return a new list of the expenses associated with the account
      * @throws RuntimeException if there are connection problems or acc is null
      */
     @Override
     public ArrayList<ExpenseController> getExpensesByAccount(Account acc) {
+        if(acc == null) throw new RuntimeException("acc parameter is null");
+        List<ExpenseController> cached = cache.get(acc.getUsername());
+        if(cached != null) return new ArrayList<>(cached);
+        long generation = cache.generation();
+        ArrayList<ExpenseController> loaded = loadExpenses(acc);
+        cache.putIfUnchanged(acc.getUsername(), loaded, generation);
+        return loaded;
+    }
+
+    /**
+     * Computes the monthly aggregates of the expenses of an account in a range of dates.
+     * With the expense table storage mode the aggregates are computed by the database with a
+     * single GROUP BY over the covering index of the expense dates, so only one row per month
+     * and category is read, whatever the number of expenses. Otherwise the expense list,
+     * cached when possible, is aggregated here.
+     *
+     * @param acc the account whose expenses are aggregated. Must not be null
+     * @param from the first day of the range. Must not be null
+     * @param to the day after the range. Must not be null
+     * @return the aggregates of the months of the range
+     * @throws RuntimeException if there are connection problems or any of the parameters are null
+     */
+    @Override
+    public MonthlyRollup getMonthlyRollup(Account acc, LocalDate from, LocalDate to) throws RuntimeException{
+        if(acc == null || from == null || to == null) throw new RuntimeException("Almost one parameter passed is null");
+        MonthlyRollup rollup = new MonthlyRollup();
+        if(mode != StorageMode.EXPENSE_TABLE) {
+            for(ExpenseController e : getExpensesByAccount(acc)) {
+                LocalDate d = e.getModel().getDate();
+                if(!d.isBefore(from) && d.isBefore(to)) rollup.add(e.getModel());
+            }
+            return rollup;
+        }
+        final String query = "SELECT YEAR(expenseDate) AS y, MONTH(expenseDate) AS m, category, COUNT(*), SUM(amount), MIN(amount), MAX(amount) "
+                + "FROM defaultdb.expenses WHERE username=? AND expenseDate>=? AND expenseDate<? GROUP BY y, m, category";
+        try(
+                Connection conn = connection();
+                PreparedStatement stmt = conn.prepareStatement(query);
+        ){
+            stmt.setString(1, acc.getUsername());
+            stmt.setDate(2, sqlDate(from));
+            stmt.setDate(3, sqlDate(to));
+            try(ResultSet rs = stmt.executeQuery()) {
+                while(rs.next()) {
+                    rollup.addAggregate(rs.getInt(1), rs.getInt(2), Categories.valueOf(rs.getString(3)), rs.getInt(4),
+                            Money.fromDecimal(rs.getBigDecimal(5)), Money.fromDecimal(rs.getBigDecimal(6)), Money.fromDecimal(rs.getBigDecimal(7)));
+                }
+            }
+            return rollup;
+        }
+        catch(Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieves a page of the expenses of an account ordered by date and id.
+     * With the expense table storage mode the page is read with a keyset query over the index
+     * of the expense dates, which starts right after the given key, so every page costs the same
+     * whatever the size of the account. One more row than the page is read to know if others follow.
+     * Otherwise the expense list, cached when possible, is ordered here and the id of an
+     * expense is its position in the list.
+     *
+     * @param acc the account whose expenses are to be retrieved. Must not be null
+     * @param after the key of the last expense of the previous page, null for the first page
+     * @param descending true to page from the latest expense to the earliest one
+     * @param pageSize the maximum number of expenses of the page. Must be more than 0
+     * @return the page of expenses following the key
+     * @throws RuntimeException if there are connection problems, acc is null or pageSize is not more than 0
+     */
+    @Override
+    public ExpenseSlice getExpensesAfter(Account acc, ExpenseKey after, boolean descending, int pageSize) throws RuntimeException{
+        if(acc == null) throw new RuntimeException("acc parameter is null");
+        if(pageSize <= 0) throw new RuntimeException("pageSize is not more than 0");
+        if(mode != StorageMode.EXPENSE_TABLE) return sliceOf(getExpensesByAccount(acc), after, descending, pageSize);
+        String order = descending ? "DESC" : "ASC";
+        String query = "SELECT name, expenseDate, category, amount, description, id FROM defaultdb.expenses WHERE username=? "
+                + (after == null ? "" : descending ? "AND (expenseDate<? OR (expenseDate=? AND id<?)) " : "AND (expenseDate>? OR (expenseDate=? AND id>?)) ")
+                + "ORDER BY expenseDate " + order + ", id " + order + " LIMIT ?";
+        try(
+                Connection conn = connection();
+                PreparedStatement stmt = conn.prepareStatement(query);
+        ){
+            int i = 1;
+            stmt.setString(i++, acc.getUsername());
+            if(after != null) {
+                java.sql.Date day = sqlDate(LocalDate.ofEpochDay(after.getEpochDay()));
+                stmt.setDate(i++, day);
+                stmt.setDate(i++, day);
+                stmt.setLong(i++, after.getId());
+            }
+            stmt.setInt(i, pageSize + 1);
+            ArrayList<ExpenseController> list = new ArrayList<>(pageSize);
+            ExpenseKey last = null;
+            boolean more = false;
+            try(ResultSet rs = stmt.executeQuery()) {
+                while(rs.next()) {
+                    if(list.size() == pageSize) {
+                        more = true;
+                        break;
+                    }
+                    ExpenseController e = readExpense(rs);
+                    list.add(e);
+                    last = new ExpenseKey((int) e.getModel().getDate().toEpochDay(), rs.getLong(6));
+                }
+            }
+            return new ExpenseSlice(list, last, more);
+        }
+        catch(Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Cuts a page out of a whole expense list, ordered by date and position in the list.
+     *
+     * @param expenses the expense list
+     * @param after the key of the last expense of the previous page, null for the first page
+     * @param descending true to page from the latest expense to the earliest one
+     * @param pageSize the maximum number of expenses of the page
+     * @return the page of expenses following the key
+     */
+    private static ExpenseSlice sliceOf(List<ExpenseController> expenses, ExpenseKey after, boolean descending, int pageSize) {
+        ExpenseKey[] keys = new ExpenseKey[expenses.size()];
+        for(int i = 0; i < keys.length; i++) keys[i] = new ExpenseKey((int) expenses.get(i).getModel().getDate().toEpochDay(), i);
+        Comparator<ExpenseKey> order = descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        Arrays.sort(keys, order);
+        int start = 0;
+        if(after != null) {
+            int found = Arrays.binarySearch(keys, after, order);
+            start = found >= 0 ? found + 1 : -found - 1;
+        }
+        int end = Math.min(keys.length, start + pageSize);
+        ArrayList<ExpenseController> list = new ArrayList<>(end - start);
+        for(int i = start; i < end; i++) list.add(expenses.get((int) keys[i].getId()));
+        return new ExpenseSlice(list, end > start ? keys[end - 1] : null, end < keys.length);
+    }
+
+    /**
+     * Reads the expenses of an account from the database.
+     * The account, JSON or binary, is decoded as a stream, without reading it into a String first.
+     *
+     * @param acc the account whose expenses are to be read. Must not be null
+     * @return the list of expenses associated with the account
+     * @throws RuntimeException if there are connection problems
+     */
+    private ArrayList<ExpenseController> loadExpenses(Account acc) throws RuntimeException{
         final String command = "SELECT * FROM defaultdb.accounts WHERE  username=?";
+        if(mode == StorageMode.EXPENSE_TABLE) {
+            try(Connection conn = connection()){
+                return selectExpenses(conn, acc.getUsername());
+            }
+            catch(Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
         try(
-                Connection conn = DriverManager.getConnection(URI);
+                Connection conn = connection();
                 PreparedStatement stmt = conn.prepareStatement(command);
         ){
-            Account res = null;
             stmt.setString(1,acc.getUsername());
-            ResultSet rs = stmt.executeQuery();
-
-            Gson gson = new Gson();
-            Type listType = new TypeToken<Account>() {}.getType();
-            while (rs.next()) res = gson.fromJson(rs.getString("accountObj"), listType);
-            rs.close();
-            return res.getExpenses();
+            try(ResultSet rs = stmt.executeQuery()) {
+                if(!rs.next()) throw new RuntimeException("The account does not exist");
+                AccountReader reader = AccountReader.open(rs);
+                reader.readHeader();
+                formats.put(acc.getUsername(), reader.getFormat());
+                ArrayList<ExpenseController> list = new ArrayList<>();
+                while(!reader.isDone()) reader.read(list::add, Integer.MAX_VALUE);
+                return list;
+            }
         }
         catch(Exception e) {
             throw new RuntimeException(e.getMessage());
@@ -143,6 +862,7 @@ public class DBManager implements Actions{
 
     /**
      * Deletes an account from the database.
+     * The cached list of the account is invalidated.
      *
      * @param acc the account to be deleted. Must not be null
      * @throws RuntimeException if there are connection problems. Or acc is null
@@ -151,14 +871,221 @@ public class DBManager implements Actions{
     public void deleteAccount(Account acc) {
         final String command = "DELETE FROM defaultdb.accounts WHERE  username=?";
         try(
-                Connection conn = DriverManager.getConnection(URI);
+                Connection conn = connection();
                 PreparedStatement stmt = conn.prepareStatement(command);
         ){
             stmt.setString(1,acc.getUsername());
-            stmt.executeUpdate();
+            if(mode == StorageMode.EXPENSE_TABLE) {
+                conn.setAutoCommit(false);
+                deleteExpenses(conn, acc.getUsername());
+                stmt.executeUpdate();
+                conn.commit();
+            }
+            else stmt.executeUpdate();
         }
         catch(Exception e) {
             throw new RuntimeException(e.getMessage());
         }
+        finally {
+            cache.invalidate(acc.getUsername());
+            formats.remove(acc.getUsername());
+        }
+    }
+
+    /**
+     * Reads the expense rows of an account in insertion order.
+     *
+     * @param conn the connection to use. Must not be null
+     * @param username the account username. Must not be null
+     * @return the list of expenses of the account
+     * @throws SQLException if the query fails
+     */
+    static ArrayList<ExpenseController> selectExpenses(Connection conn, String username) throws SQLException {
+        return selectExpenses(conn, username, ExpenseDelta.UNKNOWN_VERSION, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the expense rows of an account added after a version and up to another, in insertion order.
+     *
+     * @param conn the connection to use. Must not be null
+     * @param username the account username. Must not be null
+     * @param after the version after which the rows were added
+     * @param upTo the last version of the rows to read
+     * @return the list of expenses added in the range
+     * @throws SQLException if the query fails
+     */
+    private static ArrayList<ExpenseController> selectExpenses(Connection conn, String username, long after, long upTo) throws SQLException {
+        ArrayList<ExpenseController> list = new ArrayList<>();
+        try(PreparedStatement stmt = conn.prepareStatement(SELECT_EXPENSES)) {
+            stmt.setString(1, username);
+            stmt.setLong(2, after);
+            stmt.setLong(3, upTo);
+            try(ResultSet rs = stmt.executeQuery()) {
+                while(rs.next()) list.add(readExpense(rs));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Reads the expense of the current row of a result of SELECT_EXPENSES.
+     *
+     * @param rs the result positioned on a row
+     * @return the expense of the row
+     * @throws SQLException if the row cannot be read
+     */
+    private static ExpenseController readExpense(ResultSet rs) throws SQLException {
+        return new ExpenseController(rs.getString(1), new LocalDate(rs.getDate(2).toLocalDate()), Categories.valueOf(rs.getString(3)), Money.fromDecimal(rs.getBigDecimal(4)), rs.getString(5));
+    }
+
+    /**
+     * Converts a date to the value of a DATE column.
+     *
+     * @param date the date to convert
+     * @return the SQL date
+     */
+    private static java.sql.Date sqlDate(LocalDate date) {
+        return java.sql.Date.valueOf(java.time.LocalDate.ofEpochDay(date.toEpochDay()));
+    }
+
+    /**
+     * Inserts expense rows for an account as a single batch, tagged with the first version.
+     * The description is stored without the line breaks added by ExpenseModel.
+     *
+     * @param conn the connection to use. Must not be null
+     * @param username the account username. Must not be null
+     * @param list the expenses to insert. Must not be null
+     * @throws SQLException if the insert fails
+     */
+    static void insertExpenses(Connection conn, String username, List<ExpenseController> list) throws SQLException {
+        insertExpenses(conn, username, list, 0);
+    }
+
+    /**
+     * Inserts expense rows for an account as a single batch, tagged with the version of the account adding them.
+     * The description is stored without the line breaks added by ExpenseModel.
+     *
+     * @param conn the connection to use. Must not be null
+     * @param username the account username. Must not be null
+     * @param list the expenses to insert. Must not be null
+     * @param version the version of the account adding the rows
+     * @throws SQLException if the insert fails
+     */
+    private static void insertExpenses(Connection conn, String username, List<ExpenseController> list, long version) throws SQLException {
+        if(list.isEmpty()) return;
+        final String command = "INSERT INTO defaultdb.expenses (username, name, expenseDate, category, amount, description, version) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try(PreparedStatement stmt = conn.prepareStatement(command)) {
+            for(ExpenseController e : list) {
+                LocalDate d = e.getModel().getDate();
+                stmt.setString(1, username);
+                stmt.setString(2, e.getModel().getName());
+                stmt.setDate(3, sqlDate(d));
+                stmt.setString(4, e.getModel().getCategory().name());
+                stmt.setBigDecimal(5, Money.toDecimal(e.getModel().getCents()));
+                stmt.setString(6, e.getModel().getDesc().replace("\n", ""));
+                stmt.setLong(7, version);
+                if(list.size() == 1) stmt.executeUpdate();
+                else stmt.addBatch();
+            }
+            if(list.size() > 1) stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Deletes all the expense rows of an account.
+     *
+     * @param conn the connection to use. Must not be null
+     * @param username the account username. Must not be null
+     * @throws SQLException if the delete fails
+     */
+    static void deleteExpenses(Connection conn, String username) throws SQLException {
+        try(PreparedStatement stmt = conn.prepareStatement("DELETE FROM defaultdb.expenses WHERE username=?")) {
+            stmt.setString(1, username);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the storage mode used for the expenses.
+     *
+     * @return the storage mode
+     */
+    public StorageMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the cache of the expense lists, to read its metrics.
+     *
+     * @return the account cache
+     */
+    public AccountCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the counters of the concurrent writes to the same account.
+     *
+     * @return the conflict statistics
+     */
+    public ConflictStats getConflictStats() {
+        return conflicts;
+    }
+
+    /**
+     * Returns the connection pool used by this manager, to read its metrics.
+     *
+     * @return the connection pool
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Stops the loads still running and closes the pooled database connections.
+     */
+    @Override
+    public void close() {
+        loader.shutdownNow();
+        pool.close();
+    }
+
+    /**
+     * Cursor over the rows of a result of SELECT_EXPENSES_FROM, keeping the version and id of the last row read.
+     */
+    private static final class RowCursor implements ExpenseCursor {
+        private final ResultSet rs;
+        private boolean done;
+        private long lastVersion;
+        private long lastId;
+
+        /**
+         * Constructs a RowCursor reading the given result.
+         *
+         * @param rs the result of SELECT_EXPENSES_FROM, before its first row
+         */
+        private RowCursor(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        @Override
+        public int read(Consumer<ExpenseController> sink, int max) throws SQLException {
+            int n = 0;
+            while(n < max && !done) {
+                if(rs.next()) {
+                    sink.accept(readExpense(rs));
+                    lastVersion = rs.getLong(6);
+                    lastId = rs.getLong(7);
+                    n++;
+                }
+                else done = true;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
     }
-}
\ No newline at end of file
+}
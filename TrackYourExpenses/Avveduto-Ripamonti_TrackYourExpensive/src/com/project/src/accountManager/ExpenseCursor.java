@@ -0,0 +1,32 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseController;
+
+import java.util.function.Consumer;
+
+/**
+ * Forward-only source of the expenses of an account, read a few at a time
+ * so they can be shown before the whole account has been read.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+interface ExpenseCursor {
+
+    /**
+     * Reads at most max expenses and passes them to sink in order.
+     *
+     * @param sink the consumer of the expenses read. Must not be null.
+     * @param max the maximum number of expenses to read
+     * @return the number of expenses read
+     * @throws Exception if the source cannot be read
+     */
+    int read(Consumer<ExpenseController> sink, int max) throws Exception;
+
+    /**
+     * Checks if every expense has been read.
+     *
+     * @return true if there are no more expenses
+     */
+    boolean isDone();
+}
@@ -0,0 +1,186 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseController;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes of the expenses of an account between two of its versions.
+ *
+ * Every write to an account increments its version. A delta either adds expenses
+ * to the list of the base version or, if it is a reset, replaces the whole list:
+ * removing expenses is always a reset, since expenses are only removed all together.
+ * The deltas sent by appendChanges carry the version they are based on, and expect
+ * the account to reach the next one. A delta recorded in an ExpenseJournal also carries
+ * the id of the journal and its last entry, so the database applies it only once.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class ExpenseDelta {
+    /**
+     * The version of an account whose list is not known, so it can only be brought up to date by a reset.
+     */
+    public static final long UNKNOWN_VERSION = -1;
+    private final long baseVersion;
+    private final long version;
+    private final boolean reset;
+    private final List<ExpenseController> added;
+    private final String journal;
+    private final long entry;
+
+    /**
+     * Constructs an ExpenseDelta.
+     *
+     * @param baseVersion the version the changes apply to
+     * @param version the version of the account after the changes
+     * @param reset true if the changes replace the whole list
+     * @param added the expenses added, or the whole list for a reset. Must not be null.
+     * @throws NullPointerException if added is null
+     */
+    public ExpenseDelta(long baseVersion, long version, boolean reset, List<ExpenseController> added) throws NullPointerException {
+        this(baseVersion, version, reset, added, null, -1);
+    }
+
+    /**
+     * Constructs an ExpenseDelta recorded in a journal.
+     *
+     * @param baseVersion the version the changes apply to
+     * @param version the version of the account after the changes
+     * @param reset true if the changes replace the whole list
+     * @param added the expenses added, or the whole list for a reset. Must not be null.
+     * @param journal the id of the journal the changes are recorded in, null if they are not
+     * @param entry the last journal entry of the changes
+     * @throws NullPointerException if added is null
+     */
+    private ExpenseDelta(long baseVersion, long version, boolean reset, List<ExpenseController> added, String journal, long entry) throws NullPointerException {
+        if(added == null) throw new NullPointerException("added parameter is null");
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.reset = reset;
+        this.added = Collections.unmodifiableList(added);
+        this.journal = journal;
+        this.entry = entry;
+    }
+
+    /**
+     * Returns the same changes recorded in a journal up to the given entry.
+     *
+     * @param journal the id of the journal. Must not be null.
+     * @param entry the last journal entry of the changes
+     * @return the delta carrying the journal entry
+     * @throws NullPointerException if journal is null
+     */
+    public ExpenseDelta withEntry(String journal, long entry) throws NullPointerException {
+        if(journal == null) throw new NullPointerException("journal parameter is null");
+        return new ExpenseDelta(baseVersion, version, reset, added, journal, entry);
+    }
+
+    /**
+     * Returns the same changes applied to another version, keeping their journal entry.
+     *
+     * @param baseVersion the version the changes apply to
+     * @return the delta based on the given version
+     */
+    public ExpenseDelta rebase(long baseVersion) {
+        return new ExpenseDelta(baseVersion, baseVersion + version - this.baseVersion, reset, added, journal, entry);
+    }
+
+    /**
+     * Returns the delta adding expenses to the given version.
+     *
+     * @param baseVersion the version the expenses are added to
+     * @param added the expenses to add. Must not be null.
+     * @return the delta
+     * @throws NullPointerException if added is null
+     */
+    public static ExpenseDelta append(long baseVersion, List<ExpenseController> added) throws NullPointerException {
+        return new ExpenseDelta(baseVersion, baseVersion + 1, false, added);
+    }
+
+    /**
+     * Returns the delta replacing the list of the given version.
+     *
+     * @param baseVersion the version whose list is replaced
+     * @param expenses the new list. Must not be null.
+     * @return the delta
+     * @throws NullPointerException if expenses is null
+     */
+    public static ExpenseDelta replace(long baseVersion, List<ExpenseController> expenses) throws NullPointerException {
+        return new ExpenseDelta(baseVersion, baseVersion + 1, true, expenses);
+    }
+
+    /**
+     * Returns the delta of an account which did not change since the given version.
+     *
+     * @param version the current version
+     * @return the empty delta
+     */
+    public static ExpenseDelta unchanged(long version) {
+        return new ExpenseDelta(version, version, false, List.of());
+    }
+
+    /**
+     * Returns the version the changes apply to.
+     *
+     * @return the base version
+     */
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    /**
+     * Returns the version of the account after the changes.
+     *
+     * @return the version after the changes
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks if the changes replace the whole list.
+     *
+     * @return true for a reset
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    /**
+     * Returns the expenses added, or the whole list for a reset.
+     *
+     * @return a read-only list of the expenses
+     */
+    public List<ExpenseController> getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the id of the journal the changes are recorded in.
+     *
+     * @return the journal id, null if the changes are not recorded in a journal
+     */
+    public String getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns the last journal entry of the changes.
+     *
+     * @return the journal entry, -1 if the changes are not recorded in a journal
+     */
+    public long getEntry() {
+        return entry;
+    }
+
+    /**
+     * Checks if the delta changes nothing.
+     *
+     * @return true if the delta neither resets nor adds
+     */
+    public boolean isEmpty() {
+        return !reset && added.isEmpty();
+    }
+}
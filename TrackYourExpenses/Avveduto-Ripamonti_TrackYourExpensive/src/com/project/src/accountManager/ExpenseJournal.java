@@ -0,0 +1,426 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseBinaryCodec;
+import com.project.src.expense.ExpenseColumns;
+import com.project.src.expense.ExpenseController;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of the changes of the accounts not yet written to the database.
+ *
+ * Every change is appended to the file before it is sent, as a numbered entry framed by its
+ * length and a CRC32, with the expenses in the format of ExpenseBinaryCodec. Appending does not
+ * wait for the disk: force() makes all the entries appended so far durable with a single fsync,
+ * so a batch of changes costs one fsync. Once the database acknowledges the entries of an account
+ * they are dropped, and the file is truncated when no entry is outstanding, or rewritten with
+ * the outstanding entries when most of it has been acknowledged.
+ * On opening, the entries of the file are outstanding until acknowledged again, and a torn
+ * last entry, left by a crash while appending, is cut off. The journal has a random id, stored
+ * in the file, which the database records with the last entry applied of every account, so
+ * an entry replayed after a crash is applied only once.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ExpenseJournal {
+    /**
+     * The default journal file, in the data directory.
+     */
+    public static final Path DEFAULT_PATH = Paths.get("data", "expenses.journal");
+    private static final byte[] MAGIC = {'T', 'Y', 'J'};
+    private static final int VERSION = 1;
+    private static final long COMPACT_BYTES = 1 << 20;
+    private final Path path;
+    private final LinkedHashMap<Long, Entry> outstanding;
+    private FileChannel channel;
+    private String id;
+    private long headerLength;
+    private long nextEntry;
+    private long acknowledgedBytes;
+    private boolean dirty;
+    private long appends;
+    private long forces;
+
+    /**
+     * Opens the journal in the given file, creating it and its directory if they do not exist.
+     *
+     * @param path the journal file. Must not be null.
+     * @throws IOException if the file cannot be read or written, or it is not a journal
+     * @throws NullPointerException if path is null
+     */
+    public ExpenseJournal(Path path) throws IOException, NullPointerException {
+        if(path == null) throw new NullPointerException("path parameter is null");
+        this.path = path;
+        outstanding = new LinkedHashMap<>();
+        nextEntry = 1;
+        if(path.getParent() != null) Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if(channel.size() == 0) writeHeader(channel, UUID.randomUUID().toString());
+            else recover();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the header of a journal file at its start and makes it durable.
+     * The header records the number of the next entry, so the numbers of the entries
+     * dropped from the file are never given again to new entries of the same journal.
+     *
+     * @param ch the channel of the file
+     * @param journalId the id of the journal
+     * @throws IOException if the file cannot be written
+     */
+    private void writeHeader(FileChannel ch, String journalId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        ExpenseBinaryCodec.writeString(out, journalId);
+        out.writeLong(nextEntry);
+        ch.position(0);
+        writeFully(ch, ByteBuffer.wrap(bytes.toByteArray()));
+        ch.force(true);
+        id = journalId;
+        headerLength = bytes.size();
+    }
+
+    /**
+     * Reads the header and the entries of an existing file, cutting off a torn last entry.
+     *
+     * @throws IOException if the file cannot be read or it is not a journal
+     */
+    private void recover() throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(file));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if(magic[0] != MAGIC[0] || magic[1] != MAGIC[1] || magic[2] != MAGIC[2]) throw new StreamCorruptedException("Not a journal");
+        int version = in.readUnsignedByte();
+        if(version != VERSION) throw new StreamCorruptedException("Journal version " + version + " not supported");
+        id = ExpenseBinaryCodec.readString(in);
+        nextEntry = Math.max(nextEntry, in.readLong());
+        headerLength = file.length - in.available();
+        long good = headerLength;
+        while(file.length - good >= Integer.BYTES) {
+            int length = ByteBuffer.wrap(file, (int) good, Integer.BYTES).getInt();
+            if(length <= 0 || file.length - good - 2L * Integer.BYTES < length) break;
+            CRC32 crc = new CRC32();
+            crc.update(file, (int) good + Integer.BYTES, length);
+            if((int) crc.getValue() != ByteBuffer.wrap(file, (int) good + Integer.BYTES + length, Integer.BYTES).getInt()) break;
+            byte[] record = new byte[length + 2 * Integer.BYTES];
+            System.arraycopy(file, (int) good, record, 0, record.length);
+            Entry e;
+            try {
+                e = decode(record);
+            } catch (IOException | RuntimeException ex) {
+                break;
+            }
+            outstanding.put(e.entry, e);
+            nextEntry = Math.max(nextEntry, e.entry + 1);
+            good += record.length;
+        }
+        if(good < file.length) {
+            channel.truncate(good);
+            channel.force(true);
+        }
+        channel.position(good);
+    }
+
+    /**
+     * Returns the id of the journal.
+     *
+     * @return the journal id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Appends the changes of an account as a new entry. The entry is durable after the next force().
+     * If the entry cannot be written whole, its bytes already written are cut off, so the next entries
+     * follow the previous one and are not dropped with the torn record when the journal is recovered.
+     *
+     * @param username the account username. Must not be null.
+     * @param changes the changes of the account. Must not be null.
+     * @return the number of the entry
+     * @throws IOException if the entry cannot be written
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public synchronized long append(String username, ExpenseDelta changes) throws IOException, NullPointerException {
+        if(username == null || changes == null) throw new NullPointerException("Almost one parameter passed is null");
+        long entry = nextEntry;
+        byte[] record = encode(entry, username, changes);
+        long start = channel.position();
+        try {
+            writeFully(channel, ByteBuffer.wrap(record));
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException t) {
+                e.addSuppressed(t);
+            }
+            throw e;
+        }
+        nextEntry++;
+        dirty = true;
+        appends++;
+        outstanding.put(entry, new Entry(entry, username, changes.withEntry(id, entry), record));
+        return entry;
+    }
+
+    /**
+     * Makes every entry appended so far durable with a single fsync, if any was appended since the last one.
+     *
+     * @throws IOException if the file cannot be synchronized
+     */
+    public synchronized void force() throws IOException {
+        if(!dirty) return;
+        channel.force(false);
+        dirty = false;
+        forces++;
+    }
+
+    /**
+     * Drops the entries of an account up to the given one, written to the database,
+     * and compacts the file.
+     *
+     * @param username the account username. Must not be null.
+     * @param entry the last entry of the account written
+     * @throws IOException if the file cannot be compacted
+     * @throws NullPointerException if username is null
+     */
+    public synchronized void acknowledge(String username, long entry) throws IOException, NullPointerException {
+        if(username == null) throw new NullPointerException("username parameter is null");
+        Iterator<Entry> it = outstanding.values().iterator();
+        while(it.hasNext()) {
+            Entry e = it.next();
+            if(e.entry <= entry && e.username.equals(username)) {
+                acknowledgedBytes += e.record.length;
+                it.remove();
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Drops every entry of an account, such as a deleted one, and compacts the file.
+     *
+     * @param username the account username. Must not be null.
+     * @throws IOException if the file cannot be compacted
+     * @throws NullPointerException if username is null
+     */
+    public synchronized void discard(String username) throws IOException, NullPointerException {
+        acknowledge(username, Long.MAX_VALUE);
+    }
+
+    /**
+     * Truncates the file if no entry is outstanding, or rewrites it with the outstanding entries
+     * if the acknowledged ones take most of it.
+     *
+     * @throws IOException if the file cannot be truncated or rewritten
+     */
+    private void compact() throws IOException {
+        if(outstanding.isEmpty()) {
+            if(channel.size() > headerLength) {
+                writeHeader(channel, id);
+                channel.truncate(headerLength);
+                channel.force(false);
+            }
+            channel.position(headerLength);
+            acknowledgedBytes = 0;
+            return;
+        }
+        if(acknowledgedBytes < COMPACT_BYTES || acknowledgedBytes < channel.size() - headerLength - acknowledgedBytes) return;
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out, id);
+            for(Entry e : outstanding.values()) writeFully(out, ByteBuffer.wrap(e.record));
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        acknowledgedBytes = 0;
+        dirty = false;
+    }
+
+    /**
+     * Returns the entries not yet acknowledged, in the order they were appended.
+     *
+     * @return a new list of the outstanding entries
+     */
+    public synchronized List<Entry> getOutstanding() {
+        return new ArrayList<>(outstanding.values());
+    }
+
+    /**
+     * Returns the number of entries not yet acknowledged.
+     *
+     * @return the number of outstanding entries
+     */
+    public synchronized int getOutstandingCount() {
+        return outstanding.size();
+    }
+
+    /**
+     * Returns the number of entries appended since the journal was opened.
+     *
+     * @return the number of appends
+     */
+    public synchronized long getAppends() {
+        return appends;
+    }
+
+    /**
+     * Returns the number of fsyncs made by force() since the journal was opened.
+     *
+     * @return the number of forces
+     */
+    public synchronized long getForces() {
+        return forces;
+    }
+
+    /**
+     * Makes the entries durable and closes the file. The outstanding entries are replayed when it is opened again.
+     *
+     * @throws IOException if the file cannot be synchronized or closed
+     */
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Encodes an entry: its length, the entry number, the username, the delta and the CRC32 of all but the length.
+     *
+     * @param entry the number of the entry
+     * @param username the account username
+     * @param changes the changes of the account
+     * @return the bytes of the entry
+     * @throws IOException if the changes cannot be encoded
+     */
+    private static byte[] encode(long entry, String username, ExpenseDelta changes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeLong(entry);
+        ExpenseBinaryCodec.writeString(out, username);
+        out.writeBoolean(changes.isReset());
+        out.writeLong(changes.getBaseVersion());
+        ExpenseBinaryCodec.write(out, new ExpenseColumns(changes.getAdded()));
+        out.writeInt(0);
+        byte[] record = bytes.toByteArray();
+        int length = record.length - 2 * Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(record, Integer.BYTES, length);
+        ByteBuffer.wrap(record).putInt(0, length).putInt(Integer.BYTES + length, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Decodes an entry whose frame has already been checked.
+     *
+     * @param record the bytes of the entry
+     * @return the entry
+     * @throws IOException if the entry is not valid
+     */
+    private Entry decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, Integer.BYTES, record.length - 2 * Integer.BYTES));
+        long entry = in.readLong();
+        String username = ExpenseBinaryCodec.readString(in);
+        boolean reset = in.readBoolean();
+        long base = in.readLong();
+        ExpenseBinaryCodec.Reader reader = new ExpenseBinaryCodec.Reader(in);
+        ArrayList<ExpenseController> added = new ArrayList<>(reader.remaining());
+        while(reader.remaining() > 0) added.add(reader.next());
+        ExpenseDelta changes = new ExpenseDelta(base, base + 1, reset, added).withEntry(id, entry);
+        return new Entry(entry, username, changes, record);
+    }
+
+    /**
+     * Writes a whole buffer to a channel.
+     *
+     * @param ch the channel
+     * @param buffer the bytes to write
+     * @throws IOException if the channel fails
+     */
+    private static void writeFully(FileChannel ch, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) ch.write(buffer);
+    }
+
+    /**
+     * An entry of the journal: the changes of an account, carrying the journal id and the entry number.
+     */
+    public static final class Entry {
+        private final long entry;
+        private final String username;
+        private final ExpenseDelta changes;
+        private final byte[] record;
+
+        /**
+         * Constructs an Entry.
+         *
+         * @param entry the number of the entry
+         * @param username the account username
+         * @param changes the changes, carrying the journal id and the entry number
+         * @param record the bytes of the entry in the file
+         */
+        private Entry(long entry, String username, ExpenseDelta changes, byte[] record) {
+            this.entry = entry;
+            this.username = username;
+            this.changes = changes;
+            this.record = record;
+        }
+
+        /**
+         * Returns the number of the entry.
+         *
+         * @return the entry number
+         */
+        public long getEntry() {
+            return entry;
+        }
+
+        /**
+         * Returns the username of the account changed.
+         *
+         * @return the account username
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * Returns the changes of the entry, carrying the journal id and the entry number.
+         *
+         * @return the changes
+         */
+        public ExpenseDelta getChanges() {
+            return changes;
+        }
+    }
+}
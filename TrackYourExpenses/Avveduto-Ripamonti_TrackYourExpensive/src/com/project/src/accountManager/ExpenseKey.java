@@ -0,0 +1,78 @@
+package com.project.src.accountManager;
+
+/**
+ * Position of an expense in the order by date and id used to page the expenses of an account.
+ *
+ * The id is the one of the expense row, or the position of the expense in the
+ * list of the account when it is stored as a single object, so two expenses
+ * of the same day are still in a stable order.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class ExpenseKey implements Comparable<ExpenseKey> {
+    private final int epochDay;
+    private final long id;
+
+    /**
+     * Constructs an ExpenseKey.
+     *
+     * @param epochDay the date of the expense as the number of days since 1970-01-01
+     * @param id the id of the expense
+     */
+    public ExpenseKey(int epochDay, long id) {
+        this.epochDay = epochDay;
+        this.id = id;
+    }
+
+    /**
+     * Returns the date of the expense as the number of days since 1970-01-01.
+     *
+     * @return the epoch day of the expense
+     */
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * Returns the id of the expense.
+     *
+     * @return the id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Compares this key with another one, by date and then by id.
+     *
+     * @param other the key to compare to
+     * @return a negative number, zero or a positive number if this key comes before, with or after the other one
+     */
+    @Override
+    public int compareTo(ExpenseKey other) {
+        int c = Integer.compare(epochDay, other.epochDay);
+        return c != 0 ? c : Long.compare(id, other.id);
+    }
+
+    /**
+     * Checks if this key is equal to the specified object.
+     *
+     * @param o the object to compare to
+     * @return true if o is an ExpenseKey with the same date and id
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ExpenseKey k && epochDay == k.epochDay && id == k.id;
+    }
+
+    /**
+     * Returns the hash code of the key.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return 31 * epochDay + Long.hashCode(id);
+    }
+}
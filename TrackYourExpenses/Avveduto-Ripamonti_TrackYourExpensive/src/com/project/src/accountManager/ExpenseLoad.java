@@ -0,0 +1,143 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseController;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hand-off of the expenses of an account read in background.
+ *
+ * The loading thread offers the expenses in batches and then completes or fails
+ * the load; the drawing thread polls the batches and adds them to the account.
+ * The listener is told about every batch, so the window can be drawn again.
+ * A load can be deferred, so its loading thread starts only once the whole list is needed.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+class ExpenseLoad {
+    private final ConcurrentLinkedQueue<List<ExpenseController>> batches = new ConcurrentLinkedQueue<>();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private volatile Runnable listener;
+    private volatile boolean cancelled;
+    private Runnable starter;
+
+    /**
+     * Defers the start of the loading thread until start() is called.
+     *
+     * @param starter the action starting the loading thread
+     */
+    synchronized void defer(Runnable starter) {
+        this.starter = starter;
+    }
+
+    /**
+     * Starts the loading thread of a deferred load. Does nothing if the load was not deferred,
+     * has already been started or has been cancelled.
+     */
+    synchronized void start() {
+        Runnable s = starter;
+        starter = null;
+        if(s != null && !cancelled) s.run();
+    }
+
+    /**
+     * Offers a batch of expenses read. Called by the loading thread.
+     *
+     * @param batch the expenses read, in order
+     */
+    void offer(List<ExpenseController> batch) {
+        batches.add(batch);
+        notifyListener();
+    }
+
+    /**
+     * Marks the load as completed. Called by the loading thread after the last batch.
+     */
+    void complete() {
+        done.complete(null);
+        notifyListener();
+    }
+
+    /**
+     * Marks the load as failed. Called by the loading thread.
+     *
+     * @param e the cause of the failure
+     */
+    void fail(Exception e) {
+        done.completeExceptionally(e);
+        notifyListener();
+    }
+
+    /**
+     * Asks the loading thread to stop and drops the batches not yet polled.
+     */
+    void cancel() {
+        cancelled = true;
+        batches.clear();
+        done.cancel(false);
+    }
+
+    /**
+     * Checks if the load has been cancelled.
+     *
+     * @return true if the loading thread should stop
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Takes the oldest batch not yet polled.
+     *
+     * @return the batch, or null if there is none
+     */
+    List<ExpenseController> poll() {
+        return batches.poll();
+    }
+
+    /**
+     * Checks if the loading thread has finished, successfully or not.
+     *
+     * @return true if no more batches will be offered
+     */
+    boolean isDone() {
+        return done.isDone();
+    }
+
+    /**
+     * Waits until the loading thread has finished.
+     *
+     * @return the cause of the failure, or null if the load completed
+     */
+    Throwable await() {
+        try {
+            done.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    /**
+     * Sets the listener told about every batch and about the end of the load.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Tells the listener about a change of the load.
+     */
+    private void notifyListener() {
+        Runnable l = listener;
+        if(l != null) l.run();
+    }
+}
@@ -0,0 +1,63 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseController;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of the expenses of an account in the order by date and id.
+ *
+ * The next page is requested with the key of the last expense of this one,
+ * so reading a page costs the same wherever it is in the list.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class ExpenseSlice {
+    private final List<ExpenseController> expenses;
+    private final ExpenseKey last;
+    private final boolean more;
+
+    /**
+     * Constructs an ExpenseSlice.
+     *
+     * @param expenses the expenses of the page. Must not be null.
+     * @param last the key of the last expense of the page, null if the page is empty
+     * @param more true if other expenses follow the page
+     * @throws NullPointerException if expenses is null
+     */
+    public ExpenseSlice(List<ExpenseController> expenses, ExpenseKey last, boolean more) throws NullPointerException {
+        if(expenses == null) throw new NullPointerException("expenses parameter is null");
+        this.expenses = Collections.unmodifiableList(expenses);
+        this.last = last;
+        this.more = more;
+    }
+
+    /**
+     * Returns the expenses of the page.
+     *
+     * @return the read-only list of the expenses
+     */
+    public List<ExpenseController> getExpenses() {
+        return expenses;
+    }
+
+    /**
+     * Returns the key to request the next page with.
+     *
+     * @return the key of the last expense of the page, null if the page is empty
+     */
+    public ExpenseKey getLast() {
+        return last;
+    }
+
+    /**
+     * Checks if other expenses follow the page.
+     *
+     * @return true if there is a next page
+     */
+    public boolean hasMore() {
+        return more;
+    }
+}
@@ -0,0 +1,295 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseController;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+
+/**
+ * Migration of the schema used by DBManager, and from the JSON blob storage to the expense table storage.
+ *
+ * Creates the accounts and expenses tables if they do not exist, adds the accountBin column
+ * of the binary accounts, the version columns, the index of the monthly
+ * aggregates and the table of the journal entries applied, and explodes the expenses stored in the accountObj or
+ * accountBin column of every account into rows. The expenses
+ * of each account are moved in a single transaction, which also rewrites the
+ * blob without them, so running the migration again does not duplicate rows.
+ * The version of the schema reached is recorded in the schema_info table, so DBManager
+ * upgrades the schema once, before its first statement, and only as far as its storage mode needs.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ExpenseTableMigration {
+    /**
+     * The version of a schema with every table and column used by DBManager, the expenses still stored in the accounts.
+     */
+    public static final int COLUMNS_VERSION = 1;
+    /**
+     * The version of a schema whose expenses have been moved to the expenses table.
+     */
+    public static final int EXPENSE_TABLE_VERSION = 2;
+    /**
+     * The statement creating the table recording the version of the schema.
+     */
+    public static final String CREATE_SCHEMA_INFO = "CREATE TABLE IF NOT EXISTS defaultdb.schema_info ("
+            + "id TINYINT NOT NULL PRIMARY KEY, "
+            + "version INT NOT NULL)";
+    /**
+     * The statement creating the accounts table of a new database.
+     */
+    public static final String CREATE_ACCOUNTS = "CREATE TABLE IF NOT EXISTS defaultdb.accounts ("
+            + "username VARCHAR(255) NOT NULL PRIMARY KEY, "
+            + "password VARCHAR(255) NOT NULL, "
+            + "accountObj LONGTEXT NULL, "
+            + "accountBin MEDIUMBLOB NULL, "
+            + "version BIGINT NOT NULL DEFAULT 0, "
+            + "resetVersion BIGINT NOT NULL DEFAULT 0)";
+    /**
+     * The statement creating the expenses table and its per-account index.
+     */
+    public static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS defaultdb.expenses ("
+            + "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+            + "username VARCHAR(255) NOT NULL, "
+            + "name VARCHAR(20) NOT NULL, "
+            + "expenseDate DATE NOT NULL, "
+            + "category VARCHAR(16) NOT NULL, "
+            + "amount DECIMAL(15,2) NOT NULL, "
+            + "description VARCHAR(64) NOT NULL, "
+            + "version BIGINT NOT NULL DEFAULT 0, "
+            + "INDEX idx_expenses_account (username, expenseDate, id), "
+            + "INDEX idx_expenses_version (username, version), "
+            + "INDEX idx_expenses_month (username, expenseDate, category, amount))";
+    /**
+     * The statement turning the amounts of a table created with FLOAT amounts into exact decimals.
+     */
+    public static final String ALTER_AMOUNT = "ALTER TABLE defaultdb.expenses MODIFY amount DECIMAL(15,2) NOT NULL";
+    /**
+     * The query reading the type of the amounts of the expenses table, to alter it only if it is not DECIMAL(15,2) yet.
+     */
+    public static final String SELECT_AMOUNT_TYPE = "SELECT COLUMN_TYPE FROM INFORMATION_SCHEMA.COLUMNS "
+            + "WHERE TABLE_SCHEMA='defaultdb' AND TABLE_NAME='expenses' AND COLUMN_NAME='amount'";
+    /**
+     * The statement adding to the accounts table the column of the accounts written by AccountBinaryCodec.
+     */
+    public static final String ADD_BINARY_COLUMN = "ALTER TABLE defaultdb.accounts ADD COLUMN accountBin MEDIUMBLOB NULL";
+    /**
+     * The statements adding the versions of the accounts and of the expense rows to tables created without them.
+     */
+    public static final String[] ADD_VERSION_COLUMNS = {
+            "ALTER TABLE defaultdb.accounts ADD COLUMN version BIGINT NOT NULL DEFAULT 0",
+            "ALTER TABLE defaultdb.accounts ADD COLUMN resetVersion BIGINT NOT NULL DEFAULT 0",
+            "ALTER TABLE defaultdb.expenses ADD COLUMN version BIGINT NOT NULL DEFAULT 0",
+            "CREATE INDEX idx_expenses_version ON defaultdb.expenses (username, version)"
+    };
+    /**
+     * The statement adding the index covering the monthly aggregates to tables created without it.
+     */
+    public static final String ADD_MONTH_INDEX = "CREATE INDEX idx_expenses_month ON defaultdb.expenses (username, expenseDate, category, amount)";
+    /**
+     * The statement creating the table of the last journal entry applied of every account, per journal.
+     */
+    public static final String CREATE_JOURNAL_ACKS = "CREATE TABLE IF NOT EXISTS defaultdb.journal_acks ("
+            + "journalId CHAR(36) NOT NULL, "
+            + "username VARCHAR(255) NOT NULL, "
+            + "entry BIGINT NOT NULL, "
+            + "PRIMARY KEY (journalId, username))";
+    private static final int DUPLICATE_COLUMN = 1060;
+    private static final int DUPLICATE_INDEX = 1061;
+    private final ConnectionPool pool;
+
+    /**
+     * Constructs an ExpenseTableMigration working on the connections of the given pool.
+     *
+     * @param pool the connection pool to use. Must not be null.
+     * @throws NullPointerException if pool is null
+     */
+    public ExpenseTableMigration(ConnectionPool pool) throws NullPointerException {
+        if(pool == null) throw new NullPointerException("pool parameter is null");
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the version of the schema recorded by the last migration.
+     *
+     * @return the version of the schema, 0 if it has never been migrated
+     * @throws SQLException if there are connection problems
+     */
+    public int getSchemaVersion() throws SQLException {
+        try(
+                Connection conn = pool.getConnection();
+                Statement stmt = conn.createStatement()
+        ) {
+            stmt.executeUpdate(CREATE_SCHEMA_INFO);
+            try(ResultSet rs = stmt.executeQuery("SELECT version FROM defaultdb.schema_info WHERE id=1")) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Brings the schema to the version needed by a storage mode, if it is older.
+     * The expenses are moved to the expenses table only for the expense table storage mode.
+     *
+     * @param mode the storage mode the schema is used with. Must not be null.
+     * @return the number of expenses moved to the expenses table
+     * @throws NullPointerException if mode is null
+     * @throws SQLException if there are connection problems
+     */
+    public int upgrade(StorageMode mode) throws NullPointerException, SQLException {
+        if(mode == null) throw new NullPointerException("mode parameter is null");
+        int needed = mode == StorageMode.EXPENSE_TABLE ? EXPENSE_TABLE_VERSION : COLUMNS_VERSION;
+        if(getSchemaVersion() >= needed) return 0;
+        if(mode == StorageMode.EXPENSE_TABLE) return run();
+        try(
+                Connection conn = pool.getConnection();
+                Statement stmt = conn.createStatement()
+        ) {
+            upgradeTables(stmt);
+            setSchemaVersion(stmt, COLUMNS_VERSION);
+        }
+        return 0;
+    }
+
+    /**
+     * Runs the whole migration, whatever the version of the schema recorded.
+     *
+     * @return the number of expenses moved to the expenses table
+     * @throws SQLException if there are connection problems
+     */
+    public int run() throws SQLException {
+        ArrayList<String> usernames = new ArrayList<>();
+        try(
+                Connection conn = pool.getConnection();
+                Statement stmt = conn.createStatement()
+        ) {
+            stmt.executeUpdate(CREATE_SCHEMA_INFO);
+            upgradeTables(stmt);
+            try(ResultSet rs = stmt.executeQuery("SELECT username FROM defaultdb.accounts")) {
+                while(rs.next()) usernames.add(rs.getString(1));
+            }
+        }
+        int moved = 0;
+        for(String username : usernames) moved += migrateAccount(username);
+        try(
+                Connection conn = pool.getConnection();
+                Statement stmt = conn.createStatement()
+        ) {
+            setSchemaVersion(stmt, EXPENSE_TABLE_VERSION);
+        }
+        return moved;
+    }
+
+    /**
+     * Creates the tables, columns and indexes missing.
+     *
+     * @param stmt the statement to run the changes with
+     * @throws SQLException if a change fails
+     */
+    private static void upgradeTables(Statement stmt) throws SQLException {
+        stmt.executeUpdate(CREATE_ACCOUNTS);
+        stmt.executeUpdate(CREATE_TABLE);
+        if(!isExactAmount(stmt)) stmt.executeUpdate(ALTER_AMOUNT);
+        addIfMissing(stmt, ADD_BINARY_COLUMN);
+        for(String command : ADD_VERSION_COLUMNS) addIfMissing(stmt, command);
+        addIfMissing(stmt, ADD_MONTH_INDEX);
+        stmt.executeUpdate(CREATE_JOURNAL_ACKS);
+    }
+
+    /**
+     * Checks if the amounts of the expenses table are already exact decimals,
+     * since altering their type rebuilds the whole table.
+     *
+     * @param stmt the statement to run the query with
+     * @return true if the amount column is DECIMAL(15,2)
+     * @throws SQLException if the query fails
+     */
+    private static boolean isExactAmount(Statement stmt) throws SQLException {
+        try(ResultSet rs = stmt.executeQuery(SELECT_AMOUNT_TYPE)) {
+            return rs.next() && rs.getString(1).equalsIgnoreCase("decimal(15,2)");
+        }
+    }
+
+    /**
+     * Records the version of the schema reached, unless a later one is already recorded.
+     *
+     * @param stmt the statement to run the update with
+     * @param version the version reached
+     * @throws SQLException if the update fails
+     */
+    private static void setSchemaVersion(Statement stmt, int version) throws SQLException {
+        stmt.executeUpdate("INSERT INTO defaultdb.schema_info (id, version) VALUES (1, " + version + ") ON DUPLICATE KEY UPDATE version=GREATEST(version, VALUES(version))");
+    }
+
+    /**
+     * Runs a statement adding a column or an index, ignoring the error raised if it already exists.
+     *
+     * @param stmt the statement to run it with
+     * @param command the statement adding the column or the index
+     * @throws SQLException if the statement fails for another reason
+     */
+    private static void addIfMissing(Statement stmt, String command) throws SQLException {
+        try {
+            stmt.executeUpdate(command);
+        } catch (SQLException e) {
+            if(e.getErrorCode() != DUPLICATE_COLUMN && e.getErrorCode() != DUPLICATE_INDEX) throw e;
+        }
+    }
+
+    /**
+     * Moves the expenses of a single account from its blob to the expenses table.
+     *
+     * @param username the account username. Must not be null.
+     * @return the number of expenses moved
+     * @throws SQLException if there are connection problems
+     */
+    private int migrateAccount(String username) throws SQLException {
+        try(Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            Account acc = null;
+            try(PreparedStatement select = conn.prepareStatement("SELECT accountObj, accountBin FROM defaultdb.accounts WHERE username=? FOR UPDATE")) {
+                select.setString(1, username);
+                try(ResultSet rs = select.executeQuery()) {
+                    if(rs.next() && (rs.getString("accountObj") != null || rs.getBytes("accountBin") != null)) {
+                        AccountReader reader = AccountReader.open(rs);
+                        acc = reader.readHeader();
+                        while(!reader.isDone()) reader.read(acc::addExpense, Integer.MAX_VALUE);
+                    }
+                }
+            }
+            catch(IOException e) {
+                throw new SQLException("The account " + username + " is not valid", e);
+            }
+            if(acc == null || acc.getExpenses().isEmpty()) {
+                conn.rollback();
+                return 0;
+            }
+            ArrayList<ExpenseController> expenses = acc.getExpenses();
+            DBManager.insertExpenses(conn, username, expenses);
+            try(PreparedStatement update = conn.prepareStatement("UPDATE defaultdb.accounts SET accountObj=?, accountBin=NULL WHERE username=?")) {
+                update.setString(1, AccountJson.toJson(new Account(acc.getUsername(), acc.getPassword())));
+                update.setString(2, username);
+                update.executeUpdate();
+            }
+            conn.commit();
+            return expenses.size();
+        }
+    }
+
+    /**
+     * Runs the migration against the default database.
+     *
+     * @param args command-line arguments, not used
+     * @throws SQLException if there are connection problems
+     */
+    public static void main(String[] args) throws SQLException {
+        DBManager manager = new DBManager();
+        try {
+            int moved = new ExpenseTableMigration(manager.getPool()).run();
+            System.out.println("Migrated " + moved + " expenses to defaultdb.expenses");
+        } finally {
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,861 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseBinaryCodec;
+import com.project.src.expense.ExpenseController;
+import com.project.src.expense.ExpenseSegmentFile;
+import com.project.src.expense.LocalDate;
+import com.project.src.expense.MonthlyRollup;
+import com.project.src.form.AccessException;
+import com.project.src.form.UsernameException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Implements the Actions interface on an embedded store kept in a local file, without a database server.
+ *
+ * The accounts are held in memory, indexed by username, and every change of an account is
+ * appended to the file as a record framed by its length and a CRC32, and made durable before
+ * returning. The expenses of every account are appended to its ExpenseSegmentFile, memory-mapped
+ * fixed-width records in a directory next to the file, each tagged with the version which added it,
+ * and forced before the record of the change, so the expenses of an account are the records
+ * between the version of its last reset and its current version. On opening the records are read
+ * back, cutting off a torn last one, and the expenses appended after the last durable change are
+ * dropped. When most of the file is made of records superseded by later resets and deletions it is
+ * rewritten with the current state only, and so are the segments mostly made of reset expenses.
+ * The file is locked, so a single process uses it at a time. Accounts are versioned, merged and
+ * acknowledged per journal entry like in DBManager. Logging in rebuilds the expenses straight from
+ * the mapped records, the monthly aggregates are computed reading the records in place, and the pages
+ * ordered by date are served from an index sorted on demand, so only the writes reach the disk.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class LocalDBManager implements Actions {
+    /**
+     * The default store file, in the data directory.
+     */
+    public static final Path DEFAULT_PATH = Paths.get("data", "accounts.store");
+    private static final byte[] MAGIC = {'T', 'Y', 'S'};
+    private static final int VERSION = 2;
+    private static final long COMPACT_BYTES = 1 << 20;
+    private static final byte REGISTER = 1;
+    private static final byte APPEND = 2;
+    private static final byte DELETE = 3;
+    private static final byte ACK = 4;
+    private final Path path;
+    private final Path segmentsDir;
+    private final HashMap<String, StoredAccount> accounts;
+    private final AccountCache cache;
+    private final ConflictStats conflicts;
+    private FileChannel channel;
+    private FileLock lock;
+    private long headerLength;
+    private long garbage;
+    private long nextId;
+
+    /**
+     * Opens the store in the given file, creating it and its directory if they do not exist,
+     * with a cache of at most 100000 expenses.
+     *
+     * @param path the store file. Must not be null.
+     * @throws IOException if the file cannot be read or written, is not a store or is used by another process
+     * @throws NullPointerException if path is null
+     */
+    public LocalDBManager(Path path) throws IOException, NullPointerException {
+        this(path, 100_000);
+    }
+
+    /**
+     * Opens the store in the given file, creating it and its directory if they do not exist.
+     *
+     * @param path the store file. Must not be null.
+     * @param cacheSize the maximum number of expenses kept in the read cache. Must not be less than 0.
+     * @throws IOException if the file cannot be read or written, is not a store or is used by another process
+     * @throws NullPointerException if path is null
+     * @throws IllegalArgumentException if cacheSize is less than 0
+     */
+    public LocalDBManager(Path path, int cacheSize) throws IOException, NullPointerException, IllegalArgumentException {
+        if(path == null) throw new NullPointerException("path parameter is null");
+        this.path = path;
+        segmentsDir = path.resolveSibling(path.getFileName() + ".segments");
+        accounts = new HashMap<>();
+        cache = new AccountCache(cacheSize);
+        conflicts = new ConflictStats();
+        if(path.getParent() != null) Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+            if(lock == null) throw new IOException("The store " + path + " is used by another process");
+            if(channel.size() == 0) writeHeader(channel);
+            else recover();
+            openSegments();
+            compactIfNeeded();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the segments of every account, dropping the expenses appended after its last durable
+     * change, and deletes the segments of the accounts no longer in the store, including the ones
+     * a deletion could not remove since they were still mapped.
+     *
+     * @throws IOException if the segments cannot be opened or deleted
+     */
+    private void openSegments() throws IOException {
+        HashMap<String, StoredAccount> byId = new HashMap<>();
+        for(StoredAccount s : accounts.values()) {
+            s.rows = new ExpenseSegmentFile(segmentsDir.resolve(Long.toString(s.id)));
+            s.rows.truncate(s.firstAfter(0, s.version));
+            s.first = s.firstAfter(0, s.resetVersion - 1);
+            byId.put(Long.toString(s.id), s);
+        }
+        if(!Files.isDirectory(segmentsDir)) return;
+        ArrayList<Path> orphans = new ArrayList<>();
+        try(DirectoryStream<Path> dirs = Files.newDirectoryStream(segmentsDir)) {
+            for(Path d : dirs) if(!byId.containsKey(d.getFileName().toString())) orphans.add(d);
+        }
+        for(Path d : orphans) new ExpenseSegmentFile(d).delete();
+    }
+
+    /**
+     * Writes the header of a new store file and makes it durable.
+     *
+     * @param ch the channel of the empty file
+     * @throws IOException if the file cannot be written
+     */
+    private void writeHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1);
+        header.put(MAGIC).put((byte) VERSION).flip();
+        writeFully(ch, header);
+        ch.force(true);
+        headerLength = MAGIC.length + 1;
+    }
+
+    /**
+     * Reads the header and applies the records of an existing file, cutting off a torn last record.
+     *
+     * @throws IOException if the file cannot be read or it is not a store
+     */
+    private void recover() throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        if(file.length < MAGIC.length + 1 || file[0] != MAGIC[0] || file[1] != MAGIC[1] || file[2] != MAGIC[2]) throw new StreamCorruptedException("Not a store");
+        if(file[MAGIC.length] != VERSION) throw new StreamCorruptedException("Store version " + file[MAGIC.length] + " not supported");
+        headerLength = MAGIC.length + 1;
+        long good = headerLength;
+        while(file.length - good >= Integer.BYTES) {
+            int length = ByteBuffer.wrap(file, (int) good, Integer.BYTES).getInt();
+            if(length <= 0 || file.length - good - 2L * Integer.BYTES < length) break;
+            CRC32 crc = new CRC32();
+            crc.update(file, (int) good + Integer.BYTES, length);
+            if((int) crc.getValue() != ByteBuffer.wrap(file, (int) good + Integer.BYTES + length, Integer.BYTES).getInt()) break;
+            try {
+                apply(new DataInputStream(new ByteArrayInputStream(file, (int) good + Integer.BYTES, length)), length + 2 * Integer.BYTES);
+            } catch (IOException | RuntimeException e) {
+                break;
+            }
+            good += length + 2 * Integer.BYTES;
+        }
+        if(good < file.length) {
+            channel.truncate(good);
+            channel.force(true);
+        }
+        channel.position(good);
+    }
+
+    /**
+     * Applies a record read from the file to the accounts in memory.
+     *
+     * @param in the payload of the record
+     * @param size the bytes taken by the record in the file
+     * @throws IOException if the record is not valid
+     */
+    private void apply(DataInputStream in, long size) throws IOException {
+        byte type = in.readByte();
+        String username = ExpenseBinaryCodec.readString(in);
+        switch(type) {
+            case REGISTER -> {
+                String password = ExpenseBinaryCodec.readString(in);
+                applyRegister(username, password, in.readLong(), size);
+            }
+            case APPEND -> {
+                long version = in.readLong();
+                long resetVersion = in.readLong();
+                String journal = ExpenseBinaryCodec.readString(in);
+                long entry = in.readLong();
+                applyAppend(username, version, resetVersion, journal.isEmpty() ? null : journal, entry, size);
+            }
+            case DELETE -> applyDelete(username, size);
+            case ACK -> {
+                String journal = ExpenseBinaryCodec.readString(in);
+                applyAck(username, journal, in.readLong(), size);
+            }
+            default -> throw new StreamCorruptedException("Unknown record " + type);
+        }
+    }
+
+    /**
+     * Adds a new account in memory, at version 0.
+     *
+     * @param username the account username
+     * @param password the account password
+     * @param id the id of the account, naming the directory of its segments
+     * @param size the bytes taken by the record in the file
+     * @return the account added
+     */
+    private StoredAccount applyRegister(String username, String password, long id, long size) {
+        StoredAccount s = new StoredAccount(password, id);
+        StoredAccount old = accounts.put(username, s);
+        if(old != null) garbage += old.bytes;
+        nextId = Math.max(nextId, id + 1);
+        s.bytes = size;
+        s.registerBytes = size;
+        return s;
+    }
+
+    /**
+     * Moves an account in memory to a new version, whose expenses have already been appended to its segments.
+     * If the account does not exist the record is dropped.
+     *
+     * @param username the account username
+     * @param version the new version of the account
+     * @param resetVersion the version of the last reset of the account, the new version if the change is a reset
+     * @param journal the id of the journal of the changes, or null if they were not journaled
+     * @param entry the journal entry of the changes
+     * @param size the bytes taken by the record in the file
+     */
+    private void applyAppend(String username, long version, long resetVersion, String journal, long entry, long size) {
+        StoredAccount s = accounts.get(username);
+        if(s == null) {
+            garbage += size;
+            return;
+        }
+        if(resetVersion > s.resetVersion) {
+            garbage += s.bytes - s.registerBytes - s.ackBytes;
+            s.bytes = s.registerBytes + s.ackBytes;
+            s.resetVersion = resetVersion;
+        }
+        s.version = version;
+        s.bytes += size;
+        if(journal != null) s.acks.merge(journal, entry, Math::max);
+    }
+
+    /**
+     * Removes an account from memory.
+     *
+     * @param username the account username
+     * @param size the bytes taken by the record in the file
+     */
+    private void applyDelete(String username, long size) {
+        StoredAccount s = accounts.remove(username);
+        garbage += size + (s == null ? 0 : s.bytes);
+    }
+
+    /**
+     * Records in memory the last journal entry applied to an account.
+     *
+     * @param username the account username
+     * @param journal the id of the journal
+     * @param entry the last entry applied
+     * @param size the bytes taken by the record in the file
+     */
+    private void applyAck(String username, String journal, long entry, long size) {
+        StoredAccount s = accounts.get(username);
+        if(s == null) {
+            garbage += size;
+            return;
+        }
+        s.acks.merge(journal, entry, Math::max);
+        s.bytes += size;
+        s.ackBytes += size;
+    }
+
+    /**
+     * Logs into an account, with all its expenses rebuilt from the records of its segments.
+     *
+     * @param user the account username. Must not be null or blank
+     * @param psw the account password. Must not be null or blank
+     * @throws AccessException if the account cannot be built from the stored credentials
+     * @throws NullPointerException if any of the parameters are null.
+     * @throws IllegalArgumentException if any of the parameters are blank.
+     * @return the logged-in account, or null if the credentials are incorrect
+     */
+    @Override
+    public synchronized Account login(String user, String psw) throws AccessException, NullPointerException, IllegalArgumentException {
+        if(user == null || psw == null) throw new NullPointerException("Almost one parameter passed is null");
+        if(user.isBlank() || psw.isBlank()) throw new IllegalArgumentException("Almost one parameter passed is blank");
+        StoredAccount s = accounts.get(user);
+        if(s == null || !s.password.equals(psw)) return null;
+        try {
+            Account res = new Account(user, s.password, s.expenses());
+            res.setVersion(s.version);
+            return res;
+        } catch (RuntimeException e) {
+            throw new AccessException("Credentials are not correct. Or database error");
+        }
+    }
+
+    /**
+     * Registers a new account in the store.
+     *
+     * @param acc the account to register. Must not be null.
+     * @throws UsernameException if the username already exists, the store cannot be written or acc is null
+     * @return true if the registration is completed successfully
+     */
+    @Override
+    public synchronized boolean register(Account acc) throws UsernameException {
+        if(acc == null || accounts.containsKey(acc.getUsername())) throw new UsernameException("An account with that username already exists. Or database error");
+        long id = nextId;
+        ExpenseSegmentFile rows = null;
+        try {
+            rows = new ExpenseSegmentFile(segmentsDir.resolve(Long.toString(id)));
+            for(ExpenseController e : acc.getExpenses()) rows.append(e, 0);
+            rows.force();
+            RecordWriter out = startRecord(REGISTER, acc.getUsername());
+            ExpenseBinaryCodec.writeString(out, acc.getPassword());
+            out.writeLong(id);
+            long size = write(out);
+            applyRegister(acc.getUsername(), acc.getPassword(), id, size).rows = rows;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(rows);
+            throw new UsernameException("An account with that username already exists. Or database error");
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the segments of an account, ignoring the errors.
+     *
+     * @param rows the segments to delete, may be null
+     */
+    private static void deleteQuietly(ExpenseSegmentFile rows) {
+        if(rows == null) return;
+        try {
+            rows.delete();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Appends changes to the expenses of an account as a single record, incrementing its version.
+     * Changes based on an older version are merged as in DBManager.
+     * The cached list of the account is invalidated.
+     *
+     * @param acc the account the changes belong to, already containing them. Must not be null
+     * @param changes the changes to append. Must not be null
+     * @return the version of the account after the changes, different from the next of the base version if they were merged,
+     * ExpenseDelta.UNKNOWN_VERSION if they had already been applied
+     * @throws RuntimeException if the store cannot be written, the account does not exist or any of the parameters are null
+     */
+    @Override
+    public long appendChanges(Account acc, ExpenseDelta changes) throws RuntimeException {
+        if(acc == null || changes == null) throw new RuntimeException("Almost one parameter passed is null");
+        try {
+            long version = append(acc.getUsername(), changes);
+            if(version == ExpenseDelta.UNKNOWN_VERSION && changes.getJournal() == null) throw new RuntimeException("The account does not exist");
+            return version;
+        } finally {
+            cache.invalidate(acc.getUsername());
+        }
+    }
+
+    /**
+     * Appends changes read from a journal, without the account they belong to, merging them as in DBManager.
+     * The cached list of the account is invalidated.
+     *
+     * @param username the account username. Must not be null
+     * @param changes the changes to append, carrying their journal entry. Must not be null
+     * @return the version of the account after the changes, ExpenseDelta.UNKNOWN_VERSION if
+     * they had already been applied or the account does not exist anymore
+     * @throws RuntimeException if the store cannot be written or any of the parameters are null
+     */
+    @Override
+    public long replayChanges(String username, ExpenseDelta changes) throws RuntimeException {
+        if(username == null || changes == null) throw new RuntimeException("Almost one parameter passed is null");
+        try {
+            return append(username, changes);
+        } finally {
+            cache.invalidate(username);
+        }
+    }
+
+    /**
+     * Appends the added expenses to the segments of the account, forces them, then writes the change
+     * as a single record and applies it. If the record cannot be written the expenses are dropped.
+     * If the base version of the changes is still the current one they are written as they are.
+     * Otherwise added expenses are merged after the current list, and a reset keeps the expenses
+     * added by the other sessions after its base version, unless one of them reset the account too.
+     *
+     * @param username the account username
+     * @param changes the changes to write
+     * @return the version of the account after the changes, ExpenseDelta.UNKNOWN_VERSION if they
+     * had already been applied or the account does not exist
+     * @throws RuntimeException if the store cannot be written
+     */
+    private synchronized long append(String username, ExpenseDelta changes) throws RuntimeException {
+        StoredAccount s = accounts.get(username);
+        if(s == null) return ExpenseDelta.UNKNOWN_VERSION;
+        String journal = changes.getJournal();
+        if(journal != null && s.acks.getOrDefault(journal, -1L) >= changes.getEntry()) return ExpenseDelta.UNKNOWN_VERSION;
+        long base = changes.getBaseVersion();
+        long current = s.version;
+        long version = current + 1;
+        List<ExpenseController> rows = changes.getAdded();
+        boolean lost = false;
+        if(changes.isReset() && base != current) {
+            if(base >= 0 && base <= current && s.resetVersion <= base) {
+                ArrayList<ExpenseController> merged = new ArrayList<>(rows);
+                merged.addAll(s.since(base));
+                rows = merged;
+            }
+            else lost = true;
+        }
+        long before = s.rows.size();
+        long resetVersion = changes.isReset() ? version : s.resetVersion;
+        try {
+            for(ExpenseController e : rows) s.rows.append(e, version);
+            s.rows.force();
+            RecordWriter out = startRecord(APPEND, username);
+            out.writeLong(version);
+            out.writeLong(resetVersion);
+            ExpenseBinaryCodec.writeString(out, journal == null ? "" : journal);
+            out.writeLong(changes.getEntry());
+            long size = write(out);
+            applyAppend(username, version, resetVersion, journal, changes.getEntry(), size);
+        } catch (IOException | RuntimeException e) {
+            s.rows.truncate(before);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        if(changes.isReset()) s.first = before;
+        s.index = null;
+        try {
+            compactIfNeeded();
+            s.compactRows();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        if(base >= 0 && base != current) conflicts.recordConflict(lost);
+        else conflicts.recordWrite();
+        return version;
+    }
+
+    /**
+     * Retrieves the changes of the expenses of an account made after the given version.
+     *
+     * @param acc the account whose changes are to be retrieved. Must not be null
+     * @param version the version the caller knows, ExpenseDelta.UNKNOWN_VERSION to get the whole list
+     * @return the changes from the given version to the current one
+     * @throws RuntimeException if the account does not exist or acc is null
+     */
+    @Override
+    public synchronized ExpenseDelta getChangesSince(Account acc, long version) throws RuntimeException {
+        if(acc == null) throw new RuntimeException("acc parameter is null");
+        StoredAccount s = stored(acc.getUsername());
+        if(version == s.version) return ExpenseDelta.unchanged(s.version);
+        if(version < 0 || version > s.version || s.resetVersion > version) return new ExpenseDelta(version, s.version, true, s.expenses());
+        return new ExpenseDelta(version, s.version, false, s.since(version));
+    }
+
+    /**
+     * Retrieves the expenses of an account.
+     * The list is served from the cache when possible, so the changes still waiting in the
+     * WriteBehindQueue are seen, otherwise it is rebuilt from the records of the segments.
+     *
+     * @param acc the account whose expenses are to be retrieved. Must not be null
+     * @return a new list of the expenses associated with the account
+     * @throws RuntimeException if the account does not exist or acc is null
+     */
+    @Override
+    public ArrayList<ExpenseController> getExpensesByAccount(Account acc) throws RuntimeException {
+        if(acc == null) throw new RuntimeException("acc parameter is null");
+        List<ExpenseController> cached = cache.get(acc.getUsername());
+        if(cached != null) return new ArrayList<>(cached);
+        synchronized (this) {
+            return stored(acc.getUsername()).expenses();
+        }
+    }
+
+    /**
+     * Computes the monthly aggregates of the expenses of an account in a range of dates,
+     * reading the day, category and amount of the records in place, without creating any expense.
+     * The segments whose days are all out of the range are skipped.
+     *
+     * @param acc the account whose expenses are aggregated. Must not be null
+     * @param from the first day of the range. Must not be null
+     * @param to the day after the range. Must not be null
+     * @return the aggregates of the months of the range
+     * @throws RuntimeException if the account does not exist or any of the parameters are null
+     */
+    @Override
+    public synchronized MonthlyRollup getMonthlyRollup(Account acc, LocalDate from, LocalDate to) throws RuntimeException {
+        if(acc == null || from == null || to == null) throw new RuntimeException("Almost one parameter passed is null");
+        MonthlyRollup rollup = new MonthlyRollup();
+        StoredAccount s = stored(acc.getUsername());
+        s.rows.scan(s.first, s.rows.size(), (int) from.toEpochDay(), (int) to.toEpochDay(), (slot, day, category, cents) -> {
+            int month = LocalDate.monthIndex(day);
+            rollup.add(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1, category, cents);
+        });
+        return rollup;
+    }
+
+    /**
+     * Retrieves a page of the expenses of an account ordered by date and id, the id of an expense
+     * being its slot in the segments of the account. The page is found by a binary search on the index of the
+     * account, which is sorted again only after the account changes.
+     *
+     * @param acc the account whose expenses are to be retrieved. Must not be null
+     * @param after the key of the last expense of the previous page, null for the first page
+     * @param descending true to page from the latest expense to the earliest one
+     * @param pageSize the maximum number of expenses of the page. Must be more than 0
+     * @return the page of expenses following the key
+     * @throws RuntimeException if the account does not exist, acc is null or pageSize is not more than 0
+     */
+    @Override
+    public synchronized ExpenseSlice getExpensesAfter(Account acc, ExpenseKey after, boolean descending, int pageSize) throws RuntimeException {
+        if(acc == null) throw new RuntimeException("acc parameter is null");
+        if(pageSize <= 0) throw new RuntimeException("pageSize is not more than 0");
+        StoredAccount s = stored(acc.getUsername());
+        ExpenseKey[] keys = s.index();
+        int n = keys.length;
+        int start = 0;
+        if(after != null) {
+            int found = Arrays.binarySearch(keys, after);
+            int position = found >= 0 ? found : -found - 1;
+            start = descending ? n - position : found >= 0 ? found + 1 : position;
+        }
+        int end = Math.min(n, start + pageSize);
+        ArrayList<ExpenseController> list = new ArrayList<>(Math.max(0, end - start));
+        ExpenseKey last = null;
+        for(int i = start; i < end; i++) {
+            last = keys[descending ? n - 1 - i : i];
+            list.add(s.rows.read(last.getId()));
+        }
+        return new ExpenseSlice(list, last, end < n);
+    }
+
+    /**
+     * Deletes an account and its segments from the store.
+     * The cached list of the account is invalidated.
+     *
+     * @param acc the account to be deleted. Must not be null
+     * @throws RuntimeException if the store cannot be written. Or acc is null
+     */
+    @Override
+    public synchronized void deleteAccount(Account acc) throws RuntimeException {
+        if(acc == null) throw new RuntimeException("acc parameter is null");
+        try {
+            StoredAccount s = accounts.get(acc.getUsername());
+            if(s == null) return;
+            long size = write(startRecord(DELETE, acc.getUsername()));
+            applyDelete(acc.getUsername(), size);
+            s.rows.delete();
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        } finally {
+            cache.invalidate(acc.getUsername());
+        }
+    }
+
+    /**
+     * Returns a stored account.
+     *
+     * @param username the account username
+     * @return the stored account
+     * @throws RuntimeException if the account does not exist
+     */
+    private StoredAccount stored(String username) throws RuntimeException {
+        StoredAccount s = accounts.get(username);
+        if(s == null) throw new RuntimeException("The account does not exist");
+        return s;
+    }
+
+    /**
+     * Starts a record with its type and username, leaving room for its length.
+     *
+     * @param type the type of the record
+     * @param username the account username
+     * @return the stream the rest of the record is written to
+     * @throws IOException if the record cannot be written
+     */
+    private static RecordWriter startRecord(byte type, String username) throws IOException {
+        RecordWriter out = new RecordWriter();
+        out.writeInt(0);
+        out.writeByte(type);
+        ExpenseBinaryCodec.writeString(out, username);
+        return out;
+    }
+
+    /**
+     * Frames a record with its length and CRC32, appends it to the file and makes it durable.
+     *
+     * @param out the stream returned by startRecord, holding the whole record
+     * @return the bytes taken by the record in the file
+     * @throws IOException if the file cannot be written
+     */
+    private long write(RecordWriter out) throws IOException {
+        out.writeInt(0);
+        byte[] record = out.toByteArray();
+        int length = record.length - 2 * Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(record, Integer.BYTES, length);
+        ByteBuffer.wrap(record).putInt(0, length).putInt(Integer.BYTES + length, (int) crc.getValue());
+        long position = channel.position();
+        try {
+            writeFully(channel, ByteBuffer.wrap(record));
+            channel.force(false);
+        } catch (IOException e) {
+            channel.truncate(position);
+            channel.position(position);
+            throw e;
+        }
+        return record.length;
+    }
+
+    /**
+     * Rewrites the file with the current state of the accounts if the records superseded
+     * by later resets and deletions take most of it.
+     * Every account is rewritten as its registration, its current and reset versions and its
+     * acknowledged journal entries. Its expenses stay in its segments.
+     *
+     * @throws IOException if the file cannot be rewritten
+     */
+    private void compactIfNeeded() throws IOException {
+        if(garbage < COMPACT_BYTES || garbage < channel.size() - headerLength - garbage) return;
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel live = channel;
+        HashMap<StoredAccount, long[]> sizes = new HashMap<>();
+        try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel = out;
+            writeHeader(out);
+            for(Map.Entry<String, StoredAccount> a : accounts.entrySet()) {
+                StoredAccount s = a.getValue();
+                RecordWriter record = startRecord(REGISTER, a.getKey());
+                ExpenseBinaryCodec.writeString(record, s.password);
+                record.writeLong(s.id);
+                long register = write(record);
+                record = startRecord(APPEND, a.getKey());
+                record.writeLong(s.version);
+                record.writeLong(s.resetVersion);
+                ExpenseBinaryCodec.writeString(record, "");
+                record.writeLong(-1);
+                long append = write(record);
+                long acks = 0;
+                for(Map.Entry<String, Long> ack : s.acks.entrySet()) {
+                    record = startRecord(ACK, a.getKey());
+                    ExpenseBinaryCodec.writeString(record, ack.getKey());
+                    record.writeLong(ack.getValue());
+                    acks += write(record);
+                }
+                sizes.put(s, new long[]{register, acks, register + append + acks});
+            }
+            out.force(true);
+        } finally {
+            channel = live;
+        }
+        lock.release();
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        lock = channel.lock();
+        channel.position(channel.size());
+        for(Map.Entry<StoredAccount, long[]> e : sizes.entrySet()) {
+            e.getKey().registerBytes = e.getValue()[0];
+            e.getKey().ackBytes = e.getValue()[1];
+            e.getKey().bytes = e.getValue()[2];
+        }
+        garbage = 0;
+    }
+
+    /**
+     * Writes a whole buffer to a channel.
+     *
+     * @param ch the channel
+     * @param buffer the bytes to write
+     * @throws IOException if the channel fails
+     */
+    private static void writeFully(FileChannel ch, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) ch.write(buffer);
+    }
+
+    /**
+     * Returns the cache of the expense lists, shared with the WriteBehindQueue.
+     *
+     * @return the account cache
+     */
+    public AccountCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the counters of the concurrent writes to the same account.
+     *
+     * @return the conflict statistics
+     */
+    public ConflictStats getConflictStats() {
+        return conflicts;
+    }
+
+    /**
+     * Returns the number of accounts in the store.
+     *
+     * @return the number of accounts
+     */
+    public synchronized int getAccountCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Releases the lock of the file and closes it. The segments are unmapped once no longer referenced.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            if(lock != null && lock.isValid()) lock.release();
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * A record being written, kept in memory until it is framed.
+     */
+    private static final class RecordWriter extends DataOutputStream {
+
+        /**
+         * Constructs an empty RecordWriter.
+         */
+        private RecordWriter() {
+            super(new ByteArrayOutputStream());
+        }
+
+        /**
+         * Returns the bytes written so far.
+         *
+         * @return a copy of the bytes of the record
+         */
+        private byte[] toByteArray() {
+            return ((ByteArrayOutputStream) out).toByteArray();
+        }
+    }
+
+    /**
+     * An account of the store: its credentials, the id naming the directory of its segments, the
+     * segments holding its expenses from the first slot not reset, its current and reset versions,
+     * the last journal entry applied per journal, the bytes taken by its records in the file, in total
+     * and by its register and acknowledgement records which a reset does not supersede, and the index
+     * of its expenses ordered by date, built on demand.
+     * The versions of the slots never decrease, since expenses are appended in version order.
+     */
+    private static final class StoredAccount {
+        private final String password;
+        private final long id;
+        private final HashMap<String, Long> acks = new HashMap<>();
+        private ExpenseSegmentFile rows;
+        private long first;
+        private long version;
+        private long resetVersion;
+        private long bytes;
+        private long registerBytes;
+        private long ackBytes;
+        private ExpenseKey[] index;
+
+        /**
+         * Constructs a StoredAccount at version 0, whose segments are opened later.
+         *
+         * @param password the account password
+         * @param id the id of the account
+         */
+        private StoredAccount(String password, long id) {
+            this.password = password;
+            this.id = id;
+        }
+
+        /**
+         * Finds the first slot from the given one added after a version, with a binary search on the versions of the slots.
+         *
+         * @param from the first slot searched
+         * @param version the version
+         * @return the first slot added after the version, the number of slots if there is none
+         */
+        private long firstAfter(long from, long version) {
+            long low = from;
+            long high = rows.size();
+            while(low < high) {
+                long mid = (low + high) >>> 1;
+                if(rows.version(mid) > version) high = mid;
+                else low = mid + 1;
+            }
+            return low;
+        }
+
+        /**
+         * Rebuilds the expenses of the account.
+         *
+         * @return a new list of the expenses in the order they were added
+         */
+        private ArrayList<ExpenseController> expenses() {
+            return rows.read(first, rows.size());
+        }
+
+        /**
+         * Rebuilds the expenses added after a version, in the order they were added.
+         *
+         * @param version the version after which the expenses were added
+         * @return a new list of the expenses
+         */
+        private ArrayList<ExpenseController> since(long version) {
+            return rows.read(firstAfter(first, version), rows.size());
+        }
+
+        /**
+         * Rewrites the segments without the reset expenses, if they are most of them and fill at least a segment.
+         *
+         * @throws IOException if the segments cannot be rewritten
+         */
+        private void compactRows() throws IOException {
+            if(first < ExpenseSegmentFile.SEGMENT_RECORDS || first < rows.size() - first) return;
+            rows.compact(first);
+            first = 0;
+            index = null;
+        }
+
+        /**
+         * Returns the keys of the expenses ordered by date and slot, sorting them if the account changed.
+         * The days are read in place from the segments.
+         *
+         * @return the sorted keys
+         */
+        private ExpenseKey[] index() {
+            if(index == null) {
+                long size = rows.size();
+                index = new ExpenseKey[(int) (size - first)];
+                for(long slot = first; slot < size; slot++) index[(int) (slot - first)] = new ExpenseKey(rows.day(slot), slot);
+                Arrays.sort(index, Comparator.naturalOrder());
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.project.src.accountManager;
+
+/**
+ * Interface to receive the outcome of the writes flushed by the WriteBehindQueue
+ * and the changes it receives.
+ * The methods are called from the background writer thread.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public interface PersistenceListener {
+
+    /**
+     * Called when the pending changes of an account have been written to the database.
+     *
+     * @param username the account username
+     * @param changes the number of changes collapsed in the write
+     */
+    public void onPersisted(String username, int changes);
+
+    /**
+     * Called when the pending changes of an account could not be written to the database.
+     *
+     * @param username the account username
+     * @param e the error raised by the write
+     */
+    public void onFailure(String username, Exception e);
+
+    /**
+     * Called when the changes of an account have been dropped without being written, since the database
+     * kept refusing them. They are no longer retried nor replayed from the journal.
+     *
+     * @param username the account username
+     * @param changes the number of changes dropped
+     * @param e the error raised by the last write
+     */
+    public default void onDropped(String username, int changes, Exception e) {
+    }
+
+    /**
+     * Called when the journal of the changes cannot be opened, so they are written only to the database
+     * and the ones not yet written are lost if the application stops.
+     *
+     * @param e the error raised opening the journal
+     */
+    public default void onJournalUnavailable(Exception e) {
+    }
+
+    /**
+     * Called when the changes of an account made elsewhere have been received and are ready to be applied.
+     *
+     * @param username the account username
+     * @param changes the changes received
+     */
+    public default void onReceived(String username, ExpenseDelta changes) {
+    }
+}
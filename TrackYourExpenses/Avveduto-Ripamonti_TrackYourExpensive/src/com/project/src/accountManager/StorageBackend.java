@@ -0,0 +1,32 @@
+package com.project.src.accountManager;
+
+/**
+ * Enum representing where the accounts are stored, chosen at startup.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public enum StorageBackend {
+    /**
+     * The accounts are stored on the MySQL server by DBManager.
+     */
+    MYSQL,
+
+    /**
+     * The accounts are stored in a local file by LocalDBManager, for single-user installs without a server.
+     */
+    LOCAL;
+
+    /**
+     * Returns the backend with the given name, ignoring its case.
+     *
+     * @param name the name of the backend, or null
+     * @param fallback the backend returned if name is null or not the name of a backend
+     * @return the backend with the given name, or fallback
+     */
+    public static StorageBackend parse(String name, StorageBackend fallback) {
+        if(name == null) return fallback;
+        for(StorageBackend b : values()) if(b.name().equalsIgnoreCase(name.trim())) return b;
+        return fallback;
+    }
+}
@@ -0,0 +1,19 @@
+package com.project.src.accountManager;
+
+/**
+ * Enum representing how the expenses of an account are stored in the database.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public enum StorageMode {
+    /**
+     * The whole account, expenses included, is serialized as JSON in the accountObj column.
+     */
+    JSON_BLOB,
+
+    /**
+     * Every expense is a row of the expenses table keyed by the account username.
+     */
+    EXPENSE_TABLE
+}
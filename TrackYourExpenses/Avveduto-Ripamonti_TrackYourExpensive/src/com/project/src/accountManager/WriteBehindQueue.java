@@ -0,0 +1,655 @@
+package com.project.src.accountManager;
+
+import com.project.src.expense.ExpenseController;
+import com.project.src.expense.LocalDate;
+import com.project.src.expense.MonthlyRollup;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Write-behind queue for the account changes.
+ *
+ * Changes are accepted immediately on the calling thread and written to the
+ * database later by a single background thread. Changes to the same account
+ * made before the flush are coalesced: a list reset supersedes the previous
+ * changes and consecutive additions are written as one batch.
+ * Every change returns a future completed once it is durable, and the
+ * optional PersistenceListener is told about every flush and failure.
+ * The account cache is updated as soon as a change is accepted, so reads
+ * made before the flush already see it, unless the expenses of the account are
+ * still loading. No change waits for them on the calling thread: additions are
+ * queued right away, since they do not need the rest of the list, while a rewrite
+ * of the whole list is held in the queue until the account has been loaded,
+ * so a partial list is never written.
+ * Only the changes are sent to the database, and the version they produce is
+ * recorded in the account. sync() receives the changes made elsewhere once
+ * every change of the queue has been written.
+ * With an ExpenseJournal every change is appended to it when accepted and
+ * made durable with a single fsync per flush, before being sent. A write failed
+ * since the database could not be reached is then kept, merged with the newer
+ * changes of the account, and retried with an exponential backoff until the
+ * database acknowledges it, which drops its entries from the journal. A write the
+ * database refuses, for example since the account does not exist anymore, is
+ * retried as well, but dropped after MAX_REJECTIONS refusals and reported to
+ * the listener, so it cannot hold the queue forever. The entries left in the
+ * journal by a previous run are replayed at startup, before any new change is
+ * written, and an entry refused as many times is dropped the same way.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class WriteBehindQueue {
+    private final Actions database;
+    private final AccountCache cache;
+    private final long flushDelay;
+    private final ScheduledExecutorService executor;
+    private final LinkedHashMap<String, PendingWrite> pending;
+    private final ExpenseJournal journal;
+    private volatile PersistenceListener listener;
+    private boolean flushScheduled;
+    private boolean recovering;
+    private int writing;
+    private static final long MAX_RETRY_DELAY = 60_000;
+    private static final long MIN_RETRY_DELAY = 500;
+    private static final int MAX_REJECTIONS = 5;
+
+    /**
+     * Constructs a WriteBehindQueue writing to the given database.
+     *
+     * @param database the database the changes are written to. Must not be null.
+     * @param cache the cache of the expense lists read from the database. Must not be null.
+     * @param flushDelay the milliseconds changes are held to be coalesced before being written. Must not be less than 0.
+     * @throws NullPointerException if any of the parameters are null
+     * @throws IllegalArgumentException if flushDelay is less than 0
+     */
+    public WriteBehindQueue(Actions database, AccountCache cache, long flushDelay) throws NullPointerException, IllegalArgumentException {
+        this(database, cache, flushDelay, null);
+    }
+
+    /**
+     * Constructs a WriteBehindQueue writing to the given database and recording the changes in a journal.
+     * The entries left in the journal are replayed in background.
+     *
+     * @param database the database the changes are written to. Must not be null.
+     * @param cache the cache of the expense lists read from the database. Must not be null.
+     * @param flushDelay the milliseconds changes are held to be coalesced before being written. Must not be less than 0.
+     * @param journal the journal the changes are recorded in before being written, or null to write them only to the database
+     * @throws NullPointerException if database or cache is null
+     * @throws IllegalArgumentException if flushDelay is less than 0
+     */
+    public WriteBehindQueue(Actions database, AccountCache cache, long flushDelay, ExpenseJournal journal) throws NullPointerException, IllegalArgumentException {
+        if(database == null || cache == null) throw new NullPointerException("Almost one parameter passed is null");
+        if(flushDelay < 0) throw new IllegalArgumentException("flushDelay is less than 0");
+        this.database = database;
+        this.cache = cache;
+        this.flushDelay = flushDelay;
+        this.journal = journal;
+        ScheduledThreadPoolExecutor e = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        e.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor = e;
+        pending = new LinkedHashMap<>();
+        flushScheduled = false;
+        List<ExpenseJournal.Entry> outstanding = journal == null ? List.of() : journal.getOutstanding();
+        recovering = !outstanding.isEmpty();
+        if(recovering) executor.execute(() -> replay(outstanding, new HashMap<>(), 0, 0, 0));
+    }
+
+    /**
+     * Sets the listener told about the outcome of the writes.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setListener(PersistenceListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues the addition of an expense already added to the account,
+     * even if the account is still loading.
+     *
+     * @param acc the account the expense belongs to. Must not be null.
+     * @param exp the added expense. Must not be null.
+     * @return a future completed when the expense has been written
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public CompletableFuture<Void> addExpense(Account acc, ExpenseController exp) throws NullPointerException {
+        if(acc == null || exp == null) throw new NullPointerException("Almost one parameter passed is null");
+        synchronized (this) {
+            PendingWrite w = pendingFor(acc);
+            if(!w.replace) w.added.add(exp);
+            record(w, ExpenseDelta.append(w.snapshot.getVersion(), List.of(exp)));
+            return w.acknowledge();
+        }
+    }
+
+    /**
+     * Queues the rewrite of the whole expense list of the account,
+     * superseding the changes of the account not yet written.
+     * If the account is still loading the rewrite is held until the load ends, without waiting for it.
+     *
+     * @param acc the account whose list is to be written. Must not be null.
+     * @return a future completed when the list has been written, failed if the account could not be loaded
+     * @throws NullPointerException if acc is null
+     */
+    public CompletableFuture<Void> updateList(Account acc) throws NullPointerException {
+        if(acc == null) throw new NullPointerException("acc parameter is null");
+        CompletableFuture<Void> ack;
+        boolean loading = acc.isLoading();
+        synchronized (this) {
+            PendingWrite w = pendingFor(acc);
+            w.replace = true;
+            w.added.clear();
+            w.loading = loading;
+            if(!loading) record(w, ExpenseDelta.replace(w.snapshot.getVersion(), w.snapshot.getExpenses()));
+            ack = w.acknowledge();
+        }
+        if(loading) acc.whenLoaded(() -> loaded(acc));
+        return ack;
+    }
+
+    /**
+     * Releases the rewrite of the list of an account held until the account was loaded,
+     * recording the whole list, or refuses it if the expenses could not be read, since writing it would lose them.
+     * Runs on the thread draining the account once its load has ended.
+     *
+     * @param acc the loaded account
+     */
+    private void loaded(Account acc) {
+        IllegalStateException error = null;
+        try {
+            acc.awaitLoaded();
+        } catch (IllegalStateException e) {
+            error = e;
+        }
+        PendingWrite refused = null;
+        synchronized (this) {
+            PendingWrite w = pending.get(acc.getUsername());
+            if(w == null || !w.loading) return;
+            if(error != null) refused = pending.remove(acc.getUsername());
+            else {
+                w.loading = false;
+                w = pendingFor(acc);
+                record(w, ExpenseDelta.replace(w.snapshot.getVersion(), w.snapshot.getExpenses()));
+            }
+        }
+        if(refused == null) return;
+        notifyFailure(acc.getUsername(), error);
+        for(CompletableFuture<Void> f : refused.acks) f.completeExceptionally(error);
+    }
+
+    /**
+     * Queues the deletion of the account, dropping its changes not yet written.
+     * The deletion runs after any write of the account already in progress.
+     *
+     * @param acc the account to delete. Must not be null.
+     * @return a future completed when the account has been deleted
+     * @throws NullPointerException if acc is null
+     */
+    public CompletableFuture<Void> deleteAccount(Account acc) throws NullPointerException {
+        if(acc == null) throw new NullPointerException("acc parameter is null");
+        PendingWrite dropped;
+        synchronized (this) {
+            dropped = pending.remove(acc.getUsername());
+            cache.invalidate(acc.getUsername());
+            if(journal != null) {
+                try {
+                    journal.discard(acc.getUsername());
+                } catch (IOException e) {
+                    notifyFailure(acc.getUsername(), e);
+                }
+            }
+        }
+        if(dropped != null) for(CompletableFuture<Void> f : dropped.acks) f.cancel(false);
+        return CompletableFuture.runAsync(() -> database.deleteAccount(acc), executor);
+    }
+
+    /**
+     * Appends a change to the journal, if any, and records its entry in the pending write.
+     * If it cannot be appended the change is still written, but would not survive a crash.
+     * Must be called while holding the queue lock.
+     *
+     * @param w the pending write of the account
+     * @param changes the change
+     */
+    private void record(PendingWrite w, ExpenseDelta changes) {
+        if(journal == null) return;
+        try {
+            w.entry = journal.append(w.snapshot.getUsername(), changes);
+        } catch (IOException e) {
+            notifyFailure(w.snapshot.getUsername(), e);
+        }
+    }
+
+    /**
+     * Tells the listener, if any, about a failure.
+     *
+     * @param username the account username
+     * @param e the cause of the failure
+     */
+    private void notifyFailure(String username, Exception e) {
+        PersistenceListener l = listener;
+        if(l != null) l.onFailure(username, e);
+    }
+
+    /**
+     * Returns the delay before the next attempt of something failed, doubling at every attempt up to a limit.
+     *
+     * @param attempts the number of attempts failed so far
+     * @return the milliseconds to wait
+     */
+    private static long retryDelay(int attempts) {
+        return Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min(attempts, 16));
+    }
+
+    /**
+     * Checks if a write failed since the database refused it, for example since the account does not
+     * exist or a constraint is violated, rather than since it could not be reached or the transaction
+     * was rolled back by a conflict, which writing it again later can fix.
+     *
+     * @param e the error raised by the write
+     * @return true if the database refused the write
+     */
+    static boolean isRejection(Throwable e) {
+        for(Throwable t = e; t != null; t = t.getCause()) {
+            if(t instanceof IOException || t instanceof SQLTransientException || t instanceof SQLRecoverableException
+                    || t instanceof SQLNonTransientConnectionException) return false;
+            if(t instanceof SQLException s && s.getSQLState() != null && (s.getSQLState().startsWith("08") || s.getSQLState().startsWith("40"))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Replays in order the entries left in the journal by a previous run, acknowledging each one
+     * once written. If an entry fails the replay is retried later from it, unless the database
+     * has refused it MAX_REJECTIONS times: then it is acknowledged without being written, reported
+     * to the listener, and the replay goes on with the next entry.
+     * An entry recorded while an earlier entry of the same account was still being written carries the
+     * base version of that entry, so it is moved onto the version written by it, and is not taken for
+     * a change made elsewhere.
+     * The changes accepted meanwhile are written once every entry has been replayed. Runs on the writer thread.
+     *
+     * @param entries the entries to replay
+     * @param replayed the recorded base version of the last entry replayed per account and the version it wrote
+     * @param from the index of the first entry not replayed yet
+     * @param attempts the number of attempts of the entry failed so far
+     * @param rejections the number of attempts of the entry refused by the database so far
+     */
+    private void replay(List<ExpenseJournal.Entry> entries, HashMap<String, long[]> replayed, int from, int attempts, int rejections) {
+        int failed = attempts;
+        int refused = rejections;
+        for(int i = from; i < entries.size(); i++) {
+            ExpenseJournal.Entry e = entries.get(i);
+            ExpenseDelta changes = e.getChanges();
+            long[] last = replayed.get(e.getUsername());
+            if(last != null && last[1] >= 0 && changes.getBaseVersion() >= 0 && changes.getBaseVersion() <= last[0]) changes = changes.rebase(last[1]);
+            try {
+                long version = database.replayChanges(e.getUsername(), changes);
+                journal.acknowledge(e.getUsername(), e.getEntry());
+                replayed.put(e.getUsername(), new long[]{e.getChanges().getBaseVersion(), version});
+            } catch (Exception ex) {
+                notifyFailure(e.getUsername(), ex);
+                if(isRejection(ex)) refused++;
+                if(refused < MAX_REJECTIONS) {
+                    int next = i;
+                    int a = failed + 1;
+                    int r = refused;
+                    try {
+                        executor.schedule(() -> replay(entries, replayed, next, a, r), retryDelay(failed), TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException ignored) {
+                    }
+                    return;
+                }
+                drop(e.getUsername(), e.getEntry(), 1, ex);
+                replayed.remove(e.getUsername());
+            }
+            failed = 0;
+            refused = 0;
+        }
+        synchronized (this) {
+            recovering = false;
+            if(!pending.isEmpty() && !flushScheduled) {
+                flushScheduled = true;
+                executor.execute(this::flushPending);
+            }
+        }
+    }
+
+    /**
+     * Returns the pending write of the account, creating it if needed,
+     * and records the latest state of the account in it and in the cache.
+     * Must be called while holding the queue lock.
+     *
+     * @param acc the changed account
+     * @return the pending write of the account
+     */
+    private PendingWrite pendingFor(Account acc) {
+        PendingWrite w = pending.get(acc.getUsername());
+        if(w == null) {
+            w = new PendingWrite();
+            pending.put(acc.getUsername(), w);
+        }
+        w.account = acc;
+        w.snapshot = acc.snapshot();
+        cacheSnapshot(w);
+        if(!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(this::flushPending, flushDelay, TimeUnit.MILLISECONDS);
+        }
+        return w;
+    }
+
+    /**
+     * Writes all the pending changes. Runs on the writer thread.
+     */
+    private void flushPending() {
+        ArrayList<PendingWrite> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if(recovering) return;
+            batch = new ArrayList<>();
+            for(Iterator<PendingWrite> it = pending.values().iterator(); it.hasNext(); ) {
+                PendingWrite w = it.next();
+                if(w.loading) continue;
+                batch.add(w);
+                it.remove();
+            }
+            writing += batch.size();
+        }
+        if(journal != null && !batch.isEmpty()) {
+            try {
+                journal.force();
+            } catch (IOException e) {
+                for(PendingWrite w : batch) notifyFailure(w.snapshot.getUsername(), e);
+            }
+        }
+        for(PendingWrite w : batch) {
+            try {
+                write(w);
+            } finally {
+                synchronized (this) {
+                    writing--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the coalesced changes of a single account and completes their futures.
+     * The database invalidates the cached list on write, so if newer changes
+     * of the account were accepted meanwhile their state is cached again.
+     * If the database merged the changes with the ones of another session,
+     * the version of the account becomes unknown and the next sync reloads the whole list.
+     * The changes are based on the version of the account when they are sent, not when they were accepted:
+     * the previous write of the account has moved it by then, so changes accepted while that write was
+     * running are not taken for a conflict with another session.
+     * With a journal the changes carry their last entry, so they are applied only once, and a
+     * failed write is retried instead of failing its futures, until the database has refused it MAX_REJECTIONS times.
+     *
+     * @param w the pending write
+     */
+    private void write(PendingWrite w) {
+        String username = w.snapshot.getUsername();
+        PersistenceListener l = listener;
+        long base = w.account.getVersion();
+        try {
+            ExpenseDelta changes = w.replace ? ExpenseDelta.replace(base, w.snapshot.getExpenses()) : ExpenseDelta.append(base, w.added);
+            if(w.entry >= 0) changes = changes.withEntry(journal.getId(), w.entry);
+            w.account.advanceVersion(base, database.appendChanges(w.snapshot, changes));
+        } catch (Exception e) {
+            if(journal != null && isRejection(e)) w.rejections++;
+            boolean retried = journal != null && w.rejections < MAX_REJECTIONS;
+            if(retried) retry(w);
+            restoreCache(username);
+            if(!retried) for(CompletableFuture<Void> f : w.acks) f.completeExceptionally(e);
+            if(l != null) l.onFailure(username, e);
+            if(journal != null && !retried) drop(username, w.entry, w.acks.size(), e);
+            return;
+        }
+        restoreCache(username);
+        if(w.entry >= 0) {
+            try {
+                journal.acknowledge(username, w.entry);
+            } catch (IOException e) {
+                if(l != null) l.onFailure(username, e);
+            }
+        }
+        for(CompletableFuture<Void> f : w.acks) f.complete(null);
+        if(l != null) l.onPersisted(username, w.acks.size());
+    }
+
+    /**
+     * Queues again a failed write, merged with the newer changes of the account accepted meanwhile,
+     * and schedules the next flush after the backoff delay of the write.
+     *
+     * @param failed the failed write
+     */
+    private synchronized void retry(PendingWrite failed) {
+        String username = failed.snapshot.getUsername();
+        PendingWrite newer = pending.remove(username);
+        if(newer != null) {
+            if(!failed.replace && !newer.replace) failed.added.addAll(newer.added);
+            failed.replace |= newer.replace;
+            failed.loading = newer.loading;
+            if(failed.replace) failed.added.clear();
+            failed.account = newer.account;
+            failed.snapshot = newer.snapshot;
+            failed.entry = Math.max(failed.entry, newer.entry);
+            failed.acks.addAll(newer.acks);
+        }
+        pending.put(username, failed);
+        long delay = retryDelay(failed.attempts++);
+        try {
+            executor.schedule(this::flushPending, delay, TimeUnit.MILLISECONDS);
+            flushScheduled = true;
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    /**
+     * Acknowledges in the journal the entries of an account the database kept refusing, so they are
+     * not replayed, drops its cached list, which contains them, and tells the listener.
+     *
+     * @param username the account username
+     * @param entry the last journal entry dropped, less than 0 if none
+     * @param changes the number of changes dropped
+     * @param e the error raised by the last write
+     */
+    private void drop(String username, long entry, int changes, Exception e) {
+        if(entry >= 0) {
+            try {
+                journal.acknowledge(username, entry);
+            } catch (IOException ex) {
+                notifyFailure(username, ex);
+            }
+        }
+        cache.invalidate(username);
+        PersistenceListener l = listener;
+        if(l != null) l.onDropped(username, changes, e);
+    }
+
+    /**
+     * Caches again the state of the account if it has changes still pending.
+     *
+     * @param username the account username
+     */
+    private synchronized void restoreCache(String username) {
+        PendingWrite next = pending.get(username);
+        if(next != null) cacheSnapshot(next);
+    }
+
+    /**
+     * Caches the state of the account recorded in a pending write, or drops the cached list
+     * if the account was still loading, since its list was not whole.
+     * Must be called while holding the queue lock.
+     *
+     * @param w the pending write of the account
+     */
+    private void cacheSnapshot(PendingWrite w) {
+        if(w.snapshot.isPartial()) cache.invalidate(w.snapshot.getUsername());
+        else cache.put(w.snapshot.getUsername(), w.snapshot.getExpensesView());
+    }
+
+    /**
+     * Writes all the pending changes and waits until they are durable.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        try {
+            executor.submit(this::flushPending).get();
+        } catch (ExecutionException | RejectedExecutionException ignored) {
+        }
+    }
+
+    /**
+     * Receives in background the changes of the account made elsewhere since its version.
+     * Nothing is received while changes are waiting to be written or being written, since the
+     * account would not match the database yet. The changes are handed to the account,
+     * which applies them in drainLoaded(), and the listener is told about them.
+     *
+     * @param acc the account to bring up to date. Must not be null.
+     * @return a future completed with the changes received, or null if nothing was requested
+     * @throws NullPointerException if acc is null
+     */
+    public CompletableFuture<ExpenseDelta> sync(Account acc) throws NullPointerException {
+        if(acc == null) throw new NullPointerException("acc parameter is null");
+        if(!isIdle() || acc.isLoading()) return CompletableFuture.completedFuture(null);
+        long version = acc.getVersion();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                if(!isIdle()) return null;
+                ExpenseDelta changes = database.getChangesSince(acc, version);
+                if(changes.getBaseVersion() == changes.getVersion()) return changes;
+                acc.receiveChanges(changes);
+                PersistenceListener l = listener;
+                if(l != null) l.onReceived(acc.getUsername(), changes);
+                return changes;
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Computes in background the monthly aggregates of the expenses of an account in a range of dates.
+     * The pending changes are written first, so the aggregates include them.
+     *
+     * @param acc the account whose expenses are aggregated. Must not be null.
+     * @param from the first day of the range. Must not be null.
+     * @param to the day after the range. Must not be null.
+     * @return a future completed with the aggregates, failed if they could not be computed
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public CompletableFuture<MonthlyRollup> monthlyRollup(Account acc, LocalDate from, LocalDate to) throws NullPointerException {
+        if(acc == null || from == null || to == null) throw new NullPointerException("Almost one parameter passed is null");
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                flushPending();
+                return database.getMonthlyRollup(acc, from, to);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Reads in background a page of the expenses of an account ordered by date and id.
+     * The pending changes are written first, so the page includes them.
+     *
+     * @param acc the account whose expenses are to be read. Must not be null.
+     * @param after the key of the last expense of the previous page, null for the first page
+     * @param descending true to page from the latest expense to the earliest one
+     * @param pageSize the maximum number of expenses of the page. Must be more than 0.
+     * @return a future completed with the page, failed if it could not be read
+     * @throws NullPointerException if acc is null
+     * @throws IllegalArgumentException if pageSize is not more than 0
+     */
+    public CompletableFuture<ExpenseSlice> page(Account acc, ExpenseKey after, boolean descending, int pageSize) throws NullPointerException, IllegalArgumentException {
+        if(acc == null) throw new NullPointerException("acc parameter is null");
+        if(pageSize <= 0) throw new IllegalArgumentException("pageSize is not more than 0");
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                flushPending();
+                return database.getExpensesAfter(acc, after, descending, pageSize);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Checks if every change accepted has been written.
+     *
+     * @return true if no change is waiting to be written or being written, and the journal has been replayed
+     */
+    public synchronized boolean isIdle() {
+        return pending.isEmpty() && writing == 0 && !recovering;
+    }
+
+    /**
+     * Returns the number of accounts with changes not yet written.
+     *
+     * @return the number of pending accounts
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes the pending changes, stops the writer thread and closes the journal, if any.
+     * The changes which could not be written stay in the journal and are replayed at the next start.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        flush();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        if(journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * The coalesced changes of a single account.
+     */
+    private static class PendingWrite {
+        private Account account;
+        private Account snapshot;
+        private boolean replace;
+        private boolean loading;
+        private long entry = -1;
+        private int attempts;
+        private int rejections;
+        private final ArrayList<ExpenseController> added = new ArrayList<>();
+        private final ArrayList<CompletableFuture<Void>> acks = new ArrayList<>();
+
+        /**
+         * Registers a new change and returns its acknowledgement.
+         *
+         * @return the future completed when the change is durable
+         */
+        CompletableFuture<Void> acknowledge() {
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            acks.add(f);
+            return f;
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.project.src.expense;
 
 import com.project.src.Model;
-import com.project.src.accountManager.Actions;
-import com.project.src.accountManager.DBManager;
+import com.project.src.accountManager.WriteBehindQueue;
+import com.project.src.graphic.TextResources;
 import controlP5.*;
 import processing.core.PApplet;
 
@@ -25,7 +25,7 @@ public class AddExpense {
     private float selectPos;
     private int selectStatus;
     private Button exit;
-    private DBManager dbManager;
+    private WriteBehindQueue writer;
     private boolean check;
 
     /**
@@ -33,19 +33,19 @@ public class AddExpense {
      *
      * @param cp5   The ControlP5 instance used for creating UI elements. Must not be null.
      * @param parent The PApplet instance used as the parent. Must not be null.
-     * @param db    The DBManager instance used for database operations. Must not be null.
+     * @param writer The WriteBehindQueue instance used to save the expenses. Must not be null.
      * @throws NullPointerException if any of the parameters are null.
      */
-    public AddExpense(ControlP5 cp5, PApplet parent, DBManager db) throws NullPointerException {
-        if(cp5 == null || parent == null || db == null) throw new NullPointerException("Almost one parameter passed is null");
+    public AddExpense(ControlP5 cp5, PApplet parent, WriteBehindQueue writer) throws NullPointerException {
+        if(cp5 == null || parent == null || writer == null) throw new NullPointerException("Almost one parameter passed is null");
         this.cp5 = cp5;
         this.parent = parent;
-        dbManager = db;
+        this.writer = writer;
         exit = cp5.addButton("exit").setLabel("Exit").setPosition(parent.width/3, parent.height/2+250).setSize(80, 30).hide();
         done = cp5.addButton("done").setLabel("Done").setPosition(parent.width-parent.width/3, parent.height/2+250).setSize(80, 30).hide();
-        nameField = cp5.addTextfield("name").setColorForeground(parent.color(255)).setFont(parent.createFont("arial",25)).setPosition(parent.width/3,parent.height/2-80).setSize(200,40).setFocus(true).setColor(parent.color(255)).setColorActive(parent.color(255)).setColorBackground(0).setCaptionLabel("").hide();
-        descField = cp5.addTextfield("desc").setColorForeground(parent.color(255)).setFont(parent.createFont("arial",25)).setPosition(parent.width/3,parent.height/2).setSize(200,40).setFocus(true).setColor(parent.color(255)).setColorActive(parent.color(255)).setColorBackground(0).setCaptionLabel("").hide();
-        amountField = cp5.addTextfield("amount").setColorForeground(parent.color(255)).setFont(parent.createFont("arial",25)).setPosition(parent.width/3,parent.height/2+80).setSize(200,40).setFocus(true).setColor(parent.color(255)).setColorActive(parent.color(255)).setColorBackground(0).setCaptionLabel("").hide();
+        nameField = cp5.addTextfield("name").setColorForeground(parent.color(255)).setFont(TextResources.font(parent, TextResources.FONT, 25)).setPosition(parent.width/3,parent.height/2-80).setSize(200,40).setFocus(true).setColor(parent.color(255)).setColorActive(parent.color(255)).setColorBackground(0).setCaptionLabel("").hide();
+        descField = cp5.addTextfield("desc").setColorForeground(parent.color(255)).setFont(TextResources.font(parent, TextResources.FONT, 25)).setPosition(parent.width/3,parent.height/2).setSize(200,40).setFocus(true).setColor(parent.color(255)).setColorActive(parent.color(255)).setColorBackground(0).setCaptionLabel("").hide();
+        amountField = cp5.addTextfield("amount").setColorForeground(parent.color(255)).setFont(TextResources.font(parent, TextResources.FONT, 25)).setPosition(parent.width/3,parent.height/2+80).setSize(200,40).setFocus(true).setColor(parent.color(255)).setColorActive(parent.color(255)).setColorBackground(0).setCaptionLabel("").hide();
         select = this.cp5.addDropdownList("category")
                 .setBarHeight(20)
                 .setItemHeight(20).setPosition(parent.width/3,parent.height/2+160)
@@ -106,6 +106,7 @@ public class AddExpense {
 
     /**
      * Handles the logic for the done button callback, including validation and adding the expense to the model.
+     * The expense is saved to the database in background.
      *
      * @param m    The Model instance. Must not be null
      * @param list The list of ExpenseController instances. Must not be null.
@@ -119,12 +120,12 @@ public class AddExpense {
         boolean check = false;
         String name = nameField.getText() == null ? "" : nameField.getText();
         String desc = descField.getText() == null ? "" : descField.getText();
-        float amount = 0;
+        long amount = 0;
         if(!name.isEmpty() && name.length() < 20) {
             if(!desc.isEmpty() && desc.length() < (14*4)) {
                 if (selectStatus != 0) {
                     try {
-                        amount = Float.parseFloat(amountField.getText());
+                        amount = Money.parse(amountField.getText());
                         check = true;
                     } catch (Exception e) {
                         e.printStackTrace();
@@ -139,7 +140,7 @@ public class AddExpense {
             select.setLabel("Category");
             ExpenseController item = new ExpenseController(name, new LocalDate(java.time.LocalDate.now()), Categories.values()[selectStatus - 1], amount, desc);
             Model.getAccount().addExpense(item);
-            dbManager.updateList(Model.getAccount());
+            writer.addExpense(Model.getAccount(), item);
             this.check = false;
             return true;
         }
@@ -0,0 +1,162 @@
+package com.project.src.expense;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shared cache of the off-screen images of the expense cards.
+ *
+ * Each card is drawn once into a PGraphics, keyed by the content of its ExpenseModel,
+ * which never changes, so the same image is reused by every frame and by the identical expenses.
+ * The images are kept in least recently used order and evicted when their memory
+ * exceeds the budget. invalidate() drops every image when the look of the cards changes.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class CardCache {
+    /**
+     * The space around the card kept in the image for the border.
+     */
+    public static final int MARGIN = 2;
+    /**
+     * The space on the right of the card kept in the image for a description longer than the card.
+     */
+    public static final int OVERFLOW = 40;
+    /**
+     * The default memory budget of the images, in bytes.
+     */
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+    private static final LinkedHashMap<ExpenseModel, PGraphics> cards = new LinkedHashMap<>(64, 0.75f, true);
+    private static long budget = DEFAULT_BUDGET;
+    private static long usedBytes;
+    private static long hits;
+    private static long misses;
+    private static long evictions;
+
+    /**
+     * Not instantiable, every method is static.
+     */
+    private CardCache() {}
+
+    /**
+     * Returns the image of an expense card, drawing it only the first time.
+     * The card is placed at (MARGIN, MARGIN) of the image.
+     *
+     * @param parent the PApplet instance. Must not be null.
+     * @param model the expense to draw. Must not be null.
+     * @return the image of the card
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public static synchronized PGraphics get(PApplet parent, ExpenseModel model) throws NullPointerException {
+        if(parent == null || model == null) throw new NullPointerException("Almost one parameter passed is null");
+        PGraphics card = cards.get(model);
+        if(card != null) {
+            hits++;
+            return card;
+        }
+        misses++;
+        card = parent.createGraphics(ExpenseView.WIDTH + 2 * MARGIN + OVERFLOW, ExpenseView.HEIGHT + 2 * MARGIN);
+        card.beginDraw();
+        card.clear();
+        ExpenseView.draw(parent, card, model, MARGIN, MARGIN);
+        card.endDraw();
+        cards.put(model, card);
+        usedBytes += bytes(card);
+        trim();
+        return card;
+    }
+
+    /**
+     * Drops every image, so the cards are drawn again with the current look.
+     */
+    public static synchronized void invalidate() {
+        cards.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Changes the memory budget of the images, evicting the least recently used ones if needed.
+     *
+     * @param bytes the new budget in bytes. Must be more than 0.
+     * @throws IllegalArgumentException if bytes is not more than 0
+     */
+    public static synchronized void setBudget(long bytes) throws IllegalArgumentException {
+        if(bytes <= 0) throw new IllegalArgumentException("bytes is not more than 0");
+        budget = bytes;
+        trim();
+    }
+
+    /**
+     * Evicts the least recently used images until the memory used is within the budget.
+     * The most recent image is always kept.
+     */
+    private static void trim() {
+        Iterator<Map.Entry<ExpenseModel, PGraphics>> it = cards.entrySet().iterator();
+        while(usedBytes > budget && cards.size() > 1) {
+            PGraphics eldest = it.next().getValue();
+            it.remove();
+            usedBytes -= bytes(eldest);
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns the memory used by the pixels of an image.
+     *
+     * @param g the image
+     * @return the size of the pixels in bytes
+     */
+    private static long bytes(PGraphics g) {
+        return 4L * g.pixelWidth * g.pixelHeight;
+    }
+
+    /**
+     * Returns the number of images in the cache.
+     *
+     * @return the number of cached cards
+     */
+    public static synchronized int size() {
+        return cards.size();
+    }
+
+    /**
+     * Returns the memory used by the cached images.
+     *
+     * @return the used memory in bytes
+     */
+    public static synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the number of cards served from the cache.
+     *
+     * @return the number of hits
+     */
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of cards which had to be drawn.
+     *
+     * @return the number of misses
+     */
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of images evicted to stay within the budget.
+     *
+     * @return the number of evictions
+     */
+    public static synchronized long getEvictions() {
+        return evictions;
+    }
+}
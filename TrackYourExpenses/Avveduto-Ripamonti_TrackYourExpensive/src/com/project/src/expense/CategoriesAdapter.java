@@ -0,0 +1,54 @@
+package com.project.src.expense;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter writing a category as the JSON string of its constant name,
+ * the same shape written by the reflective enum adapter of Gson.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class CategoriesAdapter extends TypeAdapter<Categories> {
+
+    /**
+     * Writes a category as a JSON string.
+     *
+     * @param out the writer
+     * @param category the category to write, possibly null
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void write(JsonWriter out, Categories category) throws IOException {
+        if(category == null) out.nullValue();
+        else out.value(category.name());
+    }
+
+    /**
+     * Reads a category from a JSON string.
+     *
+     * @param in the reader
+     * @return the category read, null for a JSON null
+     * @throws IOException if the reader fails
+     * @throws JsonParseException if the string is not the name of a category
+     */
+    @Override
+    public Categories read(JsonReader in) throws IOException, JsonParseException {
+        if(in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = in.nextString();
+        try {
+            return Categories.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Unknown category " + name, e);
+        }
+    }
+}
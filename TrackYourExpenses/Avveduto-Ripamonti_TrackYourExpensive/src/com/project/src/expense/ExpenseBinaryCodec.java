@@ -0,0 +1,246 @@
+package com.project.src.expense;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Compact binary encoding of a list of expenses.
+ *
+ * The distinct texts are written once as a dictionary, then every expense is
+ * the change of its epoch day from the previous expense, its amount in cents,
+ * both as zigzag varints, the ordinal of its category in a byte and the
+ * dictionary ids of its name and description as varints. An expense of the
+ * same month as the previous one with a small amount takes about 8 bytes.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class ExpenseBinaryCodec {
+    private static final Categories[] CATEGORIES = Categories.values();
+    private static final ExpenseView VIEW = new ExpenseView();
+
+    /**
+     * Not instantiable, every method is static.
+     */
+    private ExpenseBinaryCodec() {}
+
+    /**
+     * Writes the expenses of the columns.
+     *
+     * @param out the output. Must not be null.
+     * @param columns the expenses to write. Must not be null.
+     * @throws IOException if the output fails
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public static void write(DataOutput out, ExpenseColumns columns) throws IOException, NullPointerException {
+        if(out == null || columns == null) throw new NullPointerException("Almost one parameter passed is null");
+        int size = columns.size();
+        HashMap<String, Integer> ids = new HashMap<>();
+        ArrayList<String> strings = new ArrayList<>();
+        int[] names = new int[size];
+        int[] descs = new int[size];
+        for(int i = 0; i < size; i++) {
+            names[i] = id(columns.getName(i), ids, strings);
+            descs[i] = id(columns.getDesc(i), ids, strings);
+        }
+        writeVarLong(out, strings.size());
+        for(String s : strings) writeString(out, s);
+        writeVarLong(out, size);
+        long previousDay = 0;
+        for(int i = 0; i < size; i++) {
+            long day = columns.getEpochDay(i);
+            writeVarLong(out, zigzag(day - previousDay));
+            previousDay = day;
+            writeVarLong(out, zigzag(columns.getCents(i)));
+            out.writeByte(columns.getCategory(i).ordinal());
+            writeVarLong(out, names[i]);
+            writeVarLong(out, descs[i]);
+        }
+    }
+
+    /**
+     * Returns the dictionary id of a text, adding it the first time.
+     *
+     * @param s the text
+     * @param ids the ids of the texts already added
+     * @param strings the texts in id order
+     * @return the id of the text
+     */
+    private static int id(String s, HashMap<String, Integer> ids, ArrayList<String> strings) {
+        Integer id = ids.get(s);
+        if(id != null) return id;
+        ids.put(s, strings.size());
+        strings.add(s);
+        return strings.size() - 1;
+    }
+
+    /**
+     * Writes a text as its UTF-8 length in a varint followed by its UTF-8 bytes.
+     *
+     * @param out the output. Must not be null.
+     * @param s the text. Must not be null.
+     * @throws IOException if the output fails
+     */
+    public static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a text written by writeString.
+     *
+     * @param in the input. Must not be null.
+     * @return the text
+     * @throws IOException if the input fails or the length is not valid
+     */
+    public static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if(length < 0 || length > Integer.MAX_VALUE) throw new StreamCorruptedException("Text length " + length + " not valid");
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a value as an unsigned varint, 7 bits per byte with the highest bit set on every byte but the last.
+     *
+     * @param out the output. Must not be null.
+     * @param value the value, read as unsigned
+     * @throws IOException if the output fails
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads an unsigned varint written by writeVarLong.
+     *
+     * @param in the input. Must not be null.
+     * @return the value
+     * @throws IOException if the input fails or the varint is longer than 10 bytes
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new StreamCorruptedException("Varint longer than 10 bytes");
+    }
+
+    /**
+     * Maps a signed value to an unsigned one, so small negative values have short varints.
+     *
+     * @param value the signed value
+     * @return the zigzag encoded value
+     */
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Maps back a value encoded by zigzag.
+     *
+     * @param value the zigzag encoded value
+     * @return the signed value
+     */
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Sequential reader of expenses written by ExpenseBinaryCodec.write.
+     * The dictionary and the number of expenses are read on construction, the expenses one by one.
+     */
+    public static final class Reader {
+        private final DataInput in;
+        private final String[] strings;
+        private int remaining;
+        private long previousDay;
+
+        /**
+         * Constructs a Reader, reading the dictionary and the number of expenses.
+         *
+         * @param in the input positioned at the start of the expenses. Must not be null.
+         * @throws IOException if the input fails or is not valid
+         * @throws NullPointerException if in is null
+         */
+        public Reader(DataInput in) throws IOException, NullPointerException {
+            if(in == null) throw new NullPointerException("in parameter is null");
+            this.in = in;
+            strings = new String[count(readVarLong(in))];
+            for(int i = 0; i < strings.length; i++) strings[i] = readString(in);
+            remaining = count(readVarLong(in));
+        }
+
+        /**
+         * Returns the number of expenses not read yet.
+         *
+         * @return the number of remaining expenses
+         */
+        public int remaining() {
+            return remaining;
+        }
+
+        /**
+         * Reads the next expense.
+         *
+         * @return the expense
+         * @throws IOException if the input fails or the expense is not valid
+         * @throws IllegalStateException if every expense has been read
+         */
+        public ExpenseController next() throws IOException, IllegalStateException {
+            if(remaining == 0) throw new IllegalStateException("Every expense has been read");
+            long day = previousDay + unzigzag(readVarLong(in));
+            previousDay = day;
+            long cents = unzigzag(readVarLong(in));
+            int category = in.readUnsignedByte();
+            if(category >= CATEGORIES.length) throw new StreamCorruptedException("Category " + category + " not valid");
+            String name = string(readVarLong(in));
+            String desc = string(readVarLong(in));
+            remaining--;
+            LocalDate date;
+            try {
+                date = LocalDate.ofEpochDay(day);
+            } catch (ArithmeticException e) {
+                throw new StreamCorruptedException("Day " + day + " not valid");
+            }
+            return new ExpenseController(ExpenseModel.restore(name, date, CATEGORIES[category], cents, desc), VIEW);
+        }
+
+        /**
+         * Returns the text of a dictionary id.
+         *
+         * @param id the id read
+         * @return the text
+         * @throws StreamCorruptedException if the id is not in the dictionary
+         */
+        private String string(long id) throws StreamCorruptedException {
+            if(id < 0 || id >= strings.length) throw new StreamCorruptedException("Text id " + id + " not valid");
+            return strings[(int) id];
+        }
+
+        /**
+         * Checks a count read.
+         *
+         * @param count the count read
+         * @return the count as an int
+         * @throws StreamCorruptedException if the count is not valid
+         */
+        private static int count(long count) throws StreamCorruptedException {
+            if(count < 0 || count > Integer.MAX_VALUE) throw new StreamCorruptedException("Count " + count + " not valid");
+            return (int) count;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.project.src.expense;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar storage of expenses.
+ *
+ * Every field of the expenses is kept in its own primitive array: the date as
+ * the number of days since 1970-01-01, the amount in cents, the category as
+ * its ordinal and the name and the description as ids of a dictionary holding
+ * each distinct text once. The arrays grow by doubling, so adding is amortized
+ * constant time, and a row costs about 21 bytes plus its distinct texts,
+ * instead of the five objects of an ExpenseController.
+ * The expenses are read through lightweight ExpenseController objects rebuilt on
+ * demand, which share the texts of the dictionary and a single ExpenseView.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ExpenseColumns implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Categories[] CATEGORIES = Categories.values();
+    private static final ExpenseView VIEW = new ExpenseView();
+    private int size;
+    private int[] epochDay;
+    private long[] cents;
+    private byte[] category;
+    private int[] name;
+    private int[] desc;
+    private String[] strings;
+    private int stringCount;
+    private HashMap<String, Integer> ids;
+
+    /**
+     * Constructs empty ExpenseColumns.
+     */
+    public ExpenseColumns() {
+        clear();
+    }
+
+    /**
+     * Constructs ExpenseColumns containing the given expenses.
+     *
+     * @param expenses the expenses to add. Must not be null.
+     * @throws NullPointerException if expenses or any of its elements are null
+     */
+    public ExpenseColumns(Collection<ExpenseController> expenses) throws NullPointerException {
+        this();
+        if(expenses == null) throw new NullPointerException("expenses parameter is null");
+        for(ExpenseController e : expenses) {
+            if(e == null) throw new NullPointerException("Almost one expense is null");
+            add(e.getModel());
+        }
+    }
+
+    /**
+     * Constructs a read-only copy of the given columns.
+     * The copy shares nothing mutable with the source, so it can be read from any thread.
+     *
+     * @param source the columns to copy
+     */
+    private ExpenseColumns(ExpenseColumns source) {
+        size = source.size;
+        epochDay = Arrays.copyOf(source.epochDay, size);
+        cents = Arrays.copyOf(source.cents, size);
+        category = Arrays.copyOf(source.category, size);
+        name = Arrays.copyOf(source.name, size);
+        desc = Arrays.copyOf(source.desc, size);
+        stringCount = source.stringCount;
+        strings = Arrays.copyOf(source.strings, stringCount);
+        ids = null;
+    }
+
+    /**
+     * Adds an expense at the end of the columns.
+     *
+     * @param model the expense to add. Must not be null.
+     * @return the row of the expense
+     * @throws NullPointerException if model is null
+     * @throws UnsupportedOperationException if the columns are a read-only snapshot
+     */
+    public int add(ExpenseModel model) throws NullPointerException, UnsupportedOperationException {
+        if(model == null) throw new NullPointerException("model parameter is null");
+        if(isFrozen()) throw new UnsupportedOperationException("The columns are read-only");
+        if(size == epochDay.length) grow();
+        epochDay[size] = (int) model.getDate().toEpochDay();
+        cents[size] = model.getCents();
+        category[size] = (byte) model.getCategory().ordinal();
+        name[size] = intern(model.getName());
+        desc[size] = intern(model.getDesc());
+        return size++;
+    }
+
+    /**
+     * Removes all the expenses and the texts of the dictionary.
+     *
+     * @throws UnsupportedOperationException if the columns are a read-only snapshot
+     */
+    public void clear() throws UnsupportedOperationException {
+        if(epochDay != null && isFrozen()) throw new UnsupportedOperationException("The columns are read-only");
+        size = 0;
+        epochDay = new int[INITIAL_CAPACITY];
+        cents = new long[INITIAL_CAPACITY];
+        category = new byte[INITIAL_CAPACITY];
+        name = new int[INITIAL_CAPACITY];
+        desc = new int[INITIAL_CAPACITY];
+        strings = new String[INITIAL_CAPACITY];
+        stringCount = 0;
+        ids = new HashMap<>();
+    }
+
+    /**
+     * Returns the number of expenses.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the date of an expense as the number of days since 1970-01-01.
+     *
+     * @param row the row of the expense. Must be from 0 to size() - 1.
+     * @return the epoch day of the expense
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    public int getEpochDay(int row) throws IndexOutOfBoundsException {
+        checkRow(row);
+        return epochDay[row];
+    }
+
+    /**
+     * Returns the amount of an expense in cents.
+     *
+     * @param row the row of the expense. Must be from 0 to size() - 1.
+     * @return the amount in cents
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    public long getCents(int row) throws IndexOutOfBoundsException {
+        checkRow(row);
+        return cents[row];
+    }
+
+    /**
+     * Returns the category of an expense.
+     *
+     * @param row the row of the expense. Must be from 0 to size() - 1.
+     * @return the category
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    public Categories getCategory(int row) throws IndexOutOfBoundsException {
+        checkRow(row);
+        return CATEGORIES[category[row]];
+    }
+
+    /**
+     * Returns the name of an expense.
+     *
+     * @param row the row of the expense. Must be from 0 to size() - 1.
+     * @return the name
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    public String getName(int row) throws IndexOutOfBoundsException {
+        checkRow(row);
+        return strings[name[row]];
+    }
+
+    /**
+     * Returns the description of an expense.
+     *
+     * @param row the row of the expense. Must be from 0 to size() - 1.
+     * @return the description
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    public String getDesc(int row) throws IndexOutOfBoundsException {
+        checkRow(row);
+        return strings[desc[row]];
+    }
+
+    /**
+     * Returns an ExpenseController reading the expense of a row.
+     * The object is rebuilt on every call and is not stored anywhere.
+     *
+     * @param row the row of the expense. Must be from 0 to size() - 1.
+     * @return the expense of the row
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    public ExpenseController get(int row) throws IndexOutOfBoundsException {
+        checkRow(row);
+        ExpenseModel model = ExpenseModel.restore(strings[name[row]], LocalDate.ofEpochDay(epochDay[row]), CATEGORIES[category[row]], cents[row], strings[desc[row]]);
+        return new ExpenseController(model, VIEW);
+    }
+
+    /**
+     * Returns a read-only view of the expenses in row order.
+     * The view follows later additions, unless the columns are a snapshot.
+     *
+     * @return a list view of the expenses
+     */
+    public ListView asList() {
+        return new ListView(this);
+    }
+
+    /**
+     * Returns a read-only copy of the columns, safe to read from other threads.
+     *
+     * @return the snapshot of the columns
+     */
+    public ExpenseColumns snapshot() {
+        return new ExpenseColumns(this);
+    }
+
+    /**
+     * Checks if the columns are a read-only snapshot.
+     *
+     * @return true if the columns cannot change
+     */
+    public boolean isFrozen() {
+        return ids == null;
+    }
+
+    /**
+     * Returns the dictionary id of a text, adding it the first time.
+     *
+     * @param s the text
+     * @return the id of the text
+     */
+    private int intern(String s) {
+        Integer id = ids.get(s);
+        if(id != null) return id;
+        if(stringCount == strings.length) strings = Arrays.copyOf(strings, stringCount * 2);
+        strings[stringCount] = s;
+        ids.put(s, stringCount);
+        return stringCount++;
+    }
+
+    /**
+     * Doubles the capacity of the columns.
+     */
+    private void grow() {
+        int capacity = epochDay.length * 2;
+        epochDay = Arrays.copyOf(epochDay, capacity);
+        cents = Arrays.copyOf(cents, capacity);
+        category = Arrays.copyOf(category, capacity);
+        name = Arrays.copyOf(name, capacity);
+        desc = Arrays.copyOf(desc, capacity);
+    }
+
+    /**
+     * Checks that a row exists.
+     *
+     * @param row the row to check
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    private void checkRow(int row) throws IndexOutOfBoundsException {
+        if(row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+    }
+
+    /**
+     * Read-only list view of the expenses of ExpenseColumns.
+     */
+    public static final class ListView extends AbstractList<ExpenseController> implements RandomAccess {
+        private final ExpenseColumns columns;
+
+        /**
+         * Constructs a ListView of the given columns.
+         *
+         * @param columns the columns to view
+         */
+        private ListView(ExpenseColumns columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public ExpenseController get(int index) {
+            return columns.get(index);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+
+        /**
+         * Checks if the viewed columns are a read-only snapshot, so the view never changes.
+         *
+         * @return true if the view cannot change
+         */
+        public boolean isFrozen() {
+            return columns.isFrozen();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.project.src.expense;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter writing ExpenseColumns as a JSON array of ExpenseController objects,
+ * the same shape used when the expenses were stored in an ArrayList.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ExpenseColumnsAdapter implements TypeAdapterFactory {
+
+    /**
+     * Creates the adapter for ExpenseColumns.
+     *
+     * @param gson the Gson instance
+     * @param type the type to adapt
+     * @return the adapter, null if type is not ExpenseColumns
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if(type.getRawType() != ExpenseColumns.class) return null;
+        TypeAdapter<ExpenseController> element = gson.getAdapter(ExpenseController.class);
+        return (TypeAdapter<T>) new TypeAdapter<ExpenseColumns>() {
+            @Override
+            public void write(JsonWriter out, ExpenseColumns columns) throws IOException {
+                if(columns == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginArray();
+                for(int i = 0; i < columns.size(); i++) element.write(out, columns.get(i));
+                out.endArray();
+            }
+
+            @Override
+            public ExpenseColumns read(JsonReader in) throws IOException {
+                ExpenseColumns columns = new ExpenseColumns();
+                if(in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return columns;
+                }
+                in.beginArray();
+                while(in.hasNext()) columns.add(element.read(in).getModel());
+                in.endArray();
+                return columns;
+            }
+        };
+    }
+}
@@ -2,7 +2,7 @@ package com.project.src.expense;
 
 import processing.core.*;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Comparator;
 
 /**
@@ -14,6 +14,22 @@ import java.util.Comparator;
  * @version 1.0
  */
 public class ExpenseController implements Serializable {
+    /**
+     * The number of expenses drawn in each row of the list.
+     */
+    public static final int COLUMNS = 4;
+    /**
+     * The horizontal distance between two expenses of the same row.
+     */
+    public static final int COLUMN_WIDTH = 350;
+    /**
+     * The vertical distance between two rows of the list.
+     */
+    public static final int ROW_HEIGHT = 200;
+    /**
+     * The height of an expense card.
+     */
+    public static final int CARD_HEIGHT = 100;
     private ExpenseModel model;
     private ExpenseView view;
 
@@ -23,15 +39,26 @@ public class ExpenseController implements Serializable {
      * @param name the name of the expense. Must not be null or blank. The character must not be more than 10.
      * @param date the date of the expense. Must not be null. Must not be in the future.
      * @param category the category of the expense. Must not be null.
-     * @param amount the cost of the expense. Must not be NaN or Infinite.
+     * @param amount the cost of the expense in cents.
      * @param desc the description of the expense. Must not be null or blank. The character must not be more than 56.
      * @throws RuntimeException if the ExcpenseModel throw any exception.
      */
-    public ExpenseController(String name, LocalDate date, Categories category, float amount, String desc) throws RuntimeException {
+    public ExpenseController(String name, LocalDate date, Categories category, long amount, String desc) throws RuntimeException {
         model = new ExpenseModel(name,date,category,amount,desc);
         view = new ExpenseView();
     }
 
+    /**
+     * Constructs an ExpenseController around an existing model and view.
+     *
+     * @param model the model of the expense
+     * @param view the view of the expense, which can be shared
+     */
+    ExpenseController(ExpenseModel model, ExpenseView view) {
+        this.model = model;
+        this.view = view;
+    }
+
     /**
      * Shows the expense at the specified position.
      *
@@ -48,7 +75,7 @@ public class ExpenseController implements Serializable {
     }
 
     /**
-     * Renders a list of expenses starting at the specified position.
+     * Renders a list of expenses starting at the specified position, without scrolling.
      *
      * @param parent the main instance. Must not be null
      * @param list the list of expenses to render. Must not be null
@@ -57,24 +84,95 @@ public class ExpenseController implements Serializable {
      * @throws NullPointerException if parent or list are null
      * @throws IllegalArgumentException If x or y are less than 0. Otherwise, if x are more than parent.width or y are more than parent.height.
      */
-    public static void renderList(PApplet parent, ArrayList<ExpenseController> list, int startX, int startY)throws NullPointerException, IllegalArgumentException{
+    public static void renderList(PApplet parent, List<ExpenseController> list, int startX, int startY)throws NullPointerException, IllegalArgumentException{
+        renderList(parent, list, startX, startY, 0, parent == null ? 0 : parent.height);
+    }
+
+    /**
+     * Renders the rows of a scrolled list of expenses which are inside the viewport.
+     *
+     * The list is laid out in rows of COLUMNS expenses starting at (startX, startY) of the content.
+     * Only the rows overlapping the viewport, from scrollPos to scrollPos + viewHeight, are drawn,
+     * so the cost of a frame does not depend on the length of the list. Each row is drawn
+     * translated to its position in the window, copying the cached image of each card.
+     *
+     * @param parent the main instance. Must not be null
+     * @param list the list of expenses to render. Must be a random access list. Must not be null. Null elements, not read yet, are left empty
+     * @param startX the starting x-coordinate. Must not be less than 0 or more than parent.width
+     * @param startY the starting y-coordinate of the content. Must not be less than 0 or more than parent.height
+     * @param scrollPos the y-coordinate of the content shown at the top of the window. Must not be less than 0
+     * @param viewHeight the height of the viewport. Must not be less than 0
+     * @throws NullPointerException if parent or list are null
+     * @throws IllegalArgumentException If x, y, scrollPos or viewHeight are less than 0. Otherwise, if x are more than parent.width or y are more than parent.height.
+     */
+    public static void renderList(PApplet parent, List<ExpenseController> list, int startX, int startY, int scrollPos, int viewHeight)throws NullPointerException, IllegalArgumentException{
         if(parent == null || list == null) throw new NullPointerException("parent or list parameter are null");
         if(startX < 0 || startY < 0 || startX > parent.width || startY > parent.height) throw new IllegalArgumentException("x or y are less than 0. Otherwise, x are more than parent.width or y are more than parent.height");
-        int cont = 0;
-        int x = startX;
-        int y = startY;
-        for(ExpenseController e : list) {
-            e.getView().view(parent,e.getModel(),x,y);
-            if(++cont<=3) {
-                x += 350;
-            }else {
-                x = startX;
-                y += 200;
-                cont = 0;
+        if(scrollPos < 0 || viewHeight < 0) throw new IllegalArgumentException("scrollPos or viewHeight are less than 0");
+        int rows = rows(list.size());
+        int first = firstVisibleRow(startY, scrollPos);
+        int last = Math.min(rows - 1, lastVisibleRow(startY, scrollPos, viewHeight));
+        for(int row = first; row <= last; row++) {
+            parent.pushMatrix();
+            parent.translate(0, startY + row * ROW_HEIGHT - scrollPos);
+            int end = Math.min(list.size(), (row + 1) * COLUMNS);
+            for(int i = row * COLUMNS, x = startX; i < end; i++, x += COLUMN_WIDTH) {
+                ExpenseController e = list.get(i);
+                if(e != null) e.getView().view(parent,e.getModel(),x,0);
             }
+            parent.popMatrix();
         }
     }
 
+    /**
+     * Returns the first row of a scrolled list overlapping the viewport.
+     *
+     * @param startY the starting y-coordinate of the content
+     * @param scrollPos the y-coordinate of the content shown at the top of the window
+     * @return the index of the first visible row, not less than 0
+     */
+    public static int firstVisibleRow(int startY, int scrollPos) {
+        return Math.max(0, Math.floorDiv(scrollPos - startY - CARD_HEIGHT, ROW_HEIGHT) + 1);
+    }
+
+    /**
+     * Returns the last row of a scrolled list overlapping the viewport, whether the list has it or not.
+     *
+     * @param startY the starting y-coordinate of the content
+     * @param scrollPos the y-coordinate of the content shown at the top of the window
+     * @param viewHeight the height of the viewport
+     * @return the index of the last visible row
+     */
+    public static int lastVisibleRow(int startY, int scrollPos, int viewHeight) {
+        return Math.floorDiv(scrollPos + viewHeight - 1 - startY, ROW_HEIGHT);
+    }
+
+    /**
+     * Returns the number of rows needed to render a list of expenses.
+     *
+     * @param size the number of expenses. Must not be less than 0
+     * @return the number of rows
+     * @throws IllegalArgumentException if size is less than 0
+     */
+    public static int rows(int size) throws IllegalArgumentException{
+        if(size < 0) throw new IllegalArgumentException("size is less than 0");
+        return (size + COLUMNS - 1) / COLUMNS;
+    }
+
+    /**
+     * Returns the height of the content needed to render a list of expenses.
+     *
+     * @param size the number of expenses. Must not be less than 0
+     * @param startY the starting y-coordinate of the list. Must not be less than 0
+     * @return the height of the content, from 0 to the bottom of the last row
+     * @throws IllegalArgumentException if size or startY are less than 0
+     */
+    public static int contentHeight(int size, int startY) throws IllegalArgumentException{
+        if(startY < 0) throw new IllegalArgumentException("startY is less than 0");
+        int rows = rows(size);
+        return rows == 0 ? startY : startY + (rows - 1) * ROW_HEIGHT + CARD_HEIGHT;
+    }
+
     /**
      * Gets the model object.
      *
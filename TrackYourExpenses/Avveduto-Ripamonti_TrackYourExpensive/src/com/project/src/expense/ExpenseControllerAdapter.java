@@ -0,0 +1,87 @@
+package com.project.src.expense;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter writing an ExpenseController as an object with its model and an empty view,
+ * the same shape written by the reflective adapter of Gson.
+ * The expenses read share a single ExpenseView, which has no state.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ExpenseControllerAdapter extends TypeAdapter<ExpenseController> {
+    private static final ExpenseModelAdapter MODEL = new ExpenseModelAdapter();
+    private static final ExpenseView VIEW = new ExpenseView();
+
+    /**
+     * Writes an expense as a JSON object.
+     *
+     * @param out the writer
+     * @param expense the expense to write, possibly null
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void write(JsonWriter out, ExpenseController expense) throws IOException {
+        if(expense == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("model");
+        MODEL.write(out, expense.getModel());
+        out.name("view").beginObject().endObject();
+        out.endObject();
+    }
+
+    /**
+     * Writes the expense of a row of ExpenseColumns as a JSON object,
+     * reading the columns directly instead of rebuilding the expense.
+     *
+     * @param out the writer. Must not be null.
+     * @param columns the columns holding the expense. Must not be null.
+     * @param row the row of the expense. Must be from 0 to columns.size() - 1.
+     * @throws IOException if the writer fails
+     * @throws NullPointerException if any of the parameters are null
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    public static void writeRow(JsonWriter out, ExpenseColumns columns, int row) throws IOException, NullPointerException, IndexOutOfBoundsException {
+        if(out == null || columns == null) throw new NullPointerException("Almost one parameter passed is null");
+        out.beginObject();
+        out.name("model");
+        ExpenseModelAdapter.write(out, columns.getName(row), LocalDate.ofEpochDay(columns.getEpochDay(row)), columns.getCategory(row), columns.getCents(row), columns.getDesc(row));
+        out.name("view").beginObject().endObject();
+        out.endObject();
+    }
+
+    /**
+     * Reads an expense from a JSON object. The view and unknown fields are ignored.
+     *
+     * @param in the reader
+     * @return the expense read, null for a JSON null
+     * @throws IOException if the reader fails
+     * @throws JsonParseException if the model is missing or not valid
+     */
+    @Override
+    public ExpenseController read(JsonReader in) throws IOException, JsonParseException {
+        if(in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ExpenseModel model = null;
+        in.beginObject();
+        while(in.hasNext()) {
+            if(in.nextName().equals("model")) model = MODEL.read(in);
+            else in.skipValue();
+        }
+        in.endObject();
+        if(model == null) throw new JsonParseException("The expense misses the model");
+        return new ExpenseController(model, VIEW);
+    }
+}
@@ -1,10 +1,14 @@
 package com.project.src.expense;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * MVC class representing an expense model.
  * This class stores the details of an expense, including its name, date, category, amount, and description.
+ * The amount is kept in cents, so it is exact.
  *
  * @author Angelo Ripamonti & Luca Avveduto
  * @version 1.0
@@ -14,8 +18,10 @@ public class ExpenseModel implements Serializable {
     private String name;
     private LocalDate date;
     private Categories category;
-    private float amount;
+    @JsonAdapter(MoneyAdapter.class)
+    private long amount;
     private String desc;
+    private transient int hash;
 
     /**
      * Constructs an ExpenseModel with the specified details.
@@ -23,16 +29,15 @@ public class ExpenseModel implements Serializable {
      * @param name the name of the expense. Must not be null or blank. The character must not be more than 10.
      * @param date the date of the expense. Must not be null. Must not be in the future.
      * @param category the category of the expense. Must not be null.
-     * @param amount the cost of the expense. Must not be NaN or Infinite.
+     * @param amount the cost of the expense in cents.
      * @param desc the description of the expense. Must not be null or blank. The character must not be more than 56.
      * @throws NullPointerException if any of the parameters are null.
-     * @throws IllegalArgumentException if the name or description is too long or blank. If the amount is NaN or Infinite. If the date is in the future.
+     * @throws IllegalArgumentException if the name or description is too long or blank. If the date is in the future.
      */
-    public ExpenseModel(String name, LocalDate date, Categories category, float amount, String desc) throws NullPointerException, IllegalArgumentException{
+    public ExpenseModel(String name, LocalDate date, Categories category, long amount, String desc) throws NullPointerException, IllegalArgumentException{
         if(name == null || date == null || category == null || desc == null) throw new NullPointerException("Almost one parameter passed is null");
         if(name.isBlank() || desc.isBlank()) throw new IllegalArgumentException("Almost one parameter passed is blank");
         if(date.isAfter(new LocalDate(java.time.LocalDate.now()))) throw new IllegalArgumentException("Date passed is in the future");
-        if(Float.isNaN(amount) || Float.isInfinite(amount)) throw new IllegalArgumentException("Amount passed is Not a Number or Infinite number.");
         if(name.length() <= 10) this.name = name;
         else throw new IllegalArgumentException("Name passed too long.");
         this.date = date;
@@ -48,6 +53,33 @@ public class ExpenseModel implements Serializable {
         }
     }
 
+    /**
+     * Constructs an empty ExpenseModel, filled by restore().
+     */
+    private ExpenseModel() {
+    }
+
+    /**
+     * Rebuilds an ExpenseModel from values already validated, such as the ones read from ExpenseColumns.
+     * The description is kept as it is, already wrapped.
+     *
+     * @param name the name of the expense
+     * @param date the date of the expense
+     * @param category the category of the expense
+     * @param amount the cost of the expense in cents
+     * @param desc the wrapped description of the expense
+     * @return the expense
+     */
+    static ExpenseModel restore(String name, LocalDate date, Categories category, long amount, String desc) {
+        ExpenseModel m = new ExpenseModel();
+        m.name = name;
+        m.date = date;
+        m.category = category;
+        m.amount = amount;
+        m.desc = desc;
+        return m;
+    }
+
     /**
      * Gets the name of the expense.
      *
@@ -76,11 +108,11 @@ public class ExpenseModel implements Serializable {
     }
 
     /**
-     * Gets the amount of the expense.
+     * Gets the amount of the expense in cents.
      *
-     * @return the amount of the expense
+     * @return the amount of the expense in cents
      */
-    public float getAmount() {
+    public long getCents() {
         return amount;
     }
 
@@ -93,4 +125,34 @@ public class ExpenseModel implements Serializable {
         return desc;
     }
 
+    /**
+     * Checks if this expense has the same content of the given object.
+     *
+     * @param o the object to compare to
+     * @return true if o is an ExpenseModel with the same name, date, category, amount and description
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof ExpenseModel other)) return false;
+        return amount == other.amount && category == other.category && date.equals(other.date)
+                && name.equals(other.name) && desc.equals(other.desc);
+    }
+
+    /**
+     * Returns the hash code of the content of the expense.
+     * The expense cannot change, so the hash code is computed only once.
+     *
+     * @return the hash code of the expense
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if(h == 0) {
+            h = Objects.hash(name, date, category, amount, desc);
+            hash = h;
+        }
+        return h;
+    }
+
 }
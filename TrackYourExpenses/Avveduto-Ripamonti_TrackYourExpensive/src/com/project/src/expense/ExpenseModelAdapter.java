@@ -0,0 +1,96 @@
+package com.project.src.expense;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter writing an ExpenseModel as an object with the name, date, category,
+ * amount and desc fields, the same shape written by the reflective adapter of Gson.
+ * The fields are written and read directly, without looking up other adapters.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ExpenseModelAdapter extends TypeAdapter<ExpenseModel> {
+    private static final LocalDateAdapter DATE = new LocalDateAdapter();
+    private static final CategoriesAdapter CATEGORY = new CategoriesAdapter();
+
+    /**
+     * Writes an expense as a JSON object.
+     *
+     * @param out the writer
+     * @param model the expense to write, possibly null
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void write(JsonWriter out, ExpenseModel model) throws IOException {
+        if(model == null) {
+            out.nullValue();
+            return;
+        }
+        write(out, model.getName(), model.getDate(), model.getCategory(), model.getCents(), model.getDesc());
+    }
+
+    /**
+     * Writes the fields of an expense as a JSON object.
+     *
+     * @param out the writer
+     * @param name the name of the expense
+     * @param date the date of the expense
+     * @param category the category of the expense
+     * @param cents the amount of the expense in cents
+     * @param desc the description of the expense
+     * @throws IOException if the writer fails
+     */
+    static void write(JsonWriter out, String name, LocalDate date, Categories category, long cents, String desc) throws IOException {
+        out.beginObject();
+        out.name("name").value(name);
+        out.name("date");
+        DATE.write(out, date);
+        out.name("category");
+        CATEGORY.write(out, category);
+        out.name("amount").jsonValue(Money.format(cents));
+        out.name("desc").value(desc);
+        out.endObject();
+    }
+
+    /**
+     * Reads an expense from a JSON object. Unknown fields are ignored.
+     *
+     * @param in the reader
+     * @return the expense read, null for a JSON null
+     * @throws IOException if the reader fails
+     * @throws JsonParseException if a field is missing or not valid
+     */
+    @Override
+    public ExpenseModel read(JsonReader in) throws IOException, JsonParseException {
+        if(in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = null;
+        LocalDate date = null;
+        Categories category = null;
+        long cents = 0;
+        String desc = null;
+        in.beginObject();
+        while(in.hasNext()) {
+            switch (in.nextName()) {
+                case "name" -> name = in.nextString();
+                case "date" -> date = DATE.read(in);
+                case "category" -> category = CATEGORY.read(in);
+                case "amount" -> cents = MoneyAdapter.readCents(in);
+                case "desc" -> desc = in.nextString();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if(name == null || date == null || category == null || desc == null) throw new JsonParseException("The expense misses the name, the date, the category or the description");
+        return ExpenseModel.restore(name, date, category, cents, desc);
+    }
+}
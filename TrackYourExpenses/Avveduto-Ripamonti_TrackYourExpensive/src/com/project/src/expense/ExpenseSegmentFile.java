@@ -0,0 +1,562 @@
+package com.project.src.expense;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only history of expenses kept in memory-mapped segment files of fixed-width records.
+ *
+ * Every expense takes a record of RECORD_BYTES bytes holding its day, amount, category, name,
+ * wrapped description and the version which added it, and is addressed by its slot, its position
+ * in the history. The slots are spread over files of SEGMENT_RECORDS records, mapped with
+ * FileChannel.map when first used, so reading a field is a read of the mapped memory.
+ * Appending is lock-free: a slot is reserved with an atomic counter, its record written in place
+ * and then published by setting its state with release semantics, so a slot is read only once
+ * its whole record is visible. Only mapping a new segment takes a lock.
+ * The fields of a range of slots can be scanned without creating any object, skipping the segments
+ * whose days are all out of the range scanned. On opening, the history ends at the first slot not
+ * published, so the records torn by a crash are dropped. Appended records are durable after force().
+ * The names of the segment files carry the generation of the history, and the current one is kept
+ * in a small file replaced atomically. A compaction writes the next generation next to the current
+ * one and then switches to it, so no file is ever replaced or deleted while it is mapped: the files
+ * of the other generations are deleted as soon as the platform allows it, at the latest when the
+ * history is opened again, since a mapped file cannot be deleted on Windows.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ExpenseSegmentFile {
+    /**
+     * The bytes of a record.
+     */
+    public static final int RECORD_BYTES = 200;
+    /**
+     * The number of records of a segment file.
+     */
+    public static final int SEGMENT_RECORDS = 4096;
+    /**
+     * The maximum number of characters of a name.
+     */
+    public static final int NAME_CHARS = 20;
+    /**
+     * The maximum number of characters of a wrapped description.
+     */
+    public static final int DESC_CHARS = 64;
+    private static final int STATE = 0;
+    private static final int DAY = 4;
+    private static final int CENTS = 8;
+    private static final int VERSION = 16;
+    private static final int CATEGORY = 24;
+    private static final int NAME_LENGTH = 25;
+    private static final int DESC_LENGTH = 26;
+    private static final int NAME = 28;
+    private static final int DESC = NAME + 2 * NAME_CHARS;
+    private static final int PUBLISHED = 1;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final Categories[] CATEGORIES = Categories.values();
+    private static final ExpenseView VIEW = new ExpenseView();
+    private static final String CURRENT = "current";
+    private static final String PREFIX = "segment-";
+    private final Path dir;
+    private long generation;
+    private final AtomicLong reserved;
+    private volatile Segment[] segments;
+
+    /**
+     * Opens the history kept in the given directory, creating it if it does not exist, and deletes
+     * the files of the other generations, left by a compaction or a deletion.
+     *
+     * @param dir the directory of the segment files. Must not be null.
+     * @throws IOException if the segments cannot be read or mapped
+     * @throws NullPointerException if dir is null
+     */
+    public ExpenseSegmentFile(Path dir) throws IOException, NullPointerException {
+        if(dir == null) throw new NullPointerException("dir parameter is null");
+        this.dir = dir;
+        Files.createDirectories(dir);
+        Path current = dir.resolve(CURRENT);
+        generation = Files.exists(current) ? Long.parseLong(Files.readString(current).trim()) : 0;
+        deleteOtherGenerations();
+        segments = mapAll();
+        long count = 0;
+        long capacity = (long) segments.length * SEGMENT_RECORDS;
+        while(count < capacity && isPublished(count)) {
+            segments[segment(count)].include(day(count));
+            count++;
+        }
+        reserved = new AtomicLong(count);
+        clear(count, capacity);
+    }
+
+    /**
+     * Returns the path of a segment file.
+     *
+     * @param generation the generation of the history
+     * @param index the index of the segment
+     * @return the path of the segment file
+     */
+    private Path segmentPath(long generation, int index) {
+        return dir.resolve(String.format(PREFIX + "%d-%05d.dat", generation, index));
+    }
+
+    /**
+     * Returns the generation in the name of a segment file.
+     *
+     * @param file the file
+     * @return the generation, -1 if the file is not a segment file
+     */
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        int end = name.indexOf('-', PREFIX.length());
+        if(!name.startsWith(PREFIX) || end < 0) return -1;
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Maps the segment files of the current generation.
+     *
+     * @return the mapped segments, in order
+     * @throws IOException if a file cannot be mapped
+     */
+    private Segment[] mapAll() throws IOException {
+        ArrayList<Segment> found = new ArrayList<>();
+        while(Files.exists(segmentPath(generation, found.size()))) found.add(map(found.size()));
+        return found.toArray(new Segment[0]);
+    }
+
+    /**
+     * Makes a generation the current one, replacing atomically the file naming it.
+     *
+     * @param next the new generation
+     * @throws IOException if the file cannot be written
+     */
+    private void switchTo(long next) throws IOException {
+        Path tmp = dir.resolve(CURRENT + ".tmp");
+        try(FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.wrap(Long.toString(next).getBytes(StandardCharsets.US_ASCII));
+            while(b.hasRemaining()) ch.write(b);
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(CURRENT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation = next;
+    }
+
+    /**
+     * Returns the generation after every one found in the directory, so its files do not exist yet.
+     *
+     * @return the next generation
+     * @throws IOException if the directory cannot be listed
+     */
+    private long nextGeneration() throws IOException {
+        long last = generation;
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*")) {
+            for(Path f : files) last = Math.max(last, generationOf(f));
+        }
+        return last + 1;
+    }
+
+    /**
+     * Deletes the segment files not of the current generation. The ones which cannot be deleted yet,
+     * such as the ones still mapped on Windows, are left to the next call.
+     *
+     * @return true if no such file is left
+     * @throws IOException if the directory cannot be listed
+     */
+    private boolean deleteOtherGenerations() throws IOException {
+        boolean clean = true;
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*")) {
+            for(Path f : files) {
+                if(generationOf(f) == generation) continue;
+                try {
+                    Files.delete(f);
+                } catch (IOException e) {
+                    clean = false;
+                }
+            }
+        }
+        return clean;
+    }
+
+    /**
+     * Maps a segment file, creating it with its full size if it does not exist.
+     *
+     * @param index the index of the segment
+     * @return the mapped segment
+     * @throws IOException if the file cannot be created or mapped
+     */
+    private Segment map(int index) throws IOException {
+        try(FileChannel ch = FileChannel.open(segmentPath(generation, index), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(ch.map(FileChannel.MapMode.READ_WRITE, 0, (long) SEGMENT_RECORDS * RECORD_BYTES));
+        }
+    }
+
+    /**
+     * Returns the segment of a slot, mapping the segments up to it if needed.
+     * Only mapping takes the lock, the segments already mapped are read from a volatile array.
+     *
+     * @param slot the slot
+     * @return the segment holding the slot
+     * @throws IOException if a segment cannot be mapped
+     */
+    private Segment segmentFor(long slot) throws IOException {
+        int index = segment(slot);
+        Segment[] current = segments;
+        if(index < current.length) return current[index];
+        synchronized (this) {
+            current = segments;
+            if(index >= current.length) {
+                Segment[] grown = Arrays.copyOf(current, index + 1);
+                for(int i = current.length; i <= index; i++) grown[i] = map(i);
+                segments = grown;
+                current = grown;
+            }
+            return current[index];
+        }
+    }
+
+    /**
+     * Returns the index of the segment of a slot.
+     *
+     * @param slot the slot
+     * @return the segment index
+     */
+    private static int segment(long slot) {
+        return Math.toIntExact(slot / SEGMENT_RECORDS);
+    }
+
+    /**
+     * Returns the offset of the record of a slot in its segment.
+     *
+     * @param slot the slot
+     * @return the offset of the record
+     */
+    private static int offset(long slot) {
+        return (int) (slot % SEGMENT_RECORDS) * RECORD_BYTES;
+    }
+
+    /**
+     * Appends an expense, without taking any lock unless a new segment has to be mapped.
+     *
+     * @param exp the expense to append. Must not be null.
+     * @param version the version of the account adding the expense
+     * @return the slot of the expense
+     * @throws IOException if a new segment cannot be mapped
+     * @throws NullPointerException if exp is null
+     * @throws IllegalArgumentException if the name or the description of the expense are too long for a record
+     */
+    public long append(ExpenseController exp, long version) throws IOException, NullPointerException, IllegalArgumentException {
+        if(exp == null) throw new NullPointerException("exp parameter is null");
+        ExpenseModel m = exp.getModel();
+        if(m.getName().length() > NAME_CHARS || m.getDesc().length() > DESC_CHARS) throw new IllegalArgumentException("Name or description too long for a record");
+        long slot = reserved.getAndIncrement();
+        Segment s = segmentFor(slot);
+        ByteBuffer b = s.buffer;
+        int at = offset(slot);
+        int day = (int) m.getDate().toEpochDay();
+        b.putInt(at + DAY, day);
+        b.putLong(at + CENTS, m.getCents());
+        b.putLong(at + VERSION, version);
+        b.put(at + CATEGORY, (byte) m.getCategory().ordinal());
+        putChars(b, at + NAME_LENGTH, at + NAME, m.getName());
+        putChars(b, at + DESC_LENGTH, at + DESC, m.getDesc());
+        s.include(day);
+        INT.setRelease(b, at + STATE, PUBLISHED);
+        return slot;
+    }
+
+    /**
+     * Writes a text as its length and its characters.
+     *
+     * @param b the buffer of the segment
+     * @param lengthAt the offset of the length
+     * @param at the offset of the characters
+     * @param s the text
+     */
+    private static void putChars(ByteBuffer b, int lengthAt, int at, String s) {
+        b.put(lengthAt, (byte) s.length());
+        for(int i = 0; i < s.length(); i++) b.putChar(at + 2 * i, s.charAt(i));
+    }
+
+    /**
+     * Reads a text written by putChars.
+     *
+     * @param b the buffer of the segment
+     * @param lengthAt the offset of the length
+     * @param at the offset of the characters
+     * @return the text
+     */
+    private static String getChars(ByteBuffer b, int lengthAt, int at) {
+        char[] chars = new char[b.get(lengthAt) & 0xFF];
+        for(int i = 0; i < chars.length; i++) chars[i] = b.getChar(at + 2 * i);
+        return new String(chars);
+    }
+
+    /**
+     * Returns the number of slots of the history, reserved ones included.
+     * Every slot before it is published once the appends reserving them have returned.
+     *
+     * @return the number of slots
+     */
+    public long size() {
+        return reserved.get();
+    }
+
+    /**
+     * Checks if the record of a slot has been published.
+     *
+     * @param slot the slot
+     * @return true if the whole record of the slot is visible
+     */
+    public boolean isPublished(long slot) {
+        Segment[] current = segments;
+        int index = segment(slot);
+        return slot >= 0 && index < current.length && (int) INT.getAcquire(current[index].buffer, offset(slot) + STATE) == PUBLISHED;
+    }
+
+    /**
+     * Returns the day of the expense of a slot, read in place.
+     *
+     * @param slot a published slot
+     * @return the number of days since 1970-01-01 of the expense
+     */
+    public int day(long slot) {
+        return segments[segment(slot)].buffer.getInt(offset(slot) + DAY);
+    }
+
+    /**
+     * Returns the amount of the expense of a slot, read in place.
+     *
+     * @param slot a published slot
+     * @return the amount in cents
+     */
+    public long cents(long slot) {
+        return segments[segment(slot)].buffer.getLong(offset(slot) + CENTS);
+    }
+
+    /**
+     * Returns the version which added the expense of a slot, read in place.
+     *
+     * @param slot a published slot
+     * @return the version of the account adding the expense
+     */
+    public long version(long slot) {
+        return segments[segment(slot)].buffer.getLong(offset(slot) + VERSION);
+    }
+
+    /**
+     * Returns the category of the expense of a slot, read in place.
+     *
+     * @param slot a published slot
+     * @return the category of the expense
+     */
+    public Categories category(long slot) {
+        return CATEGORIES[segments[segment(slot)].buffer.get(offset(slot) + CATEGORY)];
+    }
+
+    /**
+     * Rebuilds the expense of a slot.
+     *
+     * @param slot a published slot
+     * @return the expense
+     */
+    public ExpenseController read(long slot) {
+        ByteBuffer b = segments[segment(slot)].buffer;
+        int at = offset(slot);
+        ExpenseModel m = ExpenseModel.restore(getChars(b, at + NAME_LENGTH, at + NAME), LocalDate.ofEpochDay(b.getInt(at + DAY)),
+                CATEGORIES[b.get(at + CATEGORY)], b.getLong(at + CENTS), getChars(b, at + DESC_LENGTH, at + DESC));
+        return new ExpenseController(m, VIEW);
+    }
+
+    /**
+     * Rebuilds the expenses of a range of slots.
+     *
+     * @param from the first slot
+     * @param to the slot after the last one
+     * @return a new list of the expenses in slot order
+     */
+    public ArrayList<ExpenseController> read(long from, long to) {
+        ArrayList<ExpenseController> list = new ArrayList<>((int) Math.max(0, to - from));
+        for(long slot = from; slot < to; slot++) list.add(read(slot));
+        return list;
+    }
+
+    /**
+     * Visits the day, category and amount of the expenses of a range of slots whose day is in a range,
+     * reading them in place without creating any object. The segments whose days are all out of
+     * the range are skipped without reading their records.
+     *
+     * @param from the first slot
+     * @param to the slot after the last one
+     * @param fromDay the first day of the range
+     * @param toDay the day after the range
+     * @param visitor told about every expense in range. Must not be null.
+     * @throws NullPointerException if visitor is null
+     */
+    public void scan(long from, long to, int fromDay, int toDay, Visitor visitor) throws NullPointerException {
+        if(visitor == null) throw new NullPointerException("visitor parameter is null");
+        Segment[] current = segments;
+        long slot = Math.max(0, from);
+        while(slot < to) {
+            int index = segment(slot);
+            long end = Math.min(to, (long) (index + 1) * SEGMENT_RECORDS);
+            Segment s = current[index];
+            if(s.maxDay.get() >= fromDay && s.minDay.get() < toDay) {
+                ByteBuffer b = s.buffer;
+                for(; slot < end; slot++) {
+                    int at = offset(slot);
+                    int day = b.getInt(at + DAY);
+                    if(day >= fromDay && day < toDay) visitor.visit(slot, day, CATEGORIES[b.get(at + CATEGORY)], b.getLong(at + CENTS));
+                }
+            }
+            slot = end;
+        }
+    }
+
+    /**
+     * Drops the slots from the given one on, such as the ones appended after the last state
+     * known to be durable. Must not run while expenses are appended.
+     *
+     * @param size the number of slots kept
+     */
+    public synchronized void truncate(long size) {
+        long current = reserved.get();
+        if(size >= current) return;
+        clear(size, current);
+        reserved.set(Math.max(0, size));
+    }
+
+    /**
+     * Clears the state of a range of slots.
+     *
+     * @param from the first slot
+     * @param to the slot after the last one
+     */
+    private void clear(long from, long to) {
+        Segment[] current = segments;
+        long end = Math.min(to, (long) current.length * SEGMENT_RECORDS);
+        for(long slot = Math.max(0, from); slot < end; slot++) INT.setRelease(current[segment(slot)].buffer, offset(slot) + STATE, 0);
+    }
+
+    /**
+     * Makes the published records durable, writing the mapped pages to the segment files.
+     */
+    public void force() {
+        for(Segment s : segments) s.buffer.force();
+    }
+
+    /**
+     * Rewrites the history without the slots before the given one, copying the records as they are,
+     * as the files of the next generation, and then switches to them. The slots kept are renumbered from 0.
+     * A crash before the switch leaves the old history, after it the new one. The files of the old
+     * generation are still mapped until their buffers are collected, so they are deleted only where
+     * the platform allows it and otherwise when the history is opened again.
+     * Must not run while expenses are appended.
+     *
+     * @param from the first slot kept
+     * @throws IOException if the new segments cannot be written or switched to
+     */
+    public synchronized void compact(long from) throws IOException {
+        long size = reserved.get();
+        from = Math.max(0, Math.min(from, size));
+        long next = nextGeneration();
+        Segment[] current = segments;
+        for(long slot = from, index = 0; slot < size; index++) {
+            long end = Math.min(size, slot + SEGMENT_RECORDS);
+            try(FileChannel ch = FileChannel.open(segmentPath(next, (int) index), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = ch.map(FileChannel.MapMode.READ_WRITE, 0, (long) SEGMENT_RECORDS * RECORD_BYTES);
+                for(int i = 0; slot < end; slot++, i++) {
+                    ByteBuffer record = current[segment(slot)].buffer.slice(offset(slot), RECORD_BYTES);
+                    out.put(i * RECORD_BYTES, record, 0, RECORD_BYTES);
+                }
+                out.force();
+            }
+        }
+        long kept = size - from;
+        switchTo(next);
+        Segment[] mapped = mapAll();
+        for(long slot = 0; slot < kept; slot++) mapped[segment(slot)].include(mapped[segment(slot)].buffer.getInt(offset(slot) + DAY));
+        segments = mapped;
+        reserved.set(kept);
+        deleteOtherGenerations();
+    }
+
+    /**
+     * Deletes the history and its directory. The history is first switched to a new empty generation,
+     * so the files which cannot be deleted yet, being still mapped on Windows, are no longer part of it
+     * and are deleted with the directory when it is opened again. The history must not be used afterwards.
+     *
+     * @throws IOException if the history cannot be switched or its directory listed
+     */
+    public synchronized void delete() throws IOException {
+        switchTo(nextGeneration());
+        segments = new Segment[0];
+        reserved.set(0);
+        if(!deleteOtherGenerations()) return;
+        Files.deleteIfExists(dir.resolve(CURRENT + ".tmp"));
+        Files.delete(dir.resolve(CURRENT));
+        Files.delete(dir);
+    }
+
+    /**
+     * Told about the expenses visited by scan(), field by field.
+     */
+    public interface Visitor {
+
+        /**
+         * Visits an expense.
+         *
+         * @param slot the slot of the expense
+         * @param day the number of days since 1970-01-01 of the expense
+         * @param category the category of the expense
+         * @param cents the amount of the expense in cents
+         */
+        void visit(long slot, int day, Categories category, long cents);
+    }
+
+    /**
+     * A mapped segment file and the range of the days of its published records.
+     */
+    private static final class Segment {
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger minDay = new AtomicInteger(Integer.MAX_VALUE);
+        private final AtomicInteger maxDay = new AtomicInteger(Integer.MIN_VALUE);
+
+        /**
+         * Constructs a Segment without records.
+         *
+         * @param buffer the mapped file
+         */
+        private Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Widens the range of the days of the segment to include a day.
+         *
+         * @param day the day of a record
+         */
+        private void include(int day) {
+            minDay.accumulateAndGet(day, Math::min);
+            maxDay.accumulateAndGet(day, Math::max);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.project.src.expense;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Indexed collection of expenses.
+ *
+ * The expenses are kept in ExpenseColumns, in insertion order. Besides them the
+ * store keeps one bucket of rows per category, maintained incrementally on every
+ * addition, so the expenses of a category are available without scanning the
+ * whole list.
+ * For every sort key and category an ordering of rows is built the first time it
+ * is requested and then kept sorted by inserting each new row in place, so
+ * switching order never sorts or copies the expenses again.
+ * The monthly aggregates of the expenses are kept up to date as well.
+ * The lists returned are read-only views which follow later additions; their
+ * elements are rebuilt from the columns when read.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class ExpenseStore {
+    private final ExpenseColumns columns;
+    private final EnumMap<Categories, RowList> buckets;
+    private final EnumMap<Categories, List<ExpenseController>> views;
+    private final EnumMap<SortKey, EnumMap<Categories, RowList>> orderings;
+    private final MonthlyRollup rollup;
+
+    /**
+     * Constructs an empty ExpenseStore.
+     */
+    public ExpenseStore() {
+        this(new ExpenseColumns());
+    }
+
+    /**
+     * Constructs an ExpenseStore containing the given expenses.
+     *
+     * @param expenses the expenses to add. Must not be null.
+     * @throws NullPointerException if expenses or any of its elements are null
+     */
+    public ExpenseStore(Collection<ExpenseController> expenses) throws NullPointerException {
+        this(new ExpenseColumns(expenses));
+    }
+
+    /**
+     * Constructs an ExpenseStore indexing the given columns.
+     * The store takes the columns over: later additions are appended to them.
+     *
+     * @param columns the columns holding the expenses. Must not be null.
+     * @throws NullPointerException if columns is null
+     */
+    public ExpenseStore(ExpenseColumns columns) throws NullPointerException {
+        if(columns == null) throw new NullPointerException("columns parameter is null");
+        this.columns = columns;
+        buckets = new EnumMap<>(Categories.class);
+        views = new EnumMap<>(Categories.class);
+        orderings = new EnumMap<>(SortKey.class);
+        rollup = new MonthlyRollup();
+        for(SortKey k : SortKey.values()) orderings.put(k, new EnumMap<>(Categories.class));
+        for(Categories c : Categories.values()) {
+            if(c == Categories.ALL) {
+                views.put(c, columns.asList());
+            } else {
+                RowList bucket = new RowList();
+                buckets.put(c, bucket);
+                views.put(c, new RowView(columns, bucket, false));
+            }
+        }
+        for(int row = 0; row < columns.size(); row++) index(row);
+    }
+
+    /**
+     * Adds an expense to the store, to the bucket of its category,
+     * to the orderings already built and to the monthly aggregates.
+     *
+     * @param exp the expense to add. Must not be null.
+     * @throws NullPointerException if exp is null
+     */
+    public void add(ExpenseController exp) throws NullPointerException {
+        if(exp == null) throw new NullPointerException("exp parameter is null");
+        int row = columns.add(exp.getModel());
+        index(row);
+        Categories cat = columns.getCategory(row);
+        for(SortKey k : SortKey.values()) {
+            EnumMap<Categories, RowList> byCategory = orderings.get(k);
+            RowList sorted = byCategory.get(Categories.ALL);
+            if(sorted != null) insertSorted(sorted, row, k);
+            sorted = byCategory.get(cat);
+            if(sorted != null) insertSorted(sorted, row, k);
+        }
+    }
+
+    /**
+     * Adds a row of the columns to the bucket of its category and to the monthly aggregates.
+     *
+     * @param row the row to index
+     */
+    private void index(int row) {
+        Categories cat = columns.getCategory(row);
+        buckets.get(cat).add(row);
+        int m = LocalDate.monthIndex(columns.getEpochDay(row));
+        rollup.add(Math.floorDiv(m, 12), Math.floorMod(m, 12) + 1, cat, columns.getCents(row));
+    }
+
+    /**
+     * Inserts a row in a sorted list after the rows comparing equal to it,
+     * so expenses with the same key stay in insertion order.
+     *
+     * @param sorted the sorted list
+     * @param row the row to insert
+     * @param key the key the list is sorted by
+     */
+    private void insertSorted(RowList sorted, int row, SortKey key) {
+        int low = 0;
+        int high = sorted.size();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(key.compare(columns, sorted.get(mid), row) <= 0) low = mid + 1;
+            else high = mid;
+        }
+        sorted.insert(low, row);
+    }
+
+    /**
+     * Removes all the expenses from the store.
+     */
+    public void clear() {
+        columns.clear();
+        rollup.clear();
+        for(RowList bucket : buckets.values()) bucket.clear();
+        for(EnumMap<Categories, RowList> byCategory : orderings.values()) {
+            for(RowList sorted : byCategory.values()) sorted.clear();
+        }
+    }
+
+    /**
+     * Returns the expenses of a category in insertion order.
+     * For Categories.ALL every expense is returned. No copy is made.
+     *
+     * @param cat the category. Must not be null.
+     * @return a read-only view of the expenses of the category
+     * @throws NullPointerException if cat is null
+     */
+    public List<ExpenseController> byCategory(Categories cat) throws NullPointerException {
+        if(cat == null) throw new NullPointerException("cat parameter is null");
+        return views.get(cat);
+    }
+
+    /**
+     * Returns the expenses of a category ordered by the given key.
+     * The ordering is built the first time it is requested, afterwards it is
+     * returned directly. The descending order is a reversed view of the ascending one.
+     *
+     * @param cat the category. Must not be null.
+     * @param key the key to order by. Must not be null.
+     * @param descending true for the descending order, false for the ascending one
+     * @return a read-only view of the ordered expenses of the category
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public List<ExpenseController> sorted(Categories cat, SortKey key, boolean descending) throws NullPointerException {
+        if(cat == null || key == null) throw new NullPointerException("Almost one parameter passed is null");
+        EnumMap<Categories, RowList> byCategory = orderings.get(key);
+        RowList sorted = byCategory.get(cat);
+        if(sorted == null) {
+            sorted = cat == Categories.ALL ? new RowList(columns.size()) : new RowList(buckets.get(cat));
+            sorted.sort(columns, key);
+            byCategory.put(cat, sorted);
+        }
+        return new RowView(columns, sorted, descending);
+    }
+
+    /**
+     * Returns every expense in insertion order. No copy is made.
+     *
+     * @return a read-only view of all the expenses
+     */
+    public List<ExpenseController> all() {
+        return views.get(Categories.ALL);
+    }
+
+    /**
+     * Returns the columns holding the expenses.
+     *
+     * @return the columns of the store
+     */
+    public ExpenseColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the monthly aggregates of the expenses.
+     *
+     * @return the monthly rollup
+     */
+    public MonthlyRollup getRollup() {
+        return rollup;
+    }
+
+    /**
+     * Returns the number of expenses in the store.
+     *
+     * @return the number of expenses
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * Read-only view of a list of rows, in order or in reverse order.
+     */
+    private static class RowView extends AbstractList<ExpenseController> implements RandomAccess {
+        private final ExpenseColumns columns;
+        private final RowList rows;
+        private final boolean reversed;
+
+        /**
+         * Constructs a RowView of the given rows.
+         *
+         * @param columns the columns the rows belong to
+         * @param rows the rows to view
+         * @param reversed true to view the rows in reverse order
+         */
+        RowView(ExpenseColumns columns, RowList rows, boolean reversed) {
+            this.columns = columns;
+            this.rows = rows;
+            this.reversed = reversed;
+        }
+
+        @Override
+        public ExpenseController get(int index) {
+            return columns.get(rows.get(reversed ? rows.size() - 1 - index : index));
+        }
+
+        @Override
+        public int size() {
+            return rows.size();
+        }
+    }
+}
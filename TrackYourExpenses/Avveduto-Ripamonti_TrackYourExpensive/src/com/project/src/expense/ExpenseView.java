@@ -1,17 +1,26 @@
 package com.project.src.expense;
+import com.project.src.graphic.TextResources;
 import processing.core.PApplet;
+import processing.core.PGraphics;
 import java.io.Serializable;
-import java.util.Currency;
-import java.util.Locale;
 
 /**
  * MVC class for the expense view.
  * This class is responsible for rendering the visual representation of an expense using the Processing library.
+ * Each expense is drawn once into an off-screen image kept by the CardCache, which is then copied on the screen.
  *
  * @author Angelo Ripamonti & Luca Avveduto
  * @version 1.0
  */
 public class ExpenseView implements Serializable {
+    /**
+     * The width of an expense card.
+     */
+    public static final int WIDTH = 300;
+    /**
+     * The height of an expense card.
+     */
+    public static final int HEIGHT = 100;
 
     /**
      * Renders the expense details on the screen.
@@ -26,23 +35,38 @@ public class ExpenseView implements Serializable {
     public void view(PApplet parent,ExpenseModel model, int x, int y) throws NullPointerException, IllegalArgumentException{
         if(parent == null || model == null) throw new NullPointerException("Almost one parameter passed is null");
         if(x < 0 || y < 0 || x > parent.width || y > parent.height) throw new IllegalArgumentException("x or y are less than 0. Otherwise, x are more than parent.width or y are more than parent.height");
-        parent.strokeWeight(4);
-        parent.fill(model.getCategory().getColor().getRGB(),180);
-        parent.rect(x,y,300, 100);
-        parent.fill(0);
-        parent.textFont(parent.createFont("arial",16));
-        parent.text("Name: " + model.getName(),x + 10,y + 20);
-        parent.strokeWeight(1);
-        parent.line(x,y+25,x + 150,y+25);
+        parent.image(CardCache.get(parent, model), x - CardCache.MARGIN, y - CardCache.MARGIN);
+    }
+
+    /**
+     * Draws the expense details on a graphics surface.
+     *
+     * @param parent the main instance of PApplet, used to get the fonts. Must not be null.
+     * @param g the surface to draw on, between beginDraw() and endDraw(). Must not be null.
+     * @param model the ExpenseModel containing the data to display. Must not be null.
+     * @param x the x-coordinate of the card on the surface
+     * @param y the y-coordinate of the card on the surface
+     * @throws NullPointerException if any of the parameters are null.
+     */
+    static void draw(PApplet parent, PGraphics g, ExpenseModel model, int x, int y) throws NullPointerException{
+        if(parent == null || g == null || model == null) throw new NullPointerException("Almost one parameter passed is null");
+        g.stroke(0);
+        g.strokeWeight(4);
+        g.fill(model.getCategory().getColor().getRGB(),180);
+        g.rect(x,y,WIDTH, HEIGHT);
+        g.fill(0);
+        g.textFont(TextResources.font(parent, TextResources.FONT, 16));
+        g.text("Name: " + model.getName(),x + 10,y + 20);
+        g.strokeWeight(1);
+        g.line(x,y+25,x + 150,y+25);
         String date = model.getDate().toString();
-        parent.text("Date: " + date,x + 10,y + 40);
-        parent.line(x,y+45,x + 150,y+45);
-        Locale l = Locale.getDefault();
-        parent.text("Amount: " + Currency.getInstance(l).getSymbol() + (Math.floor(model.getAmount()*100)/100),x + 10,y + 60);
-        parent.line(x,y+65,x + 150,y+65);
-        parent.text("Category: " + model.getCategory().getName(),x + 10,y + 80);
-        parent.strokeWeight(2);
-        parent.line(x+ 160,y,x + 160,y+100);
-        parent.text(model.getDesc(),x + 170,y + 20);
+        g.text("Date: " + date,x + 10,y + 40);
+        g.line(x,y+45,x + 150,y+45);
+        g.text("Amount: " + TextResources.formatAmount(model.getCents()),x + 10,y + 60);
+        g.line(x,y+65,x + 150,y+65);
+        g.text("Category: " + model.getCategory().getName(),x + 10,y + 80);
+        g.strokeWeight(2);
+        g.line(x+ 160,y,x + 160,y+100);
+        g.text(model.getDesc(),x + 170,y + 20);
     }
 }
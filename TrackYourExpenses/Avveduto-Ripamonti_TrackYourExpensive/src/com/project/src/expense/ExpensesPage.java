@@ -1,7 +1,12 @@
 package com.project.src.expense;
 
 import com.project.src.Model;
-import com.project.src.accountManager.DBManager;
+import com.project.src.RedrawTracker;
+import com.project.src.accountManager.Actions;
+import com.project.src.accountManager.ExpenseDelta;
+import com.project.src.accountManager.PersistenceListener;
+import com.project.src.accountManager.WriteBehindQueue;
+import com.project.src.filters.CategoryFilter;
 import com.project.src.filters.FilterObj;
 import com.project.src.filters.OrderObj;
 import controlP5.Button;
@@ -9,20 +14,27 @@ import controlP5.ControlP5;
 import processing.core.*;
 import processing.event.*;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.List;
 
 /**
  * Represents the page for displaying and managing expenses.
+ * It also shows the outcome of the changes saved in background.
  *
  * @author Angelo Ripamonti & Luca Avveduto
  * @version 1.0
  */
-public class ExpensesPage {
+public class ExpensesPage implements PersistenceListener {
     private PApplet processing;
     private ControlP5 cp5;
-    private DBManager database;
-    private ArrayList<ExpenseController> listToShow;
+    private Actions database;
+    private WriteBehindQueue writer;
+    private RedrawTracker redraw;
+    private volatile String saveError;
+    private volatile String journalError;
+    private List<ExpenseController> listToShow;
+    private Categories category;
+    private SortKey sortKey;
+    private boolean descending;
     public FilterObj filter;
     public OrderObj order;
     private Button add;
@@ -33,28 +45,42 @@ public class ExpensesPage {
     private int contentHeight;
     private int scrollPos;
     private int scrollSpeed;
+    private static final int LIST_X = 50;
+    private static final int LIST_Y = 80;
+    private static final int LIST_MARGIN = 50;
+    private static final int PAGE_SIZE = 64;
+    private static final int PAGE_WINDOW = 2;
 
     /**
-     * Constructs an ExpensesPage with the specified processing, ControlP5 instance, and database manager.
+     * Constructs an ExpensesPage with the specified processing, ControlP5 instance, database manager, write-behind queue and redraw tracker.
      *
      * @param processing the PApplet instance for Processing library functions. Must not be null.
      * @param cp5 the ControlP5 instance for GUI elements. Must not be null.
-     * @param database the DBManager instance for database operations. Must not be null.
+     * @param database the Actions instance for database operations. Must not be null.
+     * @param writer the WriteBehindQueue saving the changes in background. Must not be null.
+     * @param redraw the RedrawTracker told when the page changes. Must not be null.
      * @throws NullPointerException if any of the parameters are null.
      */
-    public ExpensesPage(PApplet processing, ControlP5 cp5, DBManager database) throws NullPointerException{
-        if(cp5 == null || processing == null || database == null) throw new NullPointerException("Almost one parameter passed is null");
+    public ExpensesPage(PApplet processing, ControlP5 cp5, Actions database, WriteBehindQueue writer, RedrawTracker redraw) throws NullPointerException{
+        if(cp5 == null || processing == null || database == null || writer == null || redraw == null) throw new NullPointerException("Almost one parameter passed is null");
         this.processing = processing;
         this.cp5 = cp5;
         this.database = database;
+        this.writer = writer;
+        this.redraw = redraw;
+        writer.setListener(this);
+        saveError = null;
         this.listToShow = null;
+        category = Categories.ALL;
+        sortKey = null;
+        descending = false;
         on = true;
-        contentHeight = 2000;
+        contentHeight = 0;
         scrollPos = 0;
         scrollSpeed = 20;
         filter = new FilterObj(cp5,processing);
         order = new OrderObj(cp5,processing);
-        adx = new AddExpense(cp5,processing,database);
+        adx = new AddExpense(cp5,processing,writer);
         settings = cp5.addButton("account").setLabel("Account").setPosition(processing.width-0.5f*processing.width/3+100, 0.4f*processing.height/3).setSize(80, 30).hide();
         graphic = cp5.addButton("graphic").setLabel("Graphic").setPosition(processing.width/3, 10).setSize(80, 30).setColorBackground(0).hide();
         add = cp5.addButton("add").setLabel("Add").setPosition(processing.width-0.5f*processing.width/3+100, processing.height-0.5f*processing.height/3).setSize(80, 30).hide();
@@ -62,9 +88,20 @@ public class ExpensesPage {
 
     /**
      * Draws the expenses page including the filtered and ordered list of expenses.
+     * Only the rows of the list inside the window are drawn. A list read by pages
+     * is told which rows are shown first, and is replaced by the view of the
+     * account store once the account has been loaded.
      */
     public void draw(){
         processing.background(255);
+        if(listToShow instanceof PagedExpenseList paged) {
+            if(Model.getAccount() == null || !Model.getAccount().isLoading()) refresh();
+            else paged.show(ExpenseController.firstVisibleRow(LIST_Y, scrollPos) * ExpenseController.COLUMNS,
+                    (ExpenseController.lastVisibleRow(LIST_Y, scrollPos, processing.height) + 1) * ExpenseController.COLUMNS - 1);
+        }
+        updateContentHeight();
+        boolean showList = on && listToShow != null && !listToShow.isEmpty();
+        if(showList) ExpenseController.renderList(processing, listToShow, LIST_X, LIST_Y, scrollPos, processing.height);
         processing.pushMatrix();
         processing.translate(0, -scrollPos);
         if(on) {
@@ -73,8 +110,7 @@ public class ExpensesPage {
             settings.show();
             add.show();
             graphic.show();
-            if (listToShow != null && !listToShow.isEmpty()) ExpenseController.renderList(processing, listToShow, 50, 80);
-            else {
+            if(!showList) {
                 processing.textAlign(processing.CENTER, processing.CENTER);
                 processing.text("No expense yet", processing.width / 2, processing.height / 2);
                 processing.textAlign(0, 0);
@@ -87,6 +123,90 @@ public class ExpensesPage {
         processing.stroke(229, 229, 229);
         processing.rect(0, 0, processing.width, 50);
         processing.stroke(0);
+        showSaveStatus();
+    }
+
+    /**
+     * Shows in the header whether there are changes being saved, the last save failed
+     * or the changes are saved without the journal keeping them until they are written.
+     */
+    private void showSaveStatus() {
+        String error = saveError;
+        String journal = journalError;
+        if(error == null && journal == null && writer.getPendingCount() == 0) return;
+        processing.textSize(14);
+        processing.textAlign(PConstants.LEFT, PConstants.CENTER);
+        if(error != null) {
+            processing.fill(255, 0, 0);
+            processing.text("Saving failed: " + error, 10, 25);
+        } else if(journal != null) {
+            processing.fill(255, 0, 0);
+            processing.text("Saving without journal: " + journal, 10, 25);
+        } else {
+            processing.fill(0);
+            processing.text("Saving...", 10, 25);
+        }
+        processing.textAlign(0, 0);
+    }
+
+    /**
+     * Clears the last save error once the changes of an account have been written.
+     *
+     * @param username the account username
+     * @param changes the number of changes collapsed in the write
+     */
+    @Override
+    public void onPersisted(String username, int changes) {
+        saveError = null;
+        redraw.markDirty();
+    }
+
+    /**
+     * Records the save error to show it in the header.
+     *
+     * @param username the account username
+     * @param e the error raised by the write
+     */
+    @Override
+    public void onFailure(String username, Exception e) {
+        saveError = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        redraw.markDirty();
+    }
+
+    /**
+     * Records that changes were dropped without being saved, to show it in the header until the next save.
+     *
+     * @param username the account username
+     * @param changes the number of changes dropped
+     * @param e the error raised by the last write
+     */
+    @Override
+    public void onDropped(String username, int changes, Exception e) {
+        saveError = changes + " changes dropped, " + (e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+        redraw.markDirty();
+    }
+
+    /**
+     * Records that the journal cannot be opened, to show it in the header for the whole session,
+     * since the changes not yet written would be lost if the application stopped.
+     *
+     * @param e the error raised opening the journal
+     */
+    @Override
+    public void onJournalUnavailable(Exception e) {
+        journalError = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        redraw.markDirty();
+    }
+
+    /**
+     * Redraws the list to show the changes received, applied at the beginning of the next frame.
+     *
+     * @param username the account username
+     * @param changes the changes received
+     */
+    @Override
+    public void onReceived(String username, ExpenseDelta changes) {
+        redraw.markDirty();
     }
 
     /**
@@ -100,7 +220,18 @@ public class ExpensesPage {
     public void mouseWheel(MouseEvent event){
         float e = event.getCount();
         scrollPos += e * scrollSpeed;
-        scrollPos = processing.constrain(scrollPos, 0, contentHeight - processing.height);
+        updateContentHeight();
+        redraw.markDirty();
+    }
+
+    /**
+     * Sizes the scrollable content from the length of the list shown
+     * and keeps the scroll position inside it.
+     */
+    private void updateContentHeight() {
+        int size = listToShow == null ? 0 : listToShow.size();
+        contentHeight = ExpenseController.contentHeight(size, LIST_Y) + LIST_MARGIN;
+        scrollPos = processing.constrain(scrollPos, 0, Math.max(0, contentHeight - processing.height));
     }
 
     /**
@@ -123,28 +254,77 @@ public class ExpensesPage {
     }
 
     /**
-     * Reorders the list of expenses based on the provided comparator.
+     * Reorders the list of expenses based on the provided key.
      *
-     * This method retrieves the list of expenses for the current account from the database,
-     * then sorts this list using the specified comparator. If the comparator is null,
-     * a NullPointerException will be thrown.
+     * This method takes the ordering already kept by the indexed store of the current
+     * account, keeping the selected category filter. Nothing is sorted or copied.
      *
-     * @param c the comparator used to order the list of expenses. Must not be null
-     * @throws NullPointerException if the comparator c is null
+     * @param key the key used to order the list of expenses. Must not be null
+     * @param descending true to show the expenses in descending order
+     * @throws NullPointerException if key is null
      */
-    public void reorderCallback(Comparator c) throws NullPointerException{
-        if(c == null) throw new NullPointerException("The comparator is null");
-        listToShow = database.getExpensesByAccount(Model.getAccount());
-        Collections.sort(listToShow,c);
+    public void reorderCallback(SortKey key, boolean descending) throws NullPointerException{
+        if(key == null) throw new NullPointerException("The key is null");
+        sortKey = key;
+        this.descending = descending;
+        refresh();
+    }
+
+    /**
+     * Filters the list of expenses by the provided category, keeping the selected order.
+     *
+     * @param cat the category to show. Must not be null
+     * @throws NullPointerException if cat is null
+     */
+    public void filterCallback(Categories cat) throws NullPointerException{
+        if(cat == null) throw new NullPointerException("The category is null");
+        category = cat;
+        refresh();
+    }
+
+    /**
+     * Shows the expenses of the current account with the selected category and order.
+     * The list shown is a view of the account store, so later additions appear without refreshing again,
+     * including the expenses still loading in background, which redraw the list as they arrive.
+     * While the account is loading, all the expenses ordered by date are instead read from the
+     * database by pages, since the store cannot order the expenses it does not have yet, and the
+     * rest of the account is not read: its load starts only when another list is shown.
+     * The changes of the account made elsewhere are requested as well, and only they are transferred.
+     */
+    public void refresh() {
+        redraw.markDirty();
+        if(Model.getAccount() == null) {
+            listToShow = null;
+            return;
+        }
+        Model.getAccount().setLoadListener(() -> redraw.markDirty());
+        writer.sync(Model.getAccount());
+        if(Model.getAccount().isLoading() && category == Categories.ALL && sortKey == SortKey.DATE) {
+            listToShow = new PagedExpenseList(writer, Model.getAccount(), descending, PAGE_SIZE, PAGE_WINDOW, () -> redraw.markDirty());
+            return;
+        }
+        Model.getAccount().loadAll();
+        ExpenseStore store = Model.getAccount().getStore();
+        listToShow = sortKey == null ? CategoryFilter.filter(store, category) : store.sorted(category, sortKey, descending);
     }
 
     /**
      * Changes the list of ExpenseController objects to be shown.
      *
-     * @param listToShow the new list of ExpenseController objects
+     * @param listToShow the new list of ExpenseController objects, possibly a read-only view
      */
-    public void changeListToShow(ArrayList<ExpenseController> listToShow){
+    public void changeListToShow(List<ExpenseController> listToShow){
         this.listToShow = listToShow;
+        redraw.markDirty();
+    }
+
+    /**
+     * Returns the category selected in the filter.
+     *
+     * @return the selected category, Categories.ALL if none is selected
+     */
+    public Categories getCategory() {
+        return category;
     }
 
     /**
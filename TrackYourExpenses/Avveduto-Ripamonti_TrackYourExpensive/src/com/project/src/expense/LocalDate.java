@@ -1,19 +1,24 @@
 package com.project.src.expense;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.io.Serializable;
 
 /**
  * This class represents a local date with day, month, year, and leap year information.
  * It provides methods to check if this date is before, after, or equal to another date.
  *
+ * The date is packed in a single int, the number of days since 1970-01-01, so
+ * comparing, hashing and sorting dates is a single integer operation. Day, month
+ * and year are computed from it when requested. In JSON the date keeps the
+ * day, month, year and leapYear fields, written by LocalDateAdapter.
+ *
  * @author Angelo Ripamonti & Luca Avveduta
  * @version 1.0
  */
-public class LocalDate implements Serializable {
-    private int day;
-    private int month;
-    private int year;
-    private boolean leapYear;
+@JsonAdapter(LocalDateAdapter.class)
+public class LocalDate implements Serializable, Comparable<LocalDate> {
+    private final int epochDay;
 
     /**
      * Constructs a LocalDate instance from a java.time.LocalDate.
@@ -21,10 +26,49 @@ public class LocalDate implements Serializable {
      * @param date the java.time.LocalDate instance
      */
     public LocalDate(java.time.LocalDate date) {
-        this.day = date.getDayOfMonth();
-        this.month = date.getMonthValue();
-        this.year = date.getYear();
-        this.leapYear = date.isLeapYear();
+        this.epochDay = Math.toIntExact(date.toEpochDay());
+    }
+
+    /**
+     * Constructs a LocalDate instance from the number of days since 1970-01-01.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     */
+    private LocalDate(int epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    /**
+     * Returns the LocalDate of the given number of days since 1970-01-01.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return the date
+     * @throws ArithmeticException if epochDay does not fit in an int
+     */
+    public static LocalDate ofEpochDay(long epochDay) throws ArithmeticException {
+        return new LocalDate(Math.toIntExact(epochDay));
+    }
+
+    /**
+     * Returns the LocalDate of the given day, month and year.
+     *
+     * @param year the year
+     * @param month the month of the year, from 1 to 12
+     * @param day the day of the month
+     * @return the date
+     * @throws java.time.DateTimeException if the date does not exist
+     */
+    public static LocalDate of(int year, int month, int day) throws java.time.DateTimeException {
+        return new LocalDate(java.time.LocalDate.of(year, month, day));
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 of this date.
+     *
+     * @return the epoch day of the date
+     */
+    public long toEpochDay() {
+        return epochDay;
     }
 
     /**
@@ -33,7 +77,9 @@ public class LocalDate implements Serializable {
      * @return the day of the month
      */
     public int getDay() {
-        return day;
+        int doy = dayOfYear(epochDay);
+        int mp = (5 * doy + 2) / 153;
+        return doy - (153 * mp + 2) / 5 + 1;
     }
 
     /**
@@ -42,7 +88,8 @@ public class LocalDate implements Serializable {
      * @return the month of the year
      */
     public int getMonth() {
-        return month;
+        int mp = (5 * dayOfYear(epochDay) + 2) / 153;
+        return mp < 10 ? mp + 3 : mp - 9;
     }
 
     /**
@@ -51,16 +98,60 @@ public class LocalDate implements Serializable {
      * @return the year
      */
     public int getYear() {
-        return year;
+        return Math.floorDiv(getMonthIndex(), 12);
     }
 
     /**
-     * Returns whether the year is a leap year.
+     * Returns the number of months since year 0 of this date, year * 12 + month - 1.
+     * Dates of the same month share the index, so it can be used to bucket dates by month.
+     *
+     * @return the month index of the date
+     */
+    public int getMonthIndex() {
+        return monthIndex(epochDay);
+    }
+
+    /**
+     * Returns the number of months since year 0, year * 12 + month - 1,
+     * of the given number of days since 1970-01-01, without creating any object.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return the month index of the day
+     */
+    public static int monthIndex(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int doe = z - era * 146097;
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int year = yoe + era * 400 + (mp >= 10 ? 1 : 0);
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Returns the day of the year of an epoch day, in a year starting on March 1st.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return the day of the year starting from March 1st, from 0 to 365
+     */
+    private static int dayOfYear(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int doe = z - era * 146097;
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        return doe - (365 * yoe + yoe / 4 - yoe / 100);
+    }
+
+    /**
+     * Checks if the year is a leap year.
      *
      * @return true if the year is a leap year, false otherwise
      */
     public boolean isLeapYear() {
-        return leapYear;
+        int year = getYear();
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
     }
 
     /**
@@ -70,7 +161,7 @@ public class LocalDate implements Serializable {
      */
     @Override
     public String toString() {
-        return day + "/" + month + "/" + year;
+        return getDay() + "/" + getMonth() + "/" + getYear();
     }
 
     /**
@@ -80,11 +171,7 @@ public class LocalDate implements Serializable {
      * @return true if this date is before the specified date, false otherwise
      */
     public boolean isBefore(LocalDate date) {
-        if (this.year < date.year) return true;
-        if (this.year > date.year) return false;
-        if (this.month < date.month) return true;
-        if (this.month > date.month) return false;
-        return this.day < date.day;
+        return epochDay < date.epochDay;
     }
 
     /**
@@ -94,11 +181,18 @@ public class LocalDate implements Serializable {
      * @return true if this date is after the specified date, false otherwise
      */
     public boolean isAfter(LocalDate date) {
-        if (this.year > date.year) return true;
-        if (this.year < date.year) return false;
-        if (this.month > date.month) return true;
-        if (this.month < date.month) return false;
-        return this.day > date.day;
+        return epochDay > date.epochDay;
+    }
+
+    /**
+     * Compares this date with the specified date.
+     *
+     * @param date the other LocalDate to compare to
+     * @return a negative number, zero or a positive number if this date is before, equal to or after the specified date
+     */
+    @Override
+    public int compareTo(LocalDate date) {
+        return Integer.compare(epochDay, date.epochDay);
     }
 
     /**
@@ -108,7 +202,27 @@ public class LocalDate implements Serializable {
      * @return true if this date is equal to the specified date, false otherwise
      */
     public boolean equals(LocalDate date) {
-        return this.year == date.year && this.month == date.month && this.day == date.day;
+        return date != null && epochDay == date.epochDay;
     }
 
+    /**
+     * Checks if this date is equal to the specified object.
+     *
+     * @param o the object to compare to
+     * @return true if o is a LocalDate of the same day, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof LocalDate date && epochDay == date.epochDay;
+    }
+
+    /**
+     * Returns the hash code of the date.
+     *
+     * @return the hash code of the date
+     */
+    @Override
+    public int hashCode() {
+        return epochDay;
+    }
 }
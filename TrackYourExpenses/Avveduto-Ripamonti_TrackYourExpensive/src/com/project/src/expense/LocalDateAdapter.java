@@ -0,0 +1,76 @@
+package com.project.src.expense;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+
+/**
+ * Gson adapter writing LocalDate as an object with the day, month, year and leapYear fields,
+ * the same shape used when the date was stored in separate fields.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class LocalDateAdapter extends TypeAdapter<LocalDate> {
+
+    /**
+     * Writes a date as a JSON object.
+     *
+     * @param out the writer
+     * @param date the date to write, possibly null
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void write(JsonWriter out, LocalDate date) throws IOException {
+        if(date == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("day").value(date.getDay());
+        out.name("month").value(date.getMonth());
+        out.name("year").value(date.getYear());
+        out.name("leapYear").value(date.isLeapYear());
+        out.endObject();
+    }
+
+    /**
+     * Reads a date from a JSON object. The leapYear field and unknown fields are ignored.
+     *
+     * @param in the reader
+     * @return the date read, null for a JSON null
+     * @throws IOException if the reader fails
+     * @throws JsonParseException if a field is missing or the date does not exist
+     */
+    @Override
+    public LocalDate read(JsonReader in) throws IOException, JsonParseException {
+        if(in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        int day = -1;
+        int month = -1;
+        int year = Integer.MIN_VALUE;
+        in.beginObject();
+        while(in.hasNext()) {
+            switch (in.nextName()) {
+                case "day" -> day = in.nextInt();
+                case "month" -> month = in.nextInt();
+                case "year" -> year = in.nextInt();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if(day == -1 || month == -1 || year == Integer.MIN_VALUE) throw new JsonParseException("The date misses the day, the month or the year");
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            throw new JsonParseException(e);
+        }
+    }
+}
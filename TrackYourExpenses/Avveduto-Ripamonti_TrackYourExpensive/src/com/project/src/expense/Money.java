@@ -0,0 +1,193 @@
+package com.project.src.expense;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Exact fixed-point money arithmetic on amounts in cents.
+ *
+ * Amounts are plain long values counting cents, so sums and comparisons are
+ * exact integer operations which never allocate. Overflows raise an
+ * ArithmeticException instead of wrapping. Parsing and formatting work
+ * character by character, and appendTo writes into a StringBuilder which
+ * can be reused.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class Money {
+    /**
+     * The number of cents in a unit.
+     */
+    public static final int CENTS = 100;
+
+    /**
+     * Not instantiable, every method is static.
+     */
+    private Money() {}
+
+    /**
+     * Parses an amount written with at most two decimals, separated by a dot or a comma.
+     * A leading sign and surrounding spaces are allowed.
+     *
+     * @param s the text to parse. Must not be null.
+     * @return the amount in cents
+     * @throws NullPointerException if s is null
+     * @throws NumberFormatException if s is not an amount with at most two decimals or it does not fit in a long
+     */
+    public static long parse(CharSequence s) throws NullPointerException, NumberFormatException {
+        if(s == null) throw new NullPointerException("s parameter is null");
+        int start = 0;
+        int end = s.length();
+        while(start < end && Character.isWhitespace(s.charAt(start))) start++;
+        while(end > start && Character.isWhitespace(s.charAt(end - 1))) end--;
+        boolean negative = false;
+        if(start < end && (s.charAt(start) == '-' || s.charAt(start) == '+')) negative = s.charAt(start++) == '-';
+        long units = 0;
+        int digits = 0;
+        int decimals = -1;
+        long fraction = 0;
+        for(int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if(c == '.' || c == ',') {
+                if(decimals >= 0) throw new NumberFormatException("More than one decimal separator in \"" + s + "\"");
+                decimals = 0;
+            } else if(c >= '0' && c <= '9') {
+                if(decimals < 0) {
+                    try {
+                        units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+                    } catch (ArithmeticException e) {
+                        throw new NumberFormatException("Amount too large \"" + s + "\"");
+                    }
+                    digits++;
+                } else {
+                    if(++decimals > 2) throw new NumberFormatException("More than two decimals in \"" + s + "\"");
+                    fraction = fraction * 10 + (c - '0');
+                }
+            } else {
+                throw new NumberFormatException("Not an amount \"" + s + "\"");
+            }
+        }
+        if(digits == 0 && decimals <= 0) throw new NumberFormatException("Not an amount \"" + s + "\"");
+        if(decimals == 1) fraction *= 10;
+        try {
+            long cents = Math.addExact(Math.multiplyExact(units, CENTS), fraction);
+            return negative ? -cents : cents;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount too large \"" + s + "\"");
+        }
+    }
+
+    /**
+     * Converts a decimal amount to cents, rounding half up to two decimals.
+     *
+     * @param amount the amount. Must not be null.
+     * @return the amount in cents
+     * @throws NullPointerException if amount is null
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long fromDecimal(BigDecimal amount) throws NullPointerException, ArithmeticException {
+        if(amount == null) throw new NullPointerException("amount parameter is null");
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts an amount in cents to a decimal with two decimals.
+     *
+     * @param cents the amount in cents
+     * @return the decimal amount
+     */
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Adds two amounts.
+     *
+     * @param a the first amount in cents
+     * @param b the second amount in cents
+     * @return the sum in cents
+     * @throws ArithmeticException if the sum overflows
+     */
+    public static long add(long a, long b) throws ArithmeticException {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtracts an amount from another.
+     *
+     * @param a the amount in cents
+     * @param b the amount to subtract in cents
+     * @return the difference in cents
+     * @throws ArithmeticException if the difference overflows
+     */
+    public static long subtract(long a, long b) throws ArithmeticException {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Multiplies an amount by a whole number.
+     *
+     * @param cents the amount in cents
+     * @param n the multiplier
+     * @return the product in cents
+     * @throws ArithmeticException if the product overflows
+     */
+    public static long multiply(long cents, long n) throws ArithmeticException {
+        return Math.multiplyExact(cents, n);
+    }
+
+    /**
+     * Divides an amount by a whole number, rounding half away from zero to the cent.
+     *
+     * @param cents the amount in cents
+     * @param n the divisor. Must not be 0.
+     * @return the quotient in cents
+     * @throws ArithmeticException if n is 0
+     */
+    public static long divide(long cents, long n) throws ArithmeticException {
+        if(n == 0) throw new ArithmeticException("Division by zero");
+        long q = cents / n;
+        long r = cents % n;
+        if(Math.abs(r) * 2 >= Math.abs(n)) q += (cents < 0) == (n < 0) ? 1 : -1;
+        return q;
+    }
+
+    /**
+     * Converts an amount in cents to a float, for drawing only.
+     *
+     * @param cents the amount in cents
+     * @return the approximate amount in units
+     */
+    public static float toFloat(long cents) {
+        return cents / (float) CENTS;
+    }
+
+    /**
+     * Appends an amount with two decimals to a StringBuilder, without creating other objects.
+     *
+     * @param sb the StringBuilder. Must not be null.
+     * @param cents the amount in cents
+     * @return sb
+     * @throws NullPointerException if sb is null
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long cents) throws NullPointerException {
+        if(sb == null) throw new NullPointerException("sb parameter is null");
+        if(cents < 0) sb.append('-');
+        long units = Math.abs(cents / CENTS);
+        int fraction = (int) Math.abs(cents % CENTS);
+        sb.append(units).append('.');
+        if(fraction < 10) sb.append('0');
+        return sb.append(fraction);
+    }
+
+    /**
+     * Formats an amount with two decimals.
+     *
+     * @param cents the amount in cents
+     * @return the formatted amount
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.project.src.expense;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Gson adapter writing an amount in cents as a JSON number with two decimals,
+ * the same shape used when the amount was a float. Reading accepts any JSON number
+ * and rounds it half up to the cent.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class MoneyAdapter extends TypeAdapter<Long> {
+
+    /**
+     * Writes an amount as a JSON number.
+     *
+     * @param out the writer
+     * @param cents the amount in cents
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void write(JsonWriter out, Long cents) throws IOException {
+        if(cents == null) out.nullValue();
+        else out.value(Money.toDecimal(cents));
+    }
+
+    /**
+     * Reads an amount from a JSON number.
+     *
+     * @param in the reader
+     * @return the amount in cents
+     * @throws IOException if the reader fails
+     * @throws JsonParseException if the value is not a number
+     */
+    @Override
+    public Long read(JsonReader in) throws IOException, JsonParseException {
+        return readCents(in);
+    }
+
+    /**
+     * Reads an amount from a JSON number without boxing it.
+     * Amounts with at most two decimals are parsed directly, the others,
+     * such as the ones written as floats, go through BigDecimal.
+     *
+     * @param in the reader
+     * @return the amount in cents
+     * @throws IOException if the reader fails
+     * @throws JsonParseException if the value is not a number
+     */
+    static long readCents(JsonReader in) throws IOException, JsonParseException {
+        String s = in.nextString();
+        try {
+            return Money.parse(s);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            return Money.fromDecimal(new BigDecimal(s));
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new JsonParseException(e);
+        }
+    }
+}
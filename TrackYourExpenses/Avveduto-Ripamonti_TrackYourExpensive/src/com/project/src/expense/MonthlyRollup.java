@@ -0,0 +1,297 @@
+package com.project.src.expense;
+
+import java.util.Arrays;
+
+/**
+ * Monthly aggregates of the expenses.
+ *
+ * For every (year, month, category) the rollup keeps the number of expenses
+ * and the sum, minimum and maximum of their amounts, in flat arrays indexed
+ * by month and category. The aggregates are updated on every addition, so
+ * range queries cost one array read per month and allocate nothing.
+ * Amounts are in cents, so the sums are exact however many expenses there are.
+ * A version number, increased on every change, tells the readers when to recompute.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class MonthlyRollup {
+    private static final int CATEGORIES = Categories.values().length;
+    private int firstMonth;
+    private int capacity;
+    private int[] count;
+    private long[] sum;
+    private long[] min;
+    private long[] max;
+    private long version;
+
+    /**
+     * Constructs an empty MonthlyRollup.
+     */
+    public MonthlyRollup() {
+        clear();
+    }
+
+    /**
+     * Adds an expense to the aggregates of its month and category.
+     *
+     * @param exp the expense to add. Must not be null.
+     * @throws NullPointerException if exp is null
+     */
+    public void add(ExpenseModel exp) throws NullPointerException {
+        if(exp == null) throw new NullPointerException("exp parameter is null");
+        int m = exp.getDate().getMonthIndex();
+        add(Math.floorDiv(m, 12), Math.floorMod(m, 12) + 1, exp.getCategory(), exp.getCents());
+    }
+
+    /**
+     * Adds an amount to the aggregates of a month and category.
+     *
+     * @param year the year of the expense
+     * @param month the month of the expense, from 1 to 12
+     * @param cat the category of the expense. Must not be null.
+     * @param cents the amount of the expense in cents
+     * @throws NullPointerException if cat is null
+     * @throws ArithmeticException if the sum of the month overflows
+     */
+    public void add(int year, int month, Categories cat, long cents) throws NullPointerException, ArithmeticException {
+        if(cat == null) throw new NullPointerException("cat parameter is null");
+        int m = monthIndex(year, month);
+        ensure(m);
+        int i = (m - firstMonth) * CATEGORIES + cat.ordinal();
+        sum[i] = Money.add(sum[i], cents);
+        count[i]++;
+        if(cents < min[i]) min[i] = cents;
+        if(cents > max[i]) max[i] = cents;
+        version++;
+    }
+
+    /**
+     * Merges the aggregates of a group of expenses of a month and category, such as
+     * a row of a GROUP BY query, into the aggregates of the month and category.
+     *
+     * @param year the year of the expenses
+     * @param month the month of the expenses, from 1 to 12
+     * @param cat the category of the expenses. Must not be null.
+     * @param n the number of expenses. Must not be less than 0.
+     * @param total the sum of the amounts in cents
+     * @param lowest the minimum amount in cents
+     * @param highest the maximum amount in cents
+     * @throws NullPointerException if cat is null
+     * @throws IllegalArgumentException if n is less than 0
+     * @throws ArithmeticException if the sum of the month overflows
+     */
+    public void addAggregate(int year, int month, Categories cat, int n, long total, long lowest, long highest) throws NullPointerException, IllegalArgumentException, ArithmeticException {
+        if(cat == null) throw new NullPointerException("cat parameter is null");
+        if(n < 0) throw new IllegalArgumentException("n is less than 0");
+        if(n == 0) return;
+        int m = monthIndex(year, month);
+        ensure(m);
+        int i = (m - firstMonth) * CATEGORIES + cat.ordinal();
+        sum[i] = Money.add(sum[i], total);
+        count[i] += n;
+        if(lowest < min[i]) min[i] = lowest;
+        if(highest > max[i]) max[i] = highest;
+        version++;
+    }
+
+    /**
+     * Removes all the aggregates.
+     */
+    public void clear() {
+        firstMonth = 0;
+        capacity = 0;
+        count = new int[0];
+        sum = new long[0];
+        min = new long[0];
+        max = new long[0];
+        version++;
+    }
+
+    /**
+     * Returns the version of the aggregates, increased on every change.
+     *
+     * @return the version number
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of expenses of a month and category.
+     *
+     * @param year the year
+     * @param month the month of the year, from 1 to 12
+     * @param cat the category, Categories.ALL for every category. Must not be null.
+     * @return the number of expenses
+     * @throws NullPointerException if cat is null
+     */
+    public int count(int year, int month, Categories cat) throws NullPointerException {
+        if(cat == null) throw new NullPointerException("cat parameter is null");
+        int row = row(year, month);
+        if(row < 0) return 0;
+        if(cat != Categories.ALL) return count[row + cat.ordinal()];
+        int total = 0;
+        for(int c = 0; c < CATEGORIES; c++) total += count[row + c];
+        return total;
+    }
+
+    /**
+     * Returns the sum of the amounts of a month and category.
+     *
+     * @param year the year
+     * @param month the month of the year, from 1 to 12
+     * @param cat the category, Categories.ALL for every category. Must not be null.
+     * @return the sum of the amounts in cents, 0 if there are no expenses
+     * @throws NullPointerException if cat is null
+     * @throws ArithmeticException if the sum overflows
+     */
+    public long sum(int year, int month, Categories cat) throws NullPointerException, ArithmeticException {
+        if(cat == null) throw new NullPointerException("cat parameter is null");
+        int row = row(year, month);
+        if(row < 0) return 0;
+        if(cat != Categories.ALL) return sum[row + cat.ordinal()];
+        long total = 0;
+        for(int c = 0; c < CATEGORIES; c++) total = Money.add(total, sum[row + c]);
+        return total;
+    }
+
+    /**
+     * Returns the minimum amount of a month and category.
+     *
+     * @param year the year
+     * @param month the month of the year, from 1 to 12
+     * @param cat the category, Categories.ALL for every category. Must not be null.
+     * @return the minimum amount in cents, 0 if there are no expenses
+     * @throws NullPointerException if cat is null
+     */
+    public long min(int year, int month, Categories cat) throws NullPointerException {
+        if(cat == null) throw new NullPointerException("cat parameter is null");
+        int row = row(year, month);
+        if(row < 0) return 0;
+        long result = Long.MAX_VALUE;
+        for(int c = 0; c < CATEGORIES; c++) {
+            if(cat == Categories.ALL || c == cat.ordinal()) result = Math.min(result, min[row + c]);
+        }
+        return result == Long.MAX_VALUE ? 0 : result;
+    }
+
+    /**
+     * Returns the maximum amount of a month and category.
+     *
+     * @param year the year
+     * @param month the month of the year, from 1 to 12
+     * @param cat the category, Categories.ALL for every category. Must not be null.
+     * @return the maximum amount in cents, 0 if there are no expenses
+     * @throws NullPointerException if cat is null
+     */
+    public long max(int year, int month, Categories cat) throws NullPointerException {
+        if(cat == null) throw new NullPointerException("cat parameter is null");
+        int row = row(year, month);
+        if(row < 0) return 0;
+        long result = Long.MIN_VALUE;
+        for(int c = 0; c < CATEGORIES; c++) {
+            if(cat == Categories.ALL || c == cat.ordinal()) result = Math.max(result, max[row + c]);
+        }
+        return result == Long.MIN_VALUE ? 0 : result;
+    }
+
+    /**
+     * Returns the average amount of a month and category.
+     *
+     * @param year the year
+     * @param month the month of the year, from 1 to 12
+     * @param cat the category, Categories.ALL for every category. Must not be null.
+     * @return the average amount in cents, rounded to the cent, 0 if there are no expenses
+     * @throws NullPointerException if cat is null
+     */
+    public long average(int year, int month, Categories cat) throws NullPointerException {
+        int n = count(year, month, cat);
+        return n == 0 ? 0 : Money.divide(sum(year, month, cat), n);
+    }
+
+    /**
+     * Writes the average amounts of a range of months ending with the given one, in units for drawing.
+     * out[0] is the average of the given month, out[i] the one of i months before.
+     *
+     * @param year the year of the last month
+     * @param month the last month of the range, from 1 to 12
+     * @param range the number of months. Must not be less than 0 or more than out.length.
+     * @param cat the category, Categories.ALL for every category. Must not be null.
+     * @param out the array receiving the averages. Must not be null.
+     * @throws NullPointerException if any of the parameters are null
+     * @throws IllegalArgumentException if range is less than 0 or more than out.length
+     */
+    public void averages(int year, int month, int range, Categories cat, float[] out) throws NullPointerException, IllegalArgumentException {
+        if(cat == null || out == null) throw new NullPointerException("Almost one parameter passed is null");
+        if(range < 0 || range > out.length) throw new IllegalArgumentException("range is less than 0 or more than out.length");
+        int m = monthIndex(year, month);
+        for(int i = 0; i < range; i++, m--) out[i] = Money.toFloat(average(Math.floorDiv(m, 12), Math.floorMod(m, 12) + 1, cat));
+    }
+
+    /**
+     * Returns the index of the first cell of a month, or -1 if the month has no expenses.
+     *
+     * @param year the year
+     * @param month the month of the year, from 1 to 12
+     * @return the index of the first cell of the month
+     */
+    private int row(int year, int month) {
+        int m = monthIndex(year, month) - firstMonth;
+        return m < 0 || m >= capacity ? -1 : m * CATEGORIES;
+    }
+
+    /**
+     * Grows the arrays so they cover the given month.
+     *
+     * @param m the month index to cover
+     */
+    private void ensure(int m) {
+        if(capacity == 0) {
+            firstMonth = m - 11;
+            resize(firstMonth, 12);
+        } else if(m < firstMonth) {
+            int first = Math.min(m, firstMonth - capacity);
+            resize(first, capacity + firstMonth - first);
+        } else if(m >= firstMonth + capacity) {
+            resize(firstMonth, Math.max(m - firstMonth + 1, capacity * 2));
+        }
+    }
+
+    /**
+     * Moves the aggregates to new arrays covering the given months.
+     *
+     * @param first the first month covered by the new arrays
+     * @param months the number of months covered by the new arrays
+     */
+    private void resize(int first, int months) {
+        int[] newCount = new int[months * CATEGORIES];
+        long[] newSum = new long[months * CATEGORIES];
+        long[] newMin = new long[months * CATEGORIES];
+        long[] newMax = new long[months * CATEGORIES];
+        Arrays.fill(newMin, Long.MAX_VALUE);
+        Arrays.fill(newMax, Long.MIN_VALUE);
+        int offset = (firstMonth - first) * CATEGORIES;
+        System.arraycopy(count, 0, newCount, offset, count.length);
+        System.arraycopy(sum, 0, newSum, offset, sum.length);
+        System.arraycopy(min, 0, newMin, offset, min.length);
+        System.arraycopy(max, 0, newMax, offset, max.length);
+        count = newCount;
+        sum = newSum;
+        min = newMin;
+        max = newMax;
+        firstMonth = first;
+        capacity = months;
+    }
+
+    /**
+     * Returns the number of months since year 0 of a month.
+     *
+     * @param year the year
+     * @param month the month of the year, from 1 to 12
+     * @return the month index
+     */
+    private static int monthIndex(int year, int month) {
+        return year * 12 + month - 1;
+    }
+}
@@ -0,0 +1,214 @@
+package com.project.src.expense;
+
+import com.project.src.accountManager.Account;
+import com.project.src.accountManager.ExpenseKey;
+import com.project.src.accountManager.ExpenseSlice;
+import com.project.src.accountManager.WriteBehindQueue;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Read-only list of the expenses of an account ordered by date, read from the database one page at a time.
+ *
+ * Pages are requested in background with the key of the last expense of the previous page,
+ * when the rows shown come close to them, and the next page is requested when the last one
+ * is shown, so the list grows while it is scrolled. Only the pages near the rows shown are kept:
+ * the others are dropped, keeping the key they start from and their size, and read again
+ * if they are shown again. The elements of the pages not read yet are null.
+ * The pages read are added by show(), on the drawing thread.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public class PagedExpenseList extends AbstractList<ExpenseController> implements RandomAccess {
+    private final WriteBehindQueue writer;
+    private final Account account;
+    private final boolean descending;
+    private final int pageSize;
+    private final int window;
+    private final Runnable listener;
+    private final ArrayList<Page> pages;
+    private final ConcurrentLinkedQueue<LoadedPage> loaded;
+    private int size;
+    private boolean complete;
+
+    /**
+     * Constructs a PagedExpenseList and requests its first page.
+     *
+     * @param writer the WriteBehindQueue reading the pages in background. Must not be null.
+     * @param account the account whose expenses are listed. Must not be null.
+     * @param descending true to list from the latest expense to the earliest one
+     * @param pageSize the number of expenses of a page. Must be more than 0.
+     * @param window the number of pages kept before and after the rows shown. Must not be less than 0.
+     * @param listener told from the reading thread when a page has been read, or null
+     * @throws NullPointerException if writer or account is null
+     * @throws IllegalArgumentException if pageSize is not more than 0 or window is less than 0
+     */
+    public PagedExpenseList(WriteBehindQueue writer, Account account, boolean descending, int pageSize, int window, Runnable listener) throws NullPointerException, IllegalArgumentException {
+        if(writer == null || account == null) throw new NullPointerException("Almost one parameter passed is null");
+        if(pageSize <= 0 || window < 0) throw new IllegalArgumentException("pageSize is not more than 0 or window is less than 0");
+        this.writer = writer;
+        this.account = account;
+        this.descending = descending;
+        this.pageSize = pageSize;
+        this.window = window;
+        this.listener = listener;
+        pages = new ArrayList<>();
+        loaded = new ConcurrentLinkedQueue<>();
+        size = 0;
+        complete = false;
+        pages.add(new Page(null));
+        request(0);
+    }
+
+    /**
+     * Adds the pages read so far and prepares the pages of the rows shown:
+     * the missing ones are requested, the next one is requested if the last page is shown,
+     * and the pages farther than the window from the rows shown are dropped.
+     * Must be called on the drawing thread before the rows are drawn.
+     *
+     * @param first the index of the first expense shown
+     * @param last the index of the last expense shown
+     */
+    public void show(int first, int last) {
+        LoadedPage l;
+        while((l = loaded.poll()) != null) apply(l);
+        int firstPage = Math.max(0, first / pageSize);
+        int lastPage = Math.min(pages.size() - 1, Math.max(firstPage, last / pageSize));
+        for(int i = firstPage; i <= lastPage; i++) request(i);
+        Page tail = pages.get(pages.size() - 1);
+        if(!complete && lastPage == pages.size() - 1 && tail.rows != null && tail.last != null) {
+            pages.add(new Page(tail.last));
+            request(pages.size() - 1);
+        }
+        for(int i = 0; i < pages.size(); i++) {
+            Page p = pages.get(i);
+            if(p.rows != null && (i < firstPage - window || i > lastPage + window)) p.rows = null;
+        }
+    }
+
+    /**
+     * Requests a page if it is neither kept nor being read.
+     *
+     * @param index the index of the page
+     */
+    private void request(int index) {
+        Page p = pages.get(index);
+        if(p.rows != null || p.requested) return;
+        p.requested = true;
+        writer.page(account, p.after, descending, pageSize).whenComplete((slice, e) -> {
+            loaded.add(new LoadedPage(index, slice));
+            if(slice != null && listener != null) listener.run();
+        });
+    }
+
+    /**
+     * Adds a page read, or makes it requestable again if the read failed.
+     * The size of a page is fixed by its first read, so the positions of the
+     * following pages do not move when a dropped page is read again.
+     *
+     * @param l the page read
+     */
+    private void apply(LoadedPage l) {
+        Page p = pages.get(l.index);
+        p.requested = false;
+        if(l.slice == null) return;
+        p.rows = l.slice.getExpenses();
+        if(p.read) return;
+        p.read = true;
+        p.last = l.slice.getLast();
+        p.size = p.rows.size();
+        size += p.size;
+        if(l.index == pages.size() - 1) complete = !l.slice.hasMore();
+    }
+
+    /**
+     * Returns the expense at the given position.
+     *
+     * @param index the position of the expense
+     * @return the expense, or null if its page is not kept or it is no longer in the page read again
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    @Override
+    public ExpenseController get(int index) throws IndexOutOfBoundsException {
+        if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        List<ExpenseController> rows = pages.get(index / pageSize).rows;
+        int offset = index % pageSize;
+        return rows == null || offset >= rows.size() ? null : rows.get(offset);
+    }
+
+    /**
+     * Returns the number of expenses of the pages read so far.
+     *
+     * @return the number of expenses listed
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the last page has been read.
+     *
+     * @return true if no expense follows the ones listed
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the number of pages whose expenses are kept.
+     *
+     * @return the number of kept pages
+     */
+    public int getKeptPages() {
+        int kept = 0;
+        for(Page p : pages) if(p.rows != null) kept++;
+        return kept;
+    }
+
+    /**
+     * A page of the list: the key it starts after, its size and its expenses while it is kept.
+     * Every page but the last one is full.
+     */
+    private static class Page {
+        private final ExpenseKey after;
+        private ExpenseKey last;
+        private List<ExpenseController> rows;
+        private int size;
+        private boolean read;
+        private boolean requested;
+
+        /**
+         * Constructs a Page not read yet.
+         *
+         * @param after the key of the last expense of the previous page, null for the first page
+         */
+        private Page(ExpenseKey after) {
+            this.after = after;
+        }
+    }
+
+    /**
+     * The outcome of the read of a page, handed from the reading thread to the drawing thread.
+     */
+    private static class LoadedPage {
+        private final int index;
+        private final ExpenseSlice slice;
+
+        /**
+         * Constructs a LoadedPage.
+         *
+         * @param index the index of the page
+         * @param slice the page read, null if the read failed
+         */
+        private LoadedPage(int index, ExpenseSlice slice) {
+            this.index = index;
+            this.slice = slice;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.project.src.expense;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of rows of ExpenseColumns, kept as primitive ints.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+class RowList {
+    private static final int INITIAL_CAPACITY = 16;
+    private int[] rows;
+    private int size;
+
+    /**
+     * Constructs an empty RowList.
+     */
+    RowList() {
+        rows = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Constructs a RowList with the same rows of another one.
+     *
+     * @param other the list to copy
+     */
+    RowList(RowList other) {
+        rows = Arrays.copyOf(other.rows, Math.max(INITIAL_CAPACITY, other.size));
+        size = other.size;
+    }
+
+    /**
+     * Constructs a RowList with the rows from 0 to count - 1.
+     *
+     * @param count the number of rows
+     */
+    RowList(int count) {
+        rows = new int[Math.max(INITIAL_CAPACITY, count)];
+        for(int i = 0; i < count; i++) rows[i] = i;
+        size = count;
+    }
+
+    /**
+     * Adds a row at the end of the list.
+     *
+     * @param row the row to add
+     */
+    void add(int row) {
+        insert(size, row);
+    }
+
+    /**
+     * Inserts a row at the given position, shifting the following ones.
+     *
+     * @param index the position of the row, from 0 to size()
+     * @param row the row to insert
+     */
+    void insert(int index, int row) {
+        if(size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+        System.arraycopy(rows, index, rows, index + 1, size - index);
+        rows[index] = row;
+        size++;
+    }
+
+    /**
+     * Returns the row at the given position.
+     *
+     * @param index the position, from 0 to size() - 1
+     * @return the row
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    int get(int index) throws IndexOutOfBoundsException {
+        if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        return rows[index];
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the size of the list
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all the rows.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the rows by the given key with a stable merge sort,
+     * so rows with the same key keep their order.
+     *
+     * @param columns the columns the rows belong to
+     * @param key the key to sort by
+     */
+    void sort(ExpenseColumns columns, SortKey key) {
+        int[] src = rows;
+        int[] dst = new int[rows.length];
+        for(int width = 1; width < size; width *= 2) {
+            for(int low = 0; low < size; low += 2 * width) {
+                int mid = Math.min(low + width, size);
+                int high = Math.min(low + 2 * width, size);
+                int i = low, j = mid, k = low;
+                while(i < mid && j < high) dst[k++] = key.compare(columns, src[j], src[i]) < 0 ? src[j++] : src[i++];
+                while(i < mid) dst[k++] = src[i++];
+                while(j < high) dst[k++] = src[j++];
+            }
+            int[] t = src;
+            src = dst;
+            dst = t;
+        }
+        rows = src;
+    }
+}
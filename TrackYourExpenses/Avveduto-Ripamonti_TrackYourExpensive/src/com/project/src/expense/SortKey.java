@@ -0,0 +1,59 @@
+package com.project.src.expense;
+
+import com.project.src.expense.comparators.ExpenseAmountComparator;
+import com.project.src.expense.comparators.ExpenseDateComparator;
+import com.project.src.expense.comparators.ExpenseNameComparator;
+
+import java.util.Comparator;
+
+/**
+ * Enum representing the keys the expenses can be ordered by.
+ * Each key is associated with the comparator defining its ascending order.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public enum SortKey {
+    DATE(new ExpenseDateComparator()),
+    NAME(new ExpenseNameComparator()),
+    AMOUNT(new ExpenseAmountComparator());
+
+    private final Comparator<ExpenseController> comparator;
+
+    /**
+     * Constructor to initialize the key with its comparator.
+     *
+     * @param c the comparator defining the ascending order
+     */
+    private SortKey(Comparator<ExpenseController> c) {
+        comparator = c;
+    }
+
+    /**
+     * Gets the comparator defining the ascending order of the key.
+     *
+     * @return the comparator of the key
+     */
+    public Comparator<ExpenseController> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Compares two rows of ExpenseColumns by this key, reading the columns directly.
+     * The result is the same of the comparator applied to the expenses of the rows.
+     *
+     * @param columns the columns. Must not be null.
+     * @param a the first row
+     * @param b the second row
+     * @return a negative number, zero or a positive number if the first row is before, equal to or after the second
+     * @throws NullPointerException if columns is null
+     */
+    public int compare(ExpenseColumns columns, int a, int b) throws NullPointerException {
+        if(columns == null) throw new NullPointerException("columns parameter is null");
+        return switch (this) {
+            case DATE -> Integer.compare(columns.getEpochDay(a), columns.getEpochDay(b));
+            case NAME -> columns.getName(a).compareToIgnoreCase(columns.getName(b));
+            case AMOUNT -> Long.compare(columns.getCents(a), columns.getCents(b));
+        };
+    }
+}
@@ -22,7 +22,7 @@ public class ExpenseAmountComparator implements Comparator<ExpenseController> {
      */
     @Override
     public int compare(ExpenseController expenseController, ExpenseController t1) {
-        return Float.compare(expenseController.getModel().getAmount(),t1.getModel().getAmount());
+        return Long.compare(expenseController.getModel().getCents(),t1.getModel().getCents());
     }
 
     /**
@@ -6,7 +6,7 @@ import java.util.List;
 
 /**
  * Utility class for filtering expenses by category.
- * This class provides a static method to filter a list of expenses based on a specified category.
+ * This class provides static methods to filter a list or an indexed store of expenses based on a specified category.
  *
  * @author Angelo Ripamonti & Luca Avveduto
  * @version 1.0
@@ -25,14 +25,27 @@ public class CategoryFilter {
      */
     public static ArrayList<ExpenseController> filter(List<ExpenseController> expenses, Categories cat) throws NullPointerException {
         if(expenses == null || cat == null) throw new NullPointerException("Almost one parameter passed is null");
+        if(cat == Categories.ALL) return new ArrayList<>(expenses);
         ArrayList<ExpenseController> filteredList = new ArrayList<>();
         for(ExpenseController e : expenses) {
-            if(e.getModel().getCategory() == cat && cat != Categories.ALL) {
+            if(e.getModel().getCategory() == cat) {
                 filteredList.add(e);
-            } else if (cat == Categories.ALL) {
-                filteredList = new ArrayList<>(expenses);
             }
         }
         return filteredList;
     }
+
+    /**
+     * Filters the expenses of an indexed store based on the specified category.
+     * The bucket of the category is returned directly, without scanning or copying the expenses.
+     *
+     * @param store the indexed store of the expenses. Must not be null.
+     * @param cat the category to filter by. Must not be null.
+     * @return a read-only view of the expenses that match the specified category
+     * @throws NullPointerException if any of the parameters are null.
+     */
+    public static List<ExpenseController> filter(ExpenseStore store, Categories cat) throws NullPointerException {
+        if(store == null || cat == null) throw new NullPointerException("Almost one parameter passed is null");
+        return store.byCategory(cat);
+    }
 }
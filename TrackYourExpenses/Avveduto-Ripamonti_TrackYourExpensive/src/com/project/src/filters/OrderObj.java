@@ -3,6 +3,7 @@ package com.project.src.filters;
 import controlP5.ControlP5;
 import controlP5.DropdownList;
 import com.project.src.expense.ExpenseController;
+import com.project.src.expense.SortKey;
 import com.project.src.expense.comparators.*;
 import processing.core.PApplet;
 import java.util.Comparator;
@@ -65,6 +66,36 @@ public class OrderObj {
         return comparator;
     }
 
+    /**
+     * Returns the key to order by for the selected ordering criteria.
+     *
+     * @param cat the index of the selected ordering option. Must not be less than 0 or more than 5.
+     * @return the SortKey of the selected criteria
+     * @throws IllegalArgumentException if cat is less than 0 or more than 5.
+     */
+    public SortKey keyCallback(int cat) throws IllegalArgumentException{
+        SortKey key = null;
+        switch (cat) {
+            case 0, 1 -> {key = SortKey.DATE;}
+            case 2, 3 -> {key = SortKey.NAME;}
+            case 4, 5 -> {key = SortKey.AMOUNT;}
+            default -> {throw new IllegalArgumentException("cat is less than 0 or more than 5");}
+        }
+        return key;
+    }
+
+    /**
+     * Returns whether the selected ordering criteria is descending.
+     *
+     * @param cat the index of the selected ordering option. Must not be less than 0 or more than 5.
+     * @return true if the selected order is descending, false if it is ascending
+     * @throws IllegalArgumentException if cat is less than 0 or more than 5.
+     */
+    public boolean descendingCallback(int cat) throws IllegalArgumentException{
+        if(cat < 0 || cat > 5) throw new IllegalArgumentException("cat is less than 0 or more than 5");
+        return cat % 2 == 0;
+    }
+
     /**
      * Shows the dropdown list for selecting the ordering criteria.
      */
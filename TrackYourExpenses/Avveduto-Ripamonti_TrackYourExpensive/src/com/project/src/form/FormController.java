@@ -16,14 +16,14 @@ public class FormController {
     public FormModel model;
 
     /**
-     * Constructs a FormController with the specified PApplet and ControlP5 instances, and a DBManager.
+     * Constructs a FormController with the specified PApplet and ControlP5 instances, and an Actions implementation.
      *
      * @param processing the PApplet instance used for rendering. Must not be null.
      * @param cp5 the ControlP5 instance used for user interface controls. Must not be null.
-     * @param manager the DBManager instance used for database operations. Must not be null.
+     * @param manager the Actions instance used for database operations. Must not be null.
      * @throws NullPointerException if any of the parameters are null
      */
-    public FormController(PApplet processing, ControlP5 cp5, DBManager manager) throws NullPointerException {
+    public FormController(PApplet processing, ControlP5 cp5, Actions manager) throws NullPointerException {
         if(processing == null || cp5 == null || manager == null) throw new NullPointerException("Almost one parameter passed is null");
         view = new FormView(processing, cp5);
         model = new FormModel(manager);
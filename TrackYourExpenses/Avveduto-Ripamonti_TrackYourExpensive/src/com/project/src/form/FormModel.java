@@ -12,17 +12,17 @@ import com.project.src.accountManager.*;
 public class FormModel {
     private String username;
     private String psw;
-    private DBManager manager;
+    private Actions manager;
     protected boolean check;
     protected String failError;
 
     /**
-     * Constructs a FormModel with a specified DBManager for database operations.
+     * Constructs a FormModel with a specified Actions implementation for database operations.
      *
-     * @param manager the DBManager instance used for database interactions. Must not be null.
+     * @param manager the Actions instance used for database interactions. Must not be null.
      * @throws NullPointerException if any of the parameters are null
      */
-    FormModel(DBManager manager)throws NullPointerException {
+    FormModel(Actions manager)throws NullPointerException {
         if(manager == null) throw new NullPointerException("Almost one parameter passed is null");
         this.manager = manager;
         check=false;
@@ -1,4 +1,5 @@
 package com.project.src.form;
+import com.project.src.graphic.TextResources;
 import processing.core.PApplet;
 import controlP5.*;
 
@@ -31,8 +32,8 @@ class FormView {
         if(processing == null || cp5 == null) throw new NullPointerException("Almost one parameter passed is null");
         this.processing = processing;
         this.cp5 = cp5;
-        usernameField = cp5.addTextfield("username").setColorForeground(processing.color(255)).setFont(processing.createFont("arial",25)).setPosition(processing.width/2-100,processing.height/2-40).setSize(200,40).setFocus(true).setColor(processing.color(255)).setColorActive(processing.color(255)).setColorBackground(0).setCaptionLabel("").hide();
-        passwordField = cp5.addTextfield("password").setPasswordMode(true).setColorForeground(processing.color(255)).setFont(processing.createFont("arial",25)).setPosition(processing.width/2-100,processing.height/2+40).setSize(200,40).setFocus(true).setColor(processing.color(255)).setColorActive(processing.color(255)).setColorBackground(0).setCaptionLabel("").hide();
+        usernameField = cp5.addTextfield("username").setColorForeground(processing.color(255)).setFont(TextResources.font(processing, TextResources.FONT, 25)).setPosition(processing.width/2-100,processing.height/2-40).setSize(200,40).setFocus(true).setColor(processing.color(255)).setColorActive(processing.color(255)).setColorBackground(0).setCaptionLabel("").hide();
+        passwordField = cp5.addTextfield("password").setPasswordMode(true).setColorForeground(processing.color(255)).setFont(TextResources.font(processing, TextResources.FONT, 25)).setPosition(processing.width/2-100,processing.height/2+40).setSize(200,40).setFocus(true).setColor(processing.color(255)).setColorActive(processing.color(255)).setColorBackground(0).setCaptionLabel("").hide();
         registerButton = cp5.addButton("register").setLabel("Register").setPosition(processing.width/2-100, processing.height/2+110).setSize(80, 30).hide();
         loginButton = cp5.addButton("login").setLabel("Login").setPosition(processing.width/2+20, processing.height/2+110).setSize(80, 30).hide();
     }
@@ -0,0 +1,187 @@
+package com.project.src.graphic;
+
+import com.project.src.expense.Money;
+import processing.core.PApplet;
+import processing.core.PFont;
+
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Shared cache of the fonts and of the locale dependent texts used to draw the interface.
+ *
+ * Creating a font rasterizes its glyphs, so every font is created once per name and size
+ * and then reused by every page. The currency symbol and the month names are resolved once
+ * as well. The cache counts its hits and misses, both in total and for the current frame.
+ *
+ * @author Angelo Ripamonti & Luca Avveduto
+ * @version 1.0
+ */
+public final class TextResources {
+    /**
+     * The name of the font used by the interface.
+     */
+    public static final String FONT = "arial";
+    private static final int[] WARM_UP_SIZES = {16, 20, 25};
+    private static final HashMap<String, PFont> fonts = new HashMap<>();
+    private static final String[] monthNames = new String[12];
+    private static String currencySymbol;
+    private static long hits;
+    private static long misses;
+    private static long frameHits;
+    private static long frameMisses;
+
+    /**
+     * Not instantiable, every method is static.
+     */
+    private TextResources() {}
+
+    /**
+     * Creates the fonts used by the interface and resolves the locale dependent texts,
+     * so the first frames do not pay for them. Must be called once in setup().
+     *
+     * @param parent the PApplet instance. Must not be null.
+     * @throws NullPointerException if parent is null
+     */
+    public static synchronized void warmUp(PApplet parent) throws NullPointerException {
+        if(parent == null) throw new NullPointerException("parent parameter is null");
+        for(int size : WARM_UP_SIZES) font(parent, FONT, size);
+        currencySymbol();
+        for(Month m : Month.values()) monthName(m);
+        frameHits = 0;
+        frameMisses = 0;
+    }
+
+    /**
+     * Returns the font with the given name and size, creating it only the first time.
+     *
+     * @param parent the PApplet instance. Must not be null.
+     * @param name the name of the font. Must not be null.
+     * @param size the size of the font. Must be more than 0.
+     * @return the cached font
+     * @throws NullPointerException if any of the parameters are null
+     * @throws IllegalArgumentException if size is not more than 0
+     */
+    public static synchronized PFont font(PApplet parent, String name, int size) throws NullPointerException, IllegalArgumentException {
+        if(parent == null || name == null) throw new NullPointerException("Almost one parameter passed is null");
+        if(size <= 0) throw new IllegalArgumentException("size is not more than 0");
+        String key = name + '@' + size;
+        PFont font = fonts.get(key);
+        if(font != null) {
+            hits++;
+            frameHits++;
+            return font;
+        }
+        misses++;
+        frameMisses++;
+        font = parent.createFont(name, size);
+        fonts.put(key, font);
+        return font;
+    }
+
+    /**
+     * Returns the symbol of the currency of the default locale.
+     *
+     * @return the currency symbol
+     */
+    public static synchronized String currencySymbol() {
+        if(currencySymbol != null) {
+            hits++;
+            frameHits++;
+            return currencySymbol;
+        }
+        misses++;
+        frameMisses++;
+        currencySymbol = Currency.getInstance(Locale.getDefault()).getSymbol();
+        return currencySymbol;
+    }
+
+    /**
+     * Formats an amount with the currency symbol and two decimals.
+     *
+     * @param cents the amount to format in cents
+     * @return the formatted amount
+     */
+    public static String formatAmount(long cents) {
+        return Money.appendTo(new StringBuilder(currencySymbol()), cents).toString();
+    }
+
+    /**
+     * Returns the short italian name of a month.
+     *
+     * @param month the month. Must not be null.
+     * @return the short name of the month
+     * @throws NullPointerException if month is null
+     */
+    public static synchronized String monthName(Month month) throws NullPointerException {
+        if(month == null) throw new NullPointerException("month parameter is null");
+        String name = monthNames[month.ordinal()];
+        if(name != null) {
+            hits++;
+            frameHits++;
+            return name;
+        }
+        misses++;
+        frameMisses++;
+        name = month.getDisplayName(TextStyle.SHORT, Locale.ITALIAN);
+        monthNames[month.ordinal()] = name;
+        return name;
+    }
+
+    /**
+     * Resets the counters of the current frame. Must be called at the beginning of draw().
+     */
+    public static synchronized void beginFrame() {
+        frameHits = 0;
+        frameMisses = 0;
+    }
+
+    /**
+     * Returns the number of lookups served from the cache since the start.
+     *
+     * @return the number of hits
+     */
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups which had to create the resource since the start.
+     *
+     * @return the number of misses
+     */
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of lookups served from the cache in the current frame.
+     *
+     * @return the number of hits of the frame
+     */
+    public static synchronized long getFrameHits() {
+        return frameHits;
+    }
+
+    /**
+     * Returns the number of lookups which had to create the resource in the current frame.
+     *
+     * @return the number of misses of the frame
+     */
+    public static synchronized long getFrameMisses() {
+        return frameMisses;
+    }
+
+    /**
+     * Returns the fraction of the lookups of the current frame served from the cache.
+     *
+     * @return the hit ratio of the frame, 1 if there were no lookups
+     */
+    public static synchronized double getFrameHitRatio() {
+        long total = frameHits + frameMisses;
+        return total == 0 ? 1 : (double) frameHits / total;
+    }
+}
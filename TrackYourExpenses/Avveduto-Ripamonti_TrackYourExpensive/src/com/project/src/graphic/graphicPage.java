@@ -1,18 +1,24 @@
 package com.project.src.graphic;
 
 import java.time.LocalDate;
-import java.time.Month;
-import java.time.format.TextStyle;
-import java.util.*;
-import com.project.src.expense.ExpenseController;
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+import com.project.src.RedrawTracker;
+import com.project.src.accountManager.Account;
+import com.project.src.accountManager.WriteBehindQueue;
+import com.project.src.expense.Categories;
+import com.project.src.expense.MonthlyRollup;
 import controlP5.Button;
 import controlP5.ControlEvent;
 import controlP5.ControlP5;
 import controlP5.DropdownList;
 import processing.core.PApplet;
+import processing.core.PGraphics;
 
 /**
  * Represents the graphical interface for displaying expense data over a selected range of months.
+ * While the expenses of the account are still loading, the chart is drawn from the monthly
+ * aggregates computed by the database, which do not need the whole list.
  *
  * @author Angelo Ripamonti & Luca Avveduto
  * @version 1.0
@@ -28,18 +34,33 @@ public class graphicPage {
     private float[] points;
     private float[] xAxis;
     private Button comeBack;
+    private PGraphics layer;
+    private int layerRange;
+    private Categories layerCategory;
+    private MonthlyRollup layerRollup;
+    private long layerVersion;
+    private long layerExpiry;
+    private final WriteBehindQueue writer;
+    private final RedrawTracker redraw;
+    private volatile CompletableFuture<MonthlyRollup> request;
+    private volatile MonthlyRollup remote;
+    private static final int MAX_RANGE = 12;
 
     /**
      * Initializes a new instance of the graphicPage class.
      *
      * @param parent The PApplet instance. Must not be null
      * @param cp5 The ControlP5 instance. Must not be null
+     * @param writer The WriteBehindQueue computing the aggregates in background. Must not be null
+     * @param redraw The RedrawTracker told when the aggregates arrive. Must not be null
      * @throws NullPointerException if any of the parameters are null
      */
-    public graphicPage(PApplet parent, ControlP5 cp5) throws NullPointerException{
-        if(parent == null || cp5 == null)throw new NullPointerException("Almost one parameter passed is null");
+    public graphicPage(PApplet parent, ControlP5 cp5, WriteBehindQueue writer, RedrawTracker redraw) throws NullPointerException{
+        if(parent == null || cp5 == null || writer == null || redraw == null)throw new NullPointerException("Almost one parameter passed is null");
         this.cp5 = cp5;
         this.parent = parent;
+        this.writer = writer;
+        this.redraw = redraw;
         select = this.cp5.addDropdownList("range")
                 .setBarHeight(20)
                 .setItemHeight(20)
@@ -54,6 +75,10 @@ public class graphicPage {
         target = new LocalDate[2];
         target[0] = LocalDate.now();
         range = 3;
+        averages = new float[MAX_RANGE];
+        names = new String[MAX_RANGE];
+        points = new float[MAX_RANGE];
+        xAxis = new float[MAX_RANGE];
         comeBack = cp5.addButton("home").setLabel("Home").setPosition(parent.width-0.5f*parent.width/3, 10).setSize(80, 30).hide();
     }
 
@@ -71,113 +96,162 @@ public class graphicPage {
         target[1] = target[0].minusMonths(range);
     }
 
+    /**
+     * Requests the database the aggregates of the months the chart can show, if the
+     * expenses of the account are still loading. The chart is redrawn when they arrive.
+     *
+     * @param acc The account shown. Must not be null.
+     * @throws NullPointerException if acc is null
+     */
+    public void refresh(Account acc) throws NullPointerException {
+        if(acc == null) throw new NullPointerException("acc parameter is null");
+        remote = null;
+        request = null;
+        if(!acc.isLoading()) return;
+        LocalDate first = LocalDate.now().withDayOfMonth(1).minusMonths(MAX_RANGE - 1);
+        CompletableFuture<MonthlyRollup> f = writer.monthlyRollup(acc, new com.project.src.expense.LocalDate(first), new com.project.src.expense.LocalDate(first.plusMonths(MAX_RANGE)));
+        request = f;
+        f.thenAccept(r -> {
+            if(request != f) return;
+            remote = r;
+            redraw.markDirty();
+        });
+    }
+
+    /**
+     * Returns the aggregates the chart of an account is drawn from: the ones computed by the database
+     * while its expenses are still loading, if they arrived, otherwise the ones kept by its expense store.
+     *
+     * @param acc The account shown. Must not be null.
+     * @return the monthly aggregates to draw
+     * @throws NullPointerException if acc is null
+     */
+    public MonthlyRollup rollupOf(Account acc) throws NullPointerException {
+        if(acc == null) throw new NullPointerException("acc parameter is null");
+        MonthlyRollup r = remote;
+        return r != null && acc.isLoading() ? r : acc.getStore().getRollup();
+    }
+
     /**
      * Displays the graphical interface for the expense data.
+     * The chart is drawn into an off-screen layer, rebuilt only when the range, the category,
+     * the window size, the current month or the expenses change. Otherwise a frame only
+     * copies the layer on the screen and allocates nothing.
      *
-     * @param list The list of ExpenseController instances. Must not be null.
+     * @param rollup The monthly aggregates of the expenses. Must not be null.
+     * @param cat The category to show, Categories.ALL for every category. Must not be null.
      * @throws NullPointerException if any of the parameters are null
      */
-    public void showInterface(ArrayList<ExpenseController> list) throws NullPointerException {
-        if(list == null) throw new NullPointerException("Almost one parameter passed is null");
+    public void showInterface(MonthlyRollup rollup, Categories cat) throws NullPointerException {
+        if(rollup == null || cat == null) throw new NullPointerException("Almost one parameter passed is null");
         comeBack.show();
-        parent.background(255);
+        select.show();
+        if(isStale(rollup, cat)) renderChart(rollup, cat);
+        parent.image(layer, 0, 0);
+    }
+
+    /**
+     * Checks if the chart layer must be rebuilt.
+     *
+     * @param rollup The monthly aggregates of the expenses.
+     * @param cat The category to show.
+     * @return true if the layer does not match the data, the range or the window anymore
+     */
+    private boolean isStale(MonthlyRollup rollup, Categories cat) {
+        return layer == null || layer.width != parent.width || layer.height != parent.height
+                || layerRange != range || layerCategory != cat || layerRollup != rollup
+                || layerVersion != rollup.getVersion() || System.currentTimeMillis() >= layerExpiry;
+    }
+
+    /**
+     * Draws the chart into the layer and records what it was drawn from.
+     *
+     * @param rollup The monthly aggregates of the expenses.
+     * @param cat The category to show.
+     */
+    private void renderChart(MonthlyRollup rollup, Categories cat) {
+        if(layer == null || layer.width != parent.width || layer.height != parent.height) {
+            layer = parent.createGraphics(parent.width, parent.height);
+        }
+        PGraphics g = layer;
+        g.beginDraw();
+        g.background(255);
         float height = parent.height;
         float width = parent.width;
-        parent.fill(229, 229, 229);
-        parent.noStroke();
-        parent.rect(0, 0, width, 50);
-        select.show();
-        parent.strokeWeight(2);
-        parent.stroke(0);
-        parent.line(width / 3, height - height / 3, width / 3, height / 3);
-        parent.line(width / 3, height - height / 3, width - width / 3, height - height / 3);
-        parent.textAlign(3,3);
-        parent.textSize(20);
-        parent.fill(0);
-        parent.text("Amount",width / 3, height / 3 - 20);
-        parent.text("Month",width - width / 3 + 50, height - height / 3);
-        parent.textSize(60);
-        parent.fill(parent.color(173,0,10));
-        parent.text("Graphic traker",parent.width/2,parent.height/3-parent.height/4);
-        parent.textAlign(0,0);
-        float distance = parent.dist(width / 3, height - height / 3, width - width / 3 - 20, height - height / 3);
-        parent.strokeWeight(2);
-        parent.stroke(0);
-        names = new String[range];
+        g.fill(229, 229, 229);
+        g.noStroke();
+        g.rect(0, 0, width, 50);
+        g.strokeWeight(2);
+        g.stroke(0);
+        g.line(width / 3, height - height / 3, width / 3, height / 3);
+        g.line(width / 3, height - height / 3, width - width / 3, height - height / 3);
+        g.textFont(TextResources.font(parent, TextResources.FONT, 20));
+        g.textAlign(3,3);
+        g.textSize(20);
+        g.fill(0);
+        g.text("Amount",width / 3, height / 3 - 20);
+        g.text("Month",width - width / 3 + 50, height - height / 3);
+        g.textSize(60);
+        g.fill(173,0,10);
+        g.text("Graphic traker",parent.width/2,parent.height/3-parent.height/4);
+        g.textAlign(0,0);
+        float distance = PApplet.dist(width / 3, height - height / 3, width - width / 3 - 20, height - height / 3);
+        g.strokeWeight(2);
+        g.stroke(0);
+        LocalDate now = LocalDate.now();
         for (int i = range - 1; i >= 0; i--) {
-            names[i] = LocalDate.now().minusMonths(i).getMonth().getDisplayName(TextStyle.SHORT, Locale.ITALIAN);
+            names[i] = TextResources.monthName(now.minusMonths(i).getMonth());
         }
         float dividedDistance = distance / range;
-        parent.textAlign(PApplet.CENTER, PApplet.CENTER);
-        parent.textSize(16);
-        parent.fill(0);
-        xAxis = new float[range];
+        g.textAlign(PApplet.CENTER, PApplet.CENTER);
+        g.textSize(16);
+        g.fill(0);
         for (float i = 1, x = width / 3 + dividedDistance; i <= range; i++, x += dividedDistance) {
-            parent.line(x, height - height / 3 - 10, x, height - height / 3 + 10);
-            parent.text(names[Math.round(range - i)], x, height - height / 3 + 20);
-        }
-        averages = new float[range];
-        for (int i = 0; i < range; i++) {
-            averages[i] = calculateAverage(list, LocalDate.now().minusMonths(i).getMonth());
-            if (Float.isNaN(averages[i])) averages[i] = 0;
+            g.line(x, height - height / 3 - 10, x, height - height / 3 + 10);
+            g.text(names[Math.round(range - i)], x, height - height / 3 + 20);
         }
-        points = scale(averages);
-        parent.strokeWeight(10);
-        parent.stroke(0);
-        for (int i = points.length - 1, x = (int) (width / 3 + dividedDistance); i >= 0 ; i--, x += dividedDistance) {
-            parent.point(x, points[i]);
+        rollup.averages(now.getYear(), now.getMonthValue(), range, cat, averages);
+        scale(averages, range, points);
+        g.strokeWeight(10);
+        g.stroke(0);
+        for (int i = range - 1, x = (int) (width / 3 + dividedDistance); i >= 0 ; i--, x += dividedDistance) {
+            g.point(x, points[i]);
             xAxis[i] = x;
         }
-        drawLines(xAxis, points);
-        parent.textAlign(0,0);
-    }
-
-    /**
-     * Calculates the average expense for a given month.
-     *
-     * @param list  The list of ExpenseController instances. Must not be null.
-     * @param month The month to calculate the average for. Must not be null.
-     * @return The average expense for the month.
-     * @throws NullPointerException if any of the parameters are null
-     */
-    private float calculateAverage(ArrayList<ExpenseController> list, Month month) throws NullPointerException {
-        if(list == null || month == null) throw new NullPointerException("Almost one parameter passed is null");
-        ArrayList<Float> filteredList = new ArrayList<>();
-        for (ExpenseController e : list) {
-            if (e.getModel().getDate().getMonth() == month.getValue()) {
-                filteredList.add(e.getModel().getAmount());
-            }
-        }
-        float sum = 0;
-        for (float e : filteredList) sum += e;
-        return filteredList.isEmpty() ? 0 : sum / filteredList.size();
+        drawLines(g, xAxis, points, range);
+        g.textAlign(0,0);
+        g.endDraw();
+        layerRange = range;
+        layerCategory = cat;
+        layerRollup = rollup;
+        layerVersion = rollup.getVersion();
+        layerExpiry = now.withDayOfMonth(1).plusMonths(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     /**
      * Scales the values to fit within the graphical interface.
      *
      * @param values The values to scale. Must not be null.
-     * @return The scaled values.
+     * @param length The number of values to scale. Must not be less than 0 or more than values.length or out.length.
+     * @param out The array receiving the scaled values. Must not be null.
      * @throws NullPointerException if any of the parameters are null
      */
-    private float[] scale(float[] values) throws NullPointerException{
-        if(values == null) throw new NullPointerException("Almost one parameter passed is null");
+    private void scale(float[] values, int length, float[] out) throws NullPointerException{
+        if(values == null || out == null) throw new NullPointerException("Almost one parameter passed is null");
         float max = 0;
-        for (float x : values) {
-            if (x > max) {
-                max = x;
+        for (int i = 0; i < length; i++) {
+            if (values[i] > max) {
+                max = values[i];
             }
         }
-        float[] result = new float[values.length];
         float graphHeight = parent.height - (parent.height / 3) * 2;
-        for (int i = 0; i < values.length; i++) {
+        for (int i = 0; i < length; i++) {
             if (values[i] == 0) {
-                result[i] = parent.height - (parent.height / 3);
+                out[i] = parent.height - (parent.height / 3);
             } else {
-                result[i] = parent.height - ((values[i] / max) * graphHeight + (parent.height / 3));
+                out[i] = parent.height - ((values[i] / max) * graphHeight + (parent.height / 3));
             }
         }
-        return result;
     }
 
     /**
@@ -186,16 +260,18 @@ public class graphicPage {
      * This method iterates through the provided x and y coordinates and draws lines between consecutive points
      * to represent the data graphically.
      *
+     * @param g the surface to draw on. Must not be null.
      * @param x an array of x coordinates for the data points. Must not be null.
      * @param y an array of y coordinates for the data points. Must not be null.
-     * @throws NullPointerException if either x or y is null.
+     * @param length the number of data points. Must not be more than x.length or y.length.
+     * @throws NullPointerException if g, x or y is null.
      */
-    private void drawLines(float[] x, float[] y) throws NullPointerException{
-        if(x == null || y == null) throw new NullPointerException("Almost one parameter passed is null");
-        parent.strokeWeight(2);
-        parent.stroke(parent.color(0,0,255));
-        for (int i = 0; i < x.length - 1; i++) {
-            parent.line(x[i], y[i], x[i + 1], y[i + 1]);
+    private void drawLines(PGraphics g, float[] x, float[] y, int length) throws NullPointerException{
+        if(g == null || x == null || y == null) throw new NullPointerException("Almost one parameter passed is null");
+        g.strokeWeight(2);
+        g.stroke(0,0,255);
+        for (int i = 0; i < length - 1; i++) {
+            g.line(x[i], y[i], x[i + 1], y[i + 1]);
         }
     }
 